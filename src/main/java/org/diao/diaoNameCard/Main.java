@@ -6,11 +6,22 @@ import org.bukkit.command.ConsoleCommandSender;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.diao.diaoNameCard.command.DncCommand;
 import org.diao.diaoNameCard.listener.PacketListener;
+import org.diao.diaoNameCard.listener.PlayerListener;
+import org.diao.diaoNameCard.manager.BulkJobManager;
+import org.diao.diaoNameCard.manager.CardFileWatcher;
 import org.diao.diaoNameCard.manager.CardManager;
+import org.diao.diaoNameCard.manager.ChangeLogPoller;
+import org.diao.diaoNameCard.manager.DataMigrator;
 import org.diao.diaoNameCard.manager.PlayerDataManager;
+import org.diao.diaoNameCard.manager.PlayerNameIndex;
+import org.diao.diaoNameCard.manager.SubscriptionManager;
+import org.diao.diaoNameCard.protocol.RequestLimiter;
+import org.diao.diaoNameCard.protocol.ResponseDispatcher;
 import org.diao.diaoNameCard.storage.Database;
+import org.diao.diaoNameCard.storage.FlatFile;
 import org.diao.diaoNameCard.storage.MySQL;
 import org.diao.diaoNameCard.storage.SQLite;
+import org.diao.diaoNameCard.storage.WriteBehindDatabase;
 
 /**
  * 大貂名片 (DiaoNameCard) 插件的主类
@@ -26,6 +37,14 @@ public final class Main extends JavaPlugin {
     private CardManager cardManager;
     private PlayerDataManager playerDataManager;
     private Database database;
+    private BulkJobManager bulkJobManager;
+    private DataMigrator dataMigrator;
+    private ChangeLogPoller changeLogPoller;
+    private CardFileWatcher cardFileWatcher;
+    private PlayerNameIndex playerNameIndex;
+    private RequestLimiter requestLimiter;
+    private ResponseDispatcher responseDispatcher;
+    private SubscriptionManager subscriptionManager;
 
     /**
      * 当插件被启用时调用
@@ -83,20 +102,45 @@ public final class Main extends JavaPlugin {
         // 2. 初始化核心管理器
         this.cardManager = new CardManager(this);
         this.playerDataManager = new PlayerDataManager(this);
+        this.subscriptionManager = new SubscriptionManager(this);
+        this.playerNameIndex = new PlayerNameIndex();
+
+        // 所有异步结果统一由主线程每 tick 发送
+        this.responseDispatcher = new ResponseDispatcher(this);
+        this.responseDispatcher.start();
 
         // 3. 初始化数据库连接
         setupDatabase();
+        this.bulkJobManager = new BulkJobManager(this);
+        this.dataMigrator = new DataMigrator(this);
+        this.changeLogPoller = new ChangeLogPoller(this);
 
         // 4. 从配置文件加载所有名片信息到内存中
         this.cardManager.loadCards();
+        this.cardFileWatcher = new CardFileWatcher(this);
+        this.cardFileWatcher.start();
 
         // 5. 注册命令处理器和 Tab 补全器
         DncCommand dncCommand = new DncCommand(this);
         getCommand("dnc").setExecutor(dncCommand);
         getCommand("dnc").setTabCompleter(dncCommand);
 
-        // 6. 注册事件监听器
+        // 6. 注册事件监听器 (客户端请求先经过限流)
+        this.requestLimiter = new RequestLimiter(this);
+        this.requestLimiter.start();
+        this.subscriptionManager.start();
+        this.playerDataManager.start();
         getServer().getPluginManager().registerEvents(new PacketListener(this), this);
+        getServer().getPluginManager().registerEvents(new PlayerListener(this), this);
+
+        // 7. 为已经在线的玩家加载会话缓存 (例如服务器执行了 /reload)
+        Bukkit.getOnlinePlayers().forEach(player -> {
+            playerDataManager.loadSession(player.getUniqueId());
+            playerNameIndex.add(player);
+        });
+
+        // 8. 启动跨服缓存同步 (群组服共用 MySQL 时)
+        this.changeLogPoller.start();
 
         getLogger().info("[大貂名片] 插件已成功启用！尽情享受吧！");
     }
@@ -106,9 +150,36 @@ public final class Main extends JavaPlugin {
      */
     @Override
     public void onDisable() {
+        if (cardFileWatcher != null) {
+            cardFileWatcher.stop();
+        }
+        if (cardManager != null) {
+            cardManager.stop();
+        }
+        if (changeLogPoller != null) {
+            changeLogPoller.stop();
+        }
+        if (requestLimiter != null) {
+            requestLimiter.stop();
+        }
+        if (subscriptionManager != null) {
+            subscriptionManager.stop();
+        }
+        if (playerDataManager != null) {
+            playerDataManager.stop();
+        }
+        if (bulkJobManager != null) {
+            bulkJobManager.shutdown();
+        }
+        if (dataMigrator != null) {
+            dataMigrator.shutdown();
+        }
         if (database != null) {
             database.disconnect();
         }
+        if (responseDispatcher != null) {
+            responseDispatcher.stop();
+        }
 
         ConsoleCommandSender console = Bukkit.getConsoleSender();
         console.sendMessage(ChatColor.RED + "************************************************************");
@@ -122,19 +193,43 @@ public final class Main extends JavaPlugin {
     }
 
     private void setupDatabase() {
-        String storageType = getConfig().getString("storage.type", "sqlite").toLowerCase();
-
+        String storageType = getStorageType();
         if (storageType.equals("mysql")) {
-            this.database = new MySQL(this);
             getLogger().info("[大貂名片] 正在连接至 MySQL 数据库...");
+        } else if (storageType.equals("file")) {
+            getLogger().info("[大貂名片] 正在使用文件存储...");
         } else {
-            this.database = new SQLite(this);
             getLogger().info("[大貂名片] 正在使用 SQLite 数据库...");
         }
+        Database backend = createDatabase(storageType);
 
+        // 所有写操作先经过写后缓冲，合并后批量落库 (文件存储的写入本身就是内存操作, 无需缓冲)
+        this.database = storageType.equals("file") ? backend : new WriteBehindDatabase(this, backend);
         this.database.connect();
     }
 
+    /**
+     * 按存储类型创建一个尚未连接的数据库实例 (不经过写后缓冲)
+     * @param type 存储类型, mysql / sqlite / file
+     * @return 数据库实例
+     */
+    public Database createDatabase(String type) {
+        if (type.equalsIgnoreCase("mysql")) {
+            return new MySQL(this);
+        }
+        if (type.equalsIgnoreCase("file")) {
+            return new FlatFile(this);
+        }
+        return new SQLite(this);
+    }
+
+    /**
+     * @return 配置文件中当前使用的存储类型 (小写)
+     */
+    public String getStorageType() {
+        return getConfig().getString("storage.type", "sqlite").toLowerCase();
+    }
+
     // --- Getter 方法 ---
     public CardManager getCardManager() {
         return cardManager;
@@ -144,7 +239,31 @@ public final class Main extends JavaPlugin {
         return playerDataManager;
     }
 
+    public PlayerNameIndex getPlayerNameIndex() {
+        return playerNameIndex;
+    }
+
     public Database getDatabase() {
         return database;
     }
-}
\ No newline at end of file
+
+    public BulkJobManager getBulkJobManager() {
+        return bulkJobManager;
+    }
+
+    public DataMigrator getDataMigrator() {
+        return dataMigrator;
+    }
+
+    public RequestLimiter getRequestLimiter() {
+        return requestLimiter;
+    }
+
+    public ResponseDispatcher getResponseDispatcher() {
+        return responseDispatcher;
+    }
+
+    public SubscriptionManager getSubscriptionManager() {
+        return subscriptionManager;
+    }
+}
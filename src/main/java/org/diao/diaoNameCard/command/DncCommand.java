@@ -8,14 +8,25 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
 import org.diao.diaoNameCard.Main;
-import org.diao.diaoNameCard.model.NameCard;
+import org.diao.diaoNameCard.manager.BulkJob;
+import org.diao.diaoNameCard.manager.BulkJobManager;
+import org.diao.diaoNameCard.model.CardCatalog;
+import org.diao.diaoNameCard.model.PlayerProfile;
+import org.diao.diaoNameCard.protocol.RequestLimiter;
 
+import java.io.File;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Collectors;
 
 public class DncCommand implements CommandExecutor, TabCompleter {
 
+    private static final List<String> STORAGE_TYPES = Arrays.asList("sqlite", "mysql", "file");
+    private static final List<String> BULK_ACTIONS = Arrays.asList("grantfile", "grantall", "revokeall", "status", "cancel");
+    // 单次补全最多返回的条数
+    private static final int MAX_COMPLETIONS = 100;
+
     private final Main plugin;
 
     public DncCommand(Main plugin) {
@@ -44,6 +55,19 @@ public class DncCommand implements CommandExecutor, TabCompleter {
                 sender.sendMessage(ChatColor.YELLOW + "/dnc remove <玩家> <名片ID>" + ChatColor.GRAY + " - 移除玩家名片");
                 hasAnyCommand = true;
             }
+            if (sender.hasPermission("diaonamecard.admin.bulk")) {
+                sender.sendMessage(ChatColor.YELLOW + "/dnc bulk <grantfile|grantall|revokeall|status|cancel>" + ChatColor.GRAY + " - 批量发放/移除名片");
+                hasAnyCommand = true;
+            }
+            if (sender.hasPermission("diaonamecard.admin.migrate")) {
+                sender.sendMessage(ChatColor.YELLOW + "/dnc migrate <sqlite|mysql|file> <sqlite|mysql|file>" + ChatColor.GRAY + " - 在两种存储方式之间迁移数据");
+                hasAnyCommand = true;
+            }
+
+            if (sender.hasPermission("diaonamecard.admin.stats")) {
+                sender.sendMessage(ChatColor.YELLOW + "/dnc stats" + ChatColor.GRAY + " - 查看客户端请求统计");
+                hasAnyCommand = true;
+            }
 
             if (!hasAnyCommand) {
                 sender.sendMessage(ChatColor.RED + "你当前没有任何可用命令。");
@@ -67,6 +91,15 @@ public class DncCommand implements CommandExecutor, TabCompleter {
             case "set":
                 handleSet(sender, args);
                 break;
+            case "bulk":
+                handleBulk(sender, args);
+                break;
+            case "migrate":
+                handleMigrate(sender, args);
+                break;
+            case "stats":
+                handleStats(sender);
+                break;
             default:
                 sender.sendMessage(ChatColor.RED + "未知子命令，请输入 /dnc 查看帮助。");
                 break;
@@ -79,8 +112,14 @@ public class DncCommand implements CommandExecutor, TabCompleter {
             sender.sendMessage(ChatColor.RED + "你没有权限执行此命令。");
             return;
         }
-        plugin.getCardManager().loadCards();
-        sender.sendMessage(ChatColor.GREEN + "大貂名片插件配置已重载。");
+        // 配置在后台线程读取和解析, 完成后一次性替换名片目录
+        plugin.getCardManager().reloadCards().whenComplete((catalog, ex) -> {
+            if (ex != null) {
+                plugin.getResponseDispatcher().message(sender, ChatColor.RED + "重载名片配置失败, 已保留原有名片: " + ex.getMessage());
+            } else {
+                plugin.getResponseDispatcher().message(sender, ChatColor.GREEN + "大貂名片插件配置已重载, 共 " + catalog.size() + " 个名片。");
+            }
+        });
     }
 
     private void handleAdd(CommandSender sender, String[] args) {
@@ -133,6 +172,133 @@ public class DncCommand implements CommandExecutor, TabCompleter {
         target.sendMessage(ChatColor.RED + "你的名片 " + cardId + " 已被移除。");
     }
 
+    private void handleBulk(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("diaonamecard.admin.bulk")) {
+            sender.sendMessage(ChatColor.RED + "你没有权限执行此命令。");
+            return;
+        }
+        if (args.length < 2) {
+            sendBulkUsage(sender);
+            return;
+        }
+
+        BulkJobManager jobs = plugin.getBulkJobManager();
+        String action = args[1].toLowerCase();
+        switch (action) {
+            case "grantfile": {
+                if (args.length != 4) {
+                    sender.sendMessage(ChatColor.RED + "用法: /dnc bulk grantfile <文件名> <名片ID>");
+                    return;
+                }
+                File file = new File(plugin.getDataFolder(), args[2]);
+                if (!file.isFile()) {
+                    sender.sendMessage(ChatColor.RED + "文件 " + file.getPath() + " 不存在。");
+                    return;
+                }
+                if (!checkCard(sender, args[3])) return;
+                BulkJob job = jobs.grantFromFile(sender, file, args[3].toLowerCase());
+                sender.sendMessage(ChatColor.GREEN + "已创建批量任务 #" + job.getId() + ": " + job.getDescription());
+                break;
+            }
+            case "grantall": {
+                if (args.length != 3) {
+                    sender.sendMessage(ChatColor.RED + "用法: /dnc bulk grantall <名片ID>");
+                    return;
+                }
+                if (!checkCard(sender, args[2])) return;
+                BulkJob job = jobs.grantToAll(sender, args[2].toLowerCase());
+                sender.sendMessage(ChatColor.GREEN + "已创建批量任务 #" + job.getId() + ": " + job.getDescription());
+                break;
+            }
+            case "revokeall": {
+                if (args.length != 3) {
+                    sender.sendMessage(ChatColor.RED + "用法: /dnc bulk revokeall <名片ID>");
+                    return;
+                }
+                // 名片可能已经从配置中删除, 这里不检查是否存在
+                BulkJob job = jobs.revokeFromAll(sender, args[2].toLowerCase());
+                sender.sendMessage(ChatColor.GREEN + "已创建批量任务 #" + job.getId() + ": " + job.getDescription());
+                break;
+            }
+            case "status":
+                if (jobs.getJobs().isEmpty()) {
+                    sender.sendMessage(ChatColor.GRAY + "当前没有批量任务。");
+                    return;
+                }
+                for (BulkJob job : jobs.getJobs()) {
+                    sender.sendMessage(ChatColor.YELLOW + "#" + job.getId() + " " + ChatColor.WHITE + job.getDescription()
+                            + ChatColor.GRAY + " [" + job.getState().getDisplayName() + "] " + job.getProgressText());
+                }
+                break;
+            case "cancel":
+                if (args.length != 3) {
+                    sender.sendMessage(ChatColor.RED + "用法: /dnc bulk cancel <任务ID>");
+                    return;
+                }
+                try {
+                    int id = Integer.parseInt(args[2]);
+                    if (jobs.cancel(id)) {
+                        sender.sendMessage(ChatColor.GREEN + "已请求取消批量任务 #" + id + ", 当前分块完成后停止。");
+                    } else {
+                        sender.sendMessage(ChatColor.RED + "批量任务 #" + id + " 不存在或已结束。");
+                    }
+                } catch (NumberFormatException e) {
+                    sender.sendMessage(ChatColor.RED + "任务ID必须是数字。");
+                }
+                break;
+            default:
+                sendBulkUsage(sender);
+                break;
+        }
+    }
+
+    private void handleMigrate(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("diaonamecard.admin.migrate")) {
+            sender.sendMessage(ChatColor.RED + "你没有权限执行此命令。");
+            return;
+        }
+        if (args.length != 3 || !STORAGE_TYPES.contains(args[1].toLowerCase()) || !STORAGE_TYPES.contains(args[2].toLowerCase())) {
+            sender.sendMessage(ChatColor.RED + "用法: /dnc migrate <sqlite|mysql|file> <sqlite|mysql|file>");
+            return;
+        }
+        if (args[1].equalsIgnoreCase(args[2])) {
+            sender.sendMessage(ChatColor.RED + "源存储和目标存储不能相同。");
+            return;
+        }
+        if (!plugin.getDataMigrator().migrate(sender, args[1], args[2])) {
+            sender.sendMessage(ChatColor.RED + "已有一个数据迁移正在执行。");
+            return;
+        }
+        sender.sendMessage(ChatColor.GREEN + "数据迁移已在后台开始, 迁移期间请尽量避免修改玩家名片。");
+    }
+
+    private void handleStats(CommandSender sender) {
+        if (!sender.hasPermission("diaonamecard.admin.stats")) {
+            sender.sendMessage(ChatColor.RED + "你没有权限执行此命令。");
+            return;
+        }
+        RequestLimiter limiter = plugin.getRequestLimiter();
+        sender.sendMessage(ChatColor.GOLD + "========== " + ChatColor.AQUA + "客户端请求统计" + ChatColor.GOLD + " ==========");
+        sender.sendMessage(ChatColor.YELLOW + "已处理: " + ChatColor.WHITE + limiter.getAccepted());
+        sender.sendMessage(ChatColor.YELLOW + "重复合并: " + ChatColor.WHITE + limiter.getMerged());
+        sender.sendMessage(ChatColor.YELLOW + "超频丢弃: " + ChatColor.WHITE + limiter.getDropped());
+        sender.sendMessage(ChatColor.YELLOW + "待发送应答: " + ChatColor.WHITE + plugin.getResponseDispatcher().getPending());
+        sender.sendMessage(ChatColor.YELLOW + "名片变更订阅: " + ChatColor.WHITE + plugin.getSubscriptionManager().getSubscriptionCount());
+        sender.sendMessage(ChatColor.YELLOW + "数据库排队任务: " + ChatColor.WHITE + plugin.getDatabase().getQueueDepth());
+    }
+
+    private void sendBulkUsage(CommandSender sender) {
+        sender.sendMessage(ChatColor.RED + "用法: /dnc bulk grantfile <文件名> <名片ID> | grantall <名片ID> | revokeall <名片ID> | status | cancel <任务ID>");
+    }
+
+    private boolean checkCard(CommandSender sender, String cardId) {
+        if (plugin.getCardManager().getCard(cardId) == null) {
+            sender.sendMessage(ChatColor.RED + "名片ID " + cardId + " 不存在。");
+            return false;
+        }
+        return true;
+    }
+
     private void handleSet(CommandSender sender, String[] args) {
         if (!(sender instanceof Player)) {
             sender.sendMessage(ChatColor.RED + "该命令只能由玩家执行。");
@@ -156,14 +322,12 @@ public class DncCommand implements CommandExecutor, TabCompleter {
         }
 
         plugin.getPlayerDataManager().playerHasCard(player.getUniqueId(), cardId).thenAccept(hasCard -> {
-            Bukkit.getScheduler().runTask(plugin, () -> {
-                if (hasCard) {
-                    plugin.getPlayerDataManager().setEquippedCard(player.getUniqueId(), cardId);
-                    player.sendMessage(ChatColor.GREEN + "你已成功佩戴名片: " + cardId);
-                } else {
-                    player.sendMessage(ChatColor.RED + "你尚未拥有该名片，无法佩戴。");
-                }
-            });
+            if (hasCard) {
+                plugin.getPlayerDataManager().setEquippedCard(player.getUniqueId(), cardId);
+                plugin.getResponseDispatcher().message(player, ChatColor.GREEN + "你已成功佩戴名片: " + cardId);
+            } else {
+                plugin.getResponseDispatcher().message(player, ChatColor.RED + "你尚未拥有该名片，无法佩戴。");
+            }
         });
     }
 
@@ -175,35 +339,48 @@ public class DncCommand implements CommandExecutor, TabCompleter {
             if (sender.hasPermission("diaonamecard.admin.add")) subCommands.add("add");
             if (sender.hasPermission("diaonamecard.admin.remove")) subCommands.add("remove");
             if (sender.hasPermission("diaonamecard.player.set")) subCommands.add("set");
+            if (sender.hasPermission("diaonamecard.admin.bulk")) subCommands.add("bulk");
+            if (sender.hasPermission("diaonamecard.admin.migrate")) subCommands.add("migrate");
+            if (sender.hasPermission("diaonamecard.admin.stats")) subCommands.add("stats");
             return subCommands.stream().filter(s -> s.startsWith(args[0].toLowerCase())).collect(Collectors.toList());
         }
 
         if (args.length == 2) {
             if (args[0].equalsIgnoreCase("set") && sender.hasPermission("diaonamecard.player.set")) {
                 if (sender instanceof Player) {
-                    Player player = (Player) sender;
-                    List<String> ownedCardIds = new ArrayList<>();
-                    plugin.getPlayerDataManager().getPlayerOwnedCards(player.getUniqueId())
-                            .thenAccept(cards -> ownedCardIds.addAll(cards.stream().map(NameCard::getId).collect(Collectors.toList())))
-                            .join();
-                    return ownedCardIds.stream().filter(s -> s.startsWith(args[1].toLowerCase())).collect(Collectors.toList());
+                    // 补全在主线程中进行, 只使用已缓存的玩家数据, 尚未加载时不提示
+                    PlayerProfile profile = plugin.getPlayerDataManager().getCachedProfile(((Player) sender).getUniqueId());
+                    if (profile == null) return new ArrayList<>();
+                    CardCatalog catalog = plugin.getCardManager().getCatalog();
+                    String defaultCardId = catalog.getDefaultCardId();
+                    return catalog.completeCardIds(args[1], MAX_COMPLETIONS,
+                            id -> id.equalsIgnoreCase(defaultCardId) || profile.hasCard(id));
                 }
             }
+            if (args[0].equalsIgnoreCase("bulk") && sender.hasPermission("diaonamecard.admin.bulk")) {
+                return BULK_ACTIONS.stream().filter(s -> s.startsWith(args[1].toLowerCase())).collect(Collectors.toList());
+            }
+            if (args[0].equalsIgnoreCase("migrate") && sender.hasPermission("diaonamecard.admin.migrate")) {
+                return STORAGE_TYPES.stream().filter(s -> s.startsWith(args[1].toLowerCase())).collect(Collectors.toList());
+            }
             if ((args[0].equalsIgnoreCase("add") && sender.hasPermission("diaonamecard.admin.add")) ||
                     (args[0].equalsIgnoreCase("remove") && sender.hasPermission("diaonamecard.admin.remove"))) {
-                return Bukkit.getOnlinePlayers().stream().map(Player::getName)
-                        .filter(name -> name.toLowerCase().startsWith(args[1].toLowerCase()))
-                        .collect(Collectors.toList());
+                return plugin.getPlayerNameIndex().complete(args[1], MAX_COMPLETIONS);
             }
         }
 
         if (args.length == 3) {
-            if ((args[0].equalsIgnoreCase("add") && sender.hasPermission("diaonamecard.admin.add")) ||
-                    (args[0].equalsIgnoreCase("remove") && sender.hasPermission("diaonamecard.admin.remove"))) {
-                return plugin.getCardManager().getAllCards().stream().map(NameCard::getId)
-                        .filter(id -> id.toLowerCase().startsWith(args[2].toLowerCase()))
+            if (args[0].equalsIgnoreCase("migrate") && sender.hasPermission("diaonamecard.admin.migrate")) {
+                return STORAGE_TYPES.stream()
+                        .filter(s -> !s.equalsIgnoreCase(args[1]) && s.startsWith(args[2].toLowerCase()))
                         .collect(Collectors.toList());
             }
+            if ((args[0].equalsIgnoreCase("add") && sender.hasPermission("diaonamecard.admin.add")) ||
+                    (args[0].equalsIgnoreCase("remove") && sender.hasPermission("diaonamecard.admin.remove")) ||
+                    (args[0].equalsIgnoreCase("bulk") && sender.hasPermission("diaonamecard.admin.bulk")
+                            && (args[1].equalsIgnoreCase("grantall") || args[1].equalsIgnoreCase("revokeall")))) {
+                return plugin.getCardManager().completeCardIds(args[2], MAX_COMPLETIONS);
+            }
         }
 
         return new ArrayList<>();
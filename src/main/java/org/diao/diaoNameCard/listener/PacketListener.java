@@ -5,13 +5,24 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.diao.diaoNameCard.Main;
+import org.diao.diaoNameCard.manager.SubscriptionManager;
+import org.diao.diaoNameCard.model.CardCatalog;
+import org.diao.diaoNameCard.model.CardQuery;
 import org.diao.diaoNameCard.model.NameCard;
-import yslelf.cloudpick.bukkit.api.PacketSender;
+import org.diao.diaoNameCard.protocol.CardListEncoder;
+import org.diao.diaoNameCard.protocol.CardPageEncoder;
+import org.diao.diaoNameCard.protocol.CardPayload;
+import org.diao.diaoNameCard.protocol.CardPayloads;
+import org.diao.diaoNameCard.protocol.CatalogEncoder;
+import org.diao.diaoNameCard.protocol.EquippedCardEncoder;
+import org.diao.diaoNameCard.protocol.RequestLimiter;
 import yslelf.cloudpick.bukkit.api.event.CustomPacketEvent;
 
-import java.util.Collection;
-import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
 /**
  * CloudPick API 数据包监听器
@@ -24,22 +35,65 @@ public class PacketListener implements Listener {
     private final String GET_CARD_LIST_IDENTIFIER = "dnc_name_card_list";
     private final String SEND_CARD_IDENTIFIER = "dnc_card";
     private final String SEND_CARD_LIST_IDENTIFIER = "dnc_card_list";
+    // 分块列表: 整张列表打包成少量消息返回 (旧客户端仍使用上面的逐条格式)
+    private final String GET_CARD_LIST_CHUNKED_IDENTIFIER = "dnc_name_card_list_v2";
+    private final String SEND_CARD_LIST_CHUNK_IDENTIFIER = "dnc_card_list_v2";
+    // 目录同步: 客户端带上已缓存的目录版本号, 版本一致时只返回拥有情况的位图
+    private final String GET_OWNED_CARDS_IDENTIFIER = "dnc_name_card_owned";
+    private final String SEND_CATALOG_IDENTIFIER = "dnc_catalog";
+    private final String SEND_OWNED_CARDS_IDENTIFIER = "dnc_card_owned";
+
+    // 批量查询: 一次请求多个玩家的佩戴名片 (用于 Tab 列表和头顶名牌)
+    private final String GET_CARD_BATCH_IDENTIFIER = "dnc_name_card_batch";
+    private final String SEND_CARD_BATCH_IDENTIFIER = "dnc_card_batch";
+
+    // 分页查询: 按游标分页, 支持拥有情况、层级范围、分类和展示名筛选
+    private final String GET_CARD_PAGE_IDENTIFIER = "dnc_name_card_page";
+    private final String SEND_CARD_PAGE_IDENTIFIER = "dnc_card_page";
+
+    // 订阅: 目标玩家更换名片时主动推送 SubscriptionManager.PUSH_IDENTIFIER, 客户端无需轮询
+    private final String SUBSCRIBE_IDENTIFIER = "dnc_subscribe";
+    private final String UNSUBSCRIBE_IDENTIFIER = "dnc_unsubscribe";
 
     private final String GET_CARD_BY_ID_IDENTIFIER = "dnc_id_card";
     private final String SEND_CARD_BY_ID_IDENTIFIER = "dnc_id_card_i";
 
+    private final int maxBatchPlayers;
+    private final int maxPageSize;
+
     public PacketListener(Main plugin) {
         this.plugin = plugin;
+        this.maxBatchPlayers = Math.max(1, plugin.getConfig().getInt("protocol.max-batch-players", 200));
+        this.maxPageSize = Math.max(1, plugin.getConfig().getInt("protocol.max-page-size", 100));
     }
 
     @EventHandler
     public void onMessageReceive(CustomPacketEvent event) {
         String identifier = event.getIdentifier();
+        if (!identifier.startsWith("dnc_")) return;
+        // 超出频率限制或与刚处理过的请求完全相同时不再处理; 订阅和取消订阅会改变状态, 不参与去重
+        boolean stateChanging = SUBSCRIBE_IDENTIFIER.equals(identifier) || UNSUBSCRIBE_IDENTIFIER.equals(identifier);
+        if (plugin.getRequestLimiter().check(event.getPlayer().getUniqueId(), identifier, event.getData(), !stateChanging)
+                != RequestLimiter.Result.ACCEPTED) {
+            return;
+        }
 
         if (GET_CARD_IDENTIFIER.equals(identifier)) {
             handleGetEquippedCard(event);
         } else if (GET_CARD_LIST_IDENTIFIER.equals(identifier)) {
             handleGetCardList(event);
+        } else if (GET_CARD_LIST_CHUNKED_IDENTIFIER.equals(identifier)) {
+            handleGetCardListChunked(event);
+        } else if (GET_OWNED_CARDS_IDENTIFIER.equals(identifier)) {
+            handleGetOwnedCards(event);
+        } else if (GET_CARD_BATCH_IDENTIFIER.equals(identifier)) {
+            handleGetCardBatch(event);
+        } else if (GET_CARD_PAGE_IDENTIFIER.equals(identifier)) {
+            handleGetCardPage(event);
+        } else if (SUBSCRIBE_IDENTIFIER.equals(identifier)) {
+            handleSubscribe(event);
+        } else if (UNSUBSCRIBE_IDENTIFIER.equals(identifier)) {
+            handleUnsubscribe(event);
         } else if (GET_CARD_BY_ID_IDENTIFIER.equals(identifier)) {
             handleGetCardById(event);
         }
@@ -53,14 +107,9 @@ public class PacketListener implements Listener {
         if (targetPlayer == null) return;
 
         plugin.getPlayerDataManager().getEquippedCard(targetPlayer.getUniqueId()).thenAccept(card -> {
-            if (card != null) {
-                PacketSender.sendCustomData(
-                        requester,
-                        SEND_CARD_IDENTIFIER,
-                        card.getTexturePath(),
-                        card.getDisplayName(),
-                        card.getDescription()
-                );
+            CardPayload payload = card == null ? null : plugin.getCardManager().getPayloads().get(card.getId());
+            if (payload != null) {
+                plugin.getResponseDispatcher().send(requester, SEND_CARD_IDENTIFIER, payload.getEquipped());
             }
         });
     }
@@ -72,40 +121,223 @@ public class PacketListener implements Listener {
 
         if (targetPlayer == null) return;
 
-        plugin.getPlayerDataManager().getPlayerOwnedCards(targetPlayer.getUniqueId()).thenAccept(ownedCards -> {
-            Collection<NameCard> allCards = plugin.getCardManager().getAllCardsSorted();
-            Set<String> ownedCardIds = ownedCards.stream()
-                    .map(NameCard::getId)
-                    .collect(Collectors.toSet());
+        CardPayloads payloads = plugin.getCardManager().getPayloads();
+        plugin.getPlayerDataManager().getOwnedMask(targetPlayer.getUniqueId(), payloads.getCatalog()).thenAccept(owned -> {
+            List<CardPayload> payloadList = payloads.getPayloads();
+            List<String[]> messages = new ArrayList<>(payloadList.size());
+            for (int i = owned.nextSetBit(0); i >= 0; i = owned.nextSetBit(i + 1)) {
+                messages.add(payloadList.get(i).getEntry(true));
+            }
+            for (int i = owned.nextClearBit(0); i < payloadList.size(); i = owned.nextClearBit(i + 1)) {
+                messages.add(payloadList.get(i).getEntry(false));
+            }
+            plugin.getResponseDispatcher().send(requester, SEND_CARD_LIST_IDENTIFIER, messages);
+        });
+    }
 
-            for (NameCard card : ownedCards) {
-                PacketSender.sendCustomData(
+    /**
+     * 处理分块名片列表请求
+     * 条目顺序与逐条格式相同: 先是拥有的名片, 再是其余名片 (按 layer 排序)。
+     * @param event CustomPacketEvent
+     */
+    private void handleGetCardListChunked(CustomPacketEvent event) {
+        String targetPlayerName = event.getData().toArray(new String[0])[0];
+        Player targetPlayer = Bukkit.getPlayer(targetPlayerName);
+        Player requester = event.getPlayer();
+
+        if (targetPlayer == null) return;
+
+        CardPayloads payloads = plugin.getCardManager().getPayloads();
+        plugin.getPlayerDataManager().getOwnedMask(targetPlayer.getUniqueId(), payloads.getCatalog()).thenAccept(owned -> {
+            List<CardPayload> payloadList = payloads.getPayloads();
+            CardListEncoder encoder = new CardListEncoder();
+            for (int i = owned.nextSetBit(0); i >= 0; i = owned.nextSetBit(i + 1)) {
+                encoder.add(payloadList.get(i), true);
+            }
+            for (int i = owned.nextClearBit(0); i < payloadList.size(); i = owned.nextClearBit(i + 1)) {
+                encoder.add(payloadList.get(i), false);
+            }
+            plugin.getResponseDispatcher().send(requester, SEND_CARD_LIST_CHUNK_IDENTIFIER, encoder.encode(payloads.getMaxMessageBytes()));
+        });
+    }
+
+    /**
+     * 处理目录同步请求
+     * 请求内容: 目标玩家名, 客户端已缓存的目录版本号 (没有缓存时可省略)。
+     * 版本号不一致时先发送完整目录, 然后发送: 目录版本号, 拥有情况的位图。
+     * @param event CustomPacketEvent
+     */
+    private void handleGetOwnedCards(CustomPacketEvent event) {
+        String[] data = event.getData().toArray(new String[0]);
+        if (data.length == 0) return;
+        Player targetPlayer = Bukkit.getPlayer(data[0]);
+        Player requester = event.getPlayer();
+        String cachedVersion = data.length > 1 ? data[1] : "";
+
+        if (targetPlayer == null) return;
+
+        // 先取快照, 保证目录和位图使用同一个版本
+        CardPayloads payloads = plugin.getCardManager().getPayloads();
+        CardCatalog catalog = payloads.getCatalog();
+        // 发送队列先进先出, 目录一定先于位图到达客户端
+        if (!catalog.getVersion().equals(cachedVersion)) {
+            plugin.getResponseDispatcher().send(requester, SEND_CATALOG_IDENTIFIER, payloads.getCatalogMessages());
+        }
+
+        plugin.getPlayerDataManager().getOwnedMask(targetPlayer.getUniqueId(), catalog).thenAccept(owned ->
+                plugin.getResponseDispatcher().send(
                         requester,
-                        SEND_CARD_LIST_IDENTIFIER,
-                        card.getId(),
-                        card.getTexturePath(),
-                        card.getDisplayName(),
-                        card.getDescription(),
-                        "true"
-                );
+                        SEND_OWNED_CARDS_IDENTIFIER,
+                        catalog.getVersion(),
+                        CatalogEncoder.encodeOwned(owned)
+                ));
+    }
+
+    /**
+     * 处理批量佩戴名片请求
+     * 请求内容: 若干个玩家名或 UUID (超过 protocol.max-batch-players 的部分被忽略)。
+     * 玩家名只能解析在线玩家, UUID 可以查询离线玩家; 无法解析或没有名片的玩家不出现在应答中。
+     * @param event CustomPacketEvent
+     */
+    private void handleGetCardBatch(CustomPacketEvent event) {
+        Player requester = event.getPlayer();
+        Map<UUID, List<String>> requested = new LinkedHashMap<>();
+        for (String key : event.getData()) {
+            if (requested.size() >= maxBatchPlayers) break;
+            UUID uuid = resolvePlayer(key);
+            if (uuid != null) {
+                requested.computeIfAbsent(uuid, id -> new ArrayList<>(1)).add(key);
             }
+        }
 
-            for (NameCard card : allCards) {
-                if (!ownedCardIds.contains(card.getId())) {
-                    PacketSender.sendCustomData(
-                            requester,
-                            SEND_CARD_LIST_IDENTIFIER,
-                            card.getId(),
-                            card.getTexturePath(),
-                            card.getDisplayName(),
-                            card.getDescription(),
-                            "false"
-                    );
+        plugin.getPlayerDataManager().getEquippedCards(requested.keySet()).thenAccept(cards -> {
+            CardPayloads payloads = plugin.getCardManager().getPayloads();
+            EquippedCardEncoder encoder = new EquippedCardEncoder();
+            requested.forEach((uuid, keys) -> {
+                NameCard card = cards.get(uuid);
+                CardPayload payload = card == null ? null : payloads.get(card.getId());
+                if (payload == null) return;
+                for (String key : keys) {
+                    encoder.add(key, payload);
                 }
+            });
+            plugin.getResponseDispatcher().send(requester, SEND_CARD_BATCH_IDENTIFIER, encoder.encode(payloads.getMaxMessageBytes()));
+        });
+    }
+
+    /**
+     * 处理分页名片列表请求
+     * 请求内容 (末尾的筛选条件可以省略, 空字符串表示不筛选):
+     * 目标玩家名, 游标, 每页条数, 拥有情况 (all/owned/not_owned), 最小 layer, 最大 layer, 分类, 展示名关键字。
+     * @param event CustomPacketEvent
+     */
+    private void handleGetCardPage(CustomPacketEvent event) {
+        String[] data = event.getData().toArray(new String[0]);
+        if (data.length == 0) return;
+        Player targetPlayer = Bukkit.getPlayer(data[0]);
+        Player requester = event.getPlayer();
+
+        if (targetPlayer == null) return;
+
+        CardPayloads payloads = plugin.getCardManager().getPayloads();
+        CardQuery query = new CardQuery();
+        int cursor;
+        int pageSize;
+        try {
+            cursor = CardPageEncoder.parseCursor(argument(data, 1), payloads.getCatalog().getVersion());
+            pageSize = argument(data, 2).isEmpty() ? maxPageSize : Math.min(maxPageSize, Math.max(1, Integer.parseInt(argument(data, 2))));
+            query.ownership(CardQuery.Ownership.parse(argument(data, 3)))
+                    .layers(argument(data, 4).isEmpty() ? Integer.MIN_VALUE : Integer.parseInt(argument(data, 4)),
+                            argument(data, 5).isEmpty() ? Integer.MAX_VALUE : Integer.parseInt(argument(data, 5)))
+                    .category(argument(data, 6))
+                    .nameContains(argument(data, 7));
+        } catch (IllegalArgumentException e) {
+            // 格式错误的请求直接忽略
+            return;
+        }
+
+        plugin.getPlayerDataManager().getOwnedMask(targetPlayer.getUniqueId(), payloads.getCatalog()).thenAccept(owned -> {
+            CardQuery.Page page = query.execute(payloads.getCatalog(), owned, cursor, pageSize);
+            plugin.getResponseDispatcher().send(requester, SEND_CARD_PAGE_IDENTIFIER,
+                    CardPageEncoder.encode(payloads, page, owned, payloads.getMaxMessageBytes()));
+        });
+    }
+
+    private static String argument(String[] data, int index) {
+        return index < data.length && data[index] != null ? data[index].trim() : "";
+    }
+
+    /**
+     * 处理订阅请求
+     * 请求内容: 若干个在线玩家的玩家名或 UUID。新订阅的玩家会立即推送一次当前名片,
+     * 之后只在其佩戴名片变化时推送: 玩家名, UUID, 贴图路径, 展示名, 描述, 订阅状态。
+     * 不在追踪范围内的玩家不会被订阅, 立即推送一条 expired 状态的消息。
+     * @param event CustomPacketEvent
+     */
+    private void handleSubscribe(CustomPacketEvent event) {
+        Player requester = event.getPlayer();
+        SubscriptionManager subscriptions = plugin.getSubscriptionManager();
+        List<UUID> targets = new ArrayList<>();
+        List<String[]> rejected = new ArrayList<>();
+        for (String key : event.getData()) {
+            UUID uuid = resolvePlayer(key);
+            if (uuid == null) continue;
+            // 只能订阅在线且在范围内的玩家, 否则下一次检查时订阅就会被清除
+            Player target = Bukkit.getPlayer(uuid);
+            if (target != null && subscriptions.inRange(requester, target)) {
+                targets.add(uuid);
+            } else {
+                rejected.add(SubscriptionManager.expiredMessage(uuid));
             }
+        }
+        if (!rejected.isEmpty()) {
+            plugin.getResponseDispatcher().send(requester, SubscriptionManager.PUSH_IDENTIFIER, rejected);
+        }
+        List<UUID> added = subscriptions.subscribe(requester.getUniqueId(), targets);
+        if (added.isEmpty()) return;
+
+        plugin.getPlayerDataManager().getEquippedCards(added).thenAccept(cards -> {
+            CardPayloads payloads = plugin.getCardManager().getPayloads();
+            // 推送内容中的玩家名要在主线程中读取
+            plugin.getResponseDispatcher().execute(() -> {
+                List<String[]> messages = new ArrayList<>(cards.size());
+                cards.forEach((uuid, card) -> messages.add(SubscriptionManager.pushMessage(uuid,
+                        card == null ? null : payloads.get(card.getId()))));
+                plugin.getResponseDispatcher().send(requester, SubscriptionManager.PUSH_IDENTIFIER, messages);
+            });
         });
     }
 
+    /**
+     * 处理取消订阅请求
+     * 请求内容: 若干个玩家名或 UUID, 为空时取消全部订阅。
+     * @param event CustomPacketEvent
+     */
+    private void handleUnsubscribe(CustomPacketEvent event) {
+        List<UUID> targets = new ArrayList<>();
+        for (String key : event.getData()) {
+            UUID uuid = resolvePlayer(key);
+            if (uuid != null) {
+                targets.add(uuid);
+            }
+        }
+        if (!event.getData().isEmpty() && targets.isEmpty()) return;
+        plugin.getSubscriptionManager().unsubscribe(event.getPlayer().getUniqueId(), targets);
+    }
+
+    private static UUID resolvePlayer(String key) {
+        if (key == null || key.isEmpty()) return null;
+        if (key.length() == 36) {
+            try {
+                return UUID.fromString(key);
+            } catch (IllegalArgumentException ignored) {
+                // 不是 UUID, 按玩家名处理
+            }
+        }
+        Player player = Bukkit.getPlayerExact(key);
+        return player == null ? null : player.getUniqueId();
+    }
+
     /**
      * 处理根据ID获取单张名片详细信息的请求
      * @param event CustomPacketEvent
@@ -117,27 +349,15 @@ public class PacketListener implements Listener {
 
         String requestedCardId = event.getData().toArray(new String[0])[0];
         Player requester = event.getPlayer();
-        NameCard card = plugin.getCardManager().getCard(requestedCardId);
-
-        if (card != null) {
-            plugin.getPlayerDataManager().playerHasCard(requester.getUniqueId(), requestedCardId).thenAccept(hasCard -> {
-                Bukkit.getScheduler().runTask(plugin, () -> {
-                    // [已修改] 在参数最前面加入了名片ID
-                    // 格式: 名片ID, 貼圖路徑, 展示名, 描述, 是否擁有
-                    PacketSender.sendCustomData(
-                            requester,
-                            SEND_CARD_BY_ID_IDENTIFIER,
-                            card.getId(),             // 1. 名片ID
-                            card.getTexturePath(),    // 2. 贴图路径
-                            card.getDisplayName(),    // 3. 展示名
-                            card.getDescription(),    // 4. 描述
-                            String.valueOf(hasCard)   // 5. 是否拥有
-                    );
-                });
-            });
+        CardPayload payload = plugin.getCardManager().getPayloads().get(requestedCardId);
+
+        if (payload != null) {
+            // 格式: 名片ID, 貼圖路徑, 展示名, 描述, 是否擁有
+            plugin.getPlayerDataManager().playerHasCard(requester.getUniqueId(), requestedCardId).thenAccept(hasCard ->
+                    plugin.getResponseDispatcher().send(requester, SEND_CARD_BY_ID_IDENTIFIER, payload.getEntry(hasCard)));
         } else {
             // 如果名片不存在，返回的 "null" 不需要附带ID
-            PacketSender.sendCustomData(
+            plugin.getResponseDispatcher().send(
                     requester,
                     SEND_CARD_BY_ID_IDENTIFIER,
                     "null"
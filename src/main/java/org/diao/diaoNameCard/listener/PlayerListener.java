@@ -0,0 +1,68 @@
+package org.diao.diaoNameCard.listener;
+
+import org.bukkit.Bukkit;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.diao.diaoNameCard.Main;
+
+/**
+ * 玩家登录/退出监听器
+ * 负责在登录时预加载玩家的名片数据，并在退出时释放会话缓存
+ * 同时维护在线玩家名的补全索引
+ */
+public class PlayerListener implements Listener {
+
+    private final Main plugin;
+
+    public PlayerListener(Main plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * 预登录事件本身就在异步线程中，可以直接等待数据库加载完成
+     * 使用 MONITOR 优先级, 只为最终允许进入的玩家加载数据
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+        try {
+            plugin.getPlayerDataManager().preloadSession(event.getUniqueId()).join();
+        } catch (Exception e) {
+            // 加载失败时不阻止玩家进入, 读操作会回退到直接查询数据库
+            plugin.getLogger().warning("预加载玩家 " + event.getName() + " 的名片数据失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 白名单、封禁、满员等原因拒绝登录时不会触发退出事件, 在这里释放预加载的会话
+     * 同一玩家已经在线时保留其会话
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onLogin(PlayerLoginEvent event) {
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED
+                && Bukkit.getPlayer(event.getPlayer().getUniqueId()) == null) {
+            plugin.getPlayerDataManager().unloadSession(event.getPlayer().getUniqueId());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        plugin.getPlayerDataManager().confirmJoin(event.getPlayer().getUniqueId());
+        plugin.getPlayerNameIndex().add(event.getPlayer());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onQuit(PlayerQuitEvent event) {
+        plugin.getPlayerNameIndex().remove(event.getPlayer());
+        plugin.getPlayerDataManager().unloadSession(event.getPlayer().getUniqueId());
+        plugin.getRequestLimiter().forget(event.getPlayer().getUniqueId());
+        plugin.getSubscriptionManager().forget(event.getPlayer().getUniqueId());
+    }
+}
@@ -0,0 +1,108 @@
+package org.diao.diaoNameCard.manager;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 批量发放/移除名片的后台任务状态
+ */
+public class BulkJob {
+
+    /**
+     * 任务状态
+     */
+    public enum State {
+        QUEUED("排队中"),
+        RUNNING("执行中"),
+        DONE("已完成"),
+        CANCELLED("已取消"),
+        FAILED("失败");
+
+        private final String displayName;
+
+        State(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    private final int id;
+    private final String description;
+    private final AtomicLong processed = new AtomicLong();
+    private final AtomicLong affected = new AtomicLong();
+    private volatile long total = -1; // -1 表示总数未知
+    private volatile State state = State.QUEUED;
+    private volatile boolean cancelRequested;
+
+    public BulkJob(int id, String description) {
+        this.id = id;
+        this.description = description;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return 已处理的玩家/行数
+     */
+    public long getProcessed() {
+        return processed.get();
+    }
+
+    /**
+     * @return 实际发生变化的行数 (例如已拥有该名片的玩家不计入)
+     */
+    public long getAffected() {
+        return affected.get();
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    public boolean isCancelRequested() {
+        return cancelRequested;
+    }
+
+    /**
+     * 请求取消任务, 任务会在当前分块完成后停止
+     */
+    public void cancel() {
+        cancelRequested = true;
+    }
+
+    void setTotal(long total) {
+        this.total = total;
+    }
+
+    void setState(State state) {
+        this.state = state;
+    }
+
+    void addProgress(long processed, long affected) {
+        this.processed.addAndGet(processed);
+        this.affected.addAndGet(affected);
+    }
+
+    /**
+     * @return 形如 "1200/5000 (24%)" 的进度描述
+     */
+    public String getProgressText() {
+        long done = processed.get();
+        if (total <= 0) {
+            return String.valueOf(done);
+        }
+        return done + "/" + total + " (" + Math.min(100, done * 100 / total) + "%)";
+    }
+}
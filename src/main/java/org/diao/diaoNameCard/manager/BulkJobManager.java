@@ -0,0 +1,297 @@
+package org.diao.diaoNameCard.manager;
+
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.command.CommandSender;
+import org.diao.diaoNameCard.Main;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 批量任务管理器
+ * 负责给大量 (包括离线) 玩家发放名片或从所有玩家处移除名片。
+ * 任务在一个专用的后台线程中逐个执行，按分块写入数据库，并按配置限速，避免影响正在运行的服务器。
+ * 需要的玩家列表在创建任务时 (主线程) 取快照交给后台线程, 后台线程不调用 Bukkit API。
+ */
+public class BulkJobManager {
+
+    // 最多保留的已结束任务数量 (用于 /dnc bulk status)
+    private static final int MAX_FINISHED_JOBS = 10;
+
+    private final Main plugin;
+    private final int chunkSize;
+    private final int maxRowsPerSecond;
+    private final long progressIntervalMillis;
+    private final Map<Integer, BulkJob> jobs = new ConcurrentSkipListMap<>();
+    private final AtomicInteger nextId = new AtomicInteger(1);
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "DiaoNameCard-BulkJob");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public BulkJobManager(Main plugin) {
+        this.plugin = plugin;
+        this.chunkSize = Math.max(1, plugin.getConfig().getInt("bulk.chunk-size", 500));
+        this.maxRowsPerSecond = Math.max(0, plugin.getConfig().getInt("bulk.max-rows-per-second", 2000));
+        this.progressIntervalMillis = TimeUnit.SECONDS.toMillis(Math.max(1, plugin.getConfig().getInt("bulk.progress-interval-seconds", 5)));
+    }
+
+    /**
+     * 给名单文件中的所有玩家发放名片
+     * 文件位于插件数据目录下，每行一个 UUID 或玩家名 (玩家名只匹配创建任务时本服务器见过的玩家)。
+     * 必须在主线程调用。
+     * @param sender 发起者, 用于接收进度
+     * @param file 名单文件
+     * @param cardId 名片ID
+     * @return 创建的任务
+     */
+    public BulkJob grantFromFile(CommandSender sender, File file, String cardId) {
+        BulkJob job = createJob("从文件 " + file.getName() + " 发放名片 " + cardId);
+        Map<String, UUID> namesToUuid = knownPlayerNames();
+        submit(sender, job, () -> {
+            try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8)) {
+                List<UUID> chunk = new ArrayList<>(chunkSize);
+                long startedAt = System.currentTimeMillis();
+                long lastReport = startedAt;
+                String line;
+                while ((line = reader.readLine()) != null && !job.isCancelRequested()) {
+                    line = line.trim();
+                    if (line.isEmpty() || line.startsWith("#")) continue;
+
+                    UUID uuid = parseUuid(line);
+                    if (uuid == null) {
+                        uuid = namesToUuid.get(line.toLowerCase());
+                        if (uuid == null) {
+                            plugin.getLogger().warning("[批量任务 #" + job.getId() + "] 未知的玩家: " + line);
+                            continue;
+                        }
+                    }
+                    chunk.add(uuid);
+                    if (chunk.size() >= chunkSize) {
+                        grantChunk(job, chunk, cardId, startedAt);
+                        chunk = new ArrayList<>(chunkSize);
+                        lastReport = reportProgress(sender, job, lastReport);
+                    }
+                }
+                if (!chunk.isEmpty() && !job.isCancelRequested()) {
+                    grantChunk(job, chunk, cardId, startedAt);
+                }
+            }
+        });
+        return job;
+    }
+
+    /**
+     * 给本服务器见过的所有玩家 (创建任务时的快照) 发放名片
+     * 必须在主线程调用。
+     * @param sender 发起者, 用于接收进度
+     * @param cardId 名片ID
+     * @return 创建的任务
+     */
+    public BulkJob grantToAll(CommandSender sender, String cardId) {
+        BulkJob job = createJob("给所有玩家发放名片 " + cardId);
+        OfflinePlayer[] offlinePlayers = Bukkit.getOfflinePlayers();
+        List<UUID> players = new ArrayList<>(offlinePlayers.length);
+        for (OfflinePlayer player : offlinePlayers) {
+            players.add(player.getUniqueId());
+        }
+        submit(sender, job, () -> {
+            job.setTotal(players.size());
+            long startedAt = System.currentTimeMillis();
+            long lastReport = startedAt;
+            for (int from = 0; from < players.size() && !job.isCancelRequested(); from += chunkSize) {
+                List<UUID> chunk = new ArrayList<>(players.subList(from, Math.min(players.size(), from + chunkSize)));
+                grantChunk(job, chunk, cardId, startedAt);
+                lastReport = reportProgress(sender, job, lastReport);
+            }
+        });
+        return job;
+    }
+
+    /**
+     * 从所有玩家处移除某个名片, 正在佩戴该名片的玩家会恢复为默认名片
+     * @param sender 发起者, 用于接收进度
+     * @param cardId 名片ID
+     * @return 创建的任务
+     */
+    public BulkJob revokeFromAll(CommandSender sender, String cardId) {
+        BulkJob job = createJob("从所有玩家处移除名片 " + cardId);
+        submit(sender, job, () -> {
+            try {
+                job.setTotal(plugin.getDatabase().countCardOwners(cardId).join());
+                long startedAt = System.currentTimeMillis();
+                long lastReport = startedAt;
+                int deleted;
+                do {
+                    deleted = plugin.getDatabase().removeCardFromAll(cardId, chunkSize).join();
+                    job.addProgress(deleted, deleted);
+                    throttle(job, startedAt);
+                    lastReport = reportProgress(sender, job, lastReport);
+                } while (deleted >= chunkSize && !job.isCancelRequested());
+
+                if (!job.isCancelRequested()) {
+                    plugin.getDatabase().clearEquippedCard(cardId).join();
+                }
+            } finally {
+                // 无法逐个判断哪些在线玩家受影响, 直接重新加载所有在线玩家的缓存
+                plugin.getPlayerDataManager().reloadSessions();
+            }
+        });
+        return job;
+    }
+
+    /**
+     * 请求取消一个任务
+     * @param id 任务ID
+     * @return 任务是否存在且尚未结束
+     */
+    public boolean cancel(int id) {
+        BulkJob job = jobs.get(id);
+        if (job == null || (job.getState() != BulkJob.State.QUEUED && job.getState() != BulkJob.State.RUNNING)) {
+            return false;
+        }
+        job.cancel();
+        return true;
+    }
+
+    /**
+     * @return 所有正在执行和最近结束的任务 (按ID排序)
+     */
+    public Collection<BulkJob> getJobs() {
+        return jobs.values();
+    }
+
+    /**
+     * 插件卸载时取消所有任务并停止后台线程
+     */
+    public void shutdown() {
+        jobs.values().forEach(BulkJob::cancel);
+        worker.shutdown();
+        try {
+            worker.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private BulkJob createJob(String description) {
+        BulkJob job = new BulkJob(nextId.getAndIncrement(), description);
+        jobs.put(job.getId(), job);
+        // 清理较早结束的任务记录
+        List<Integer> finished = new ArrayList<>();
+        for (BulkJob existing : jobs.values()) {
+            if (existing.getState() != BulkJob.State.QUEUED && existing.getState() != BulkJob.State.RUNNING) {
+                finished.add(existing.getId());
+            }
+        }
+        for (int i = 0; i < finished.size() - MAX_FINISHED_JOBS; i++) {
+            jobs.remove(finished.get(i));
+        }
+        return job;
+    }
+
+    private void submit(CommandSender sender, BulkJob job, JobBody body) {
+        worker.execute(() -> {
+            if (job.isCancelRequested()) {
+                job.setState(BulkJob.State.CANCELLED);
+                return;
+            }
+            job.setState(BulkJob.State.RUNNING);
+            message(sender, ChatColor.YELLOW + "[批量任务 #" + job.getId() + "] 开始: " + job.getDescription());
+            try {
+                body.run();
+                job.setState(job.isCancelRequested() ? BulkJob.State.CANCELLED : BulkJob.State.DONE);
+                message(sender, ChatColor.GREEN + "[批量任务 #" + job.getId() + "] " + job.getState().getDisplayName()
+                        + ", 已处理 " + job.getProgressText() + ", 实际变更 " + job.getAffected() + " 行。");
+            } catch (Exception e) {
+                job.setState(BulkJob.State.FAILED);
+                plugin.getLogger().severe("[批量任务 #" + job.getId() + "] 执行失败: " + e.getMessage());
+                message(sender, ChatColor.RED + "[批量任务 #" + job.getId() + "] 执行失败: " + e.getMessage()
+                        + " (已处理 " + job.getProgressText() + ")");
+            }
+        });
+    }
+
+    private void grantChunk(BulkJob job, List<UUID> chunk, String cardId, long startedAt) {
+        String id = cardId.toLowerCase();
+        int inserted = plugin.getDatabase().addCardToPlayers(chunk, id).join();
+        plugin.getPlayerDataManager().applyBulkGrant(chunk, id);
+        job.addProgress(chunk.size(), inserted);
+        throttle(job, startedAt);
+    }
+
+    /**
+     * 按 bulk.max-rows-per-second 限速: 处理得比预期快时休眠
+     */
+    private void throttle(BulkJob job, long startedAt) {
+        if (maxRowsPerSecond <= 0) return;
+        long expectedMillis = job.getProcessed() * 1000L / maxRowsPerSecond;
+        long sleepMillis = expectedMillis - (System.currentTimeMillis() - startedAt);
+        if (sleepMillis > 0) {
+            try {
+                Thread.sleep(sleepMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                job.cancel();
+            }
+        }
+    }
+
+    private long reportProgress(CommandSender sender, BulkJob job, long lastReport) {
+        long now = System.currentTimeMillis();
+        if (now - lastReport < progressIntervalMillis) {
+            return lastReport;
+        }
+        message(sender, ChatColor.GRAY + "[批量任务 #" + job.getId() + "] 进度: " + job.getProgressText());
+        return now;
+    }
+
+    private void message(CommandSender sender, String message) {
+        // 消息统一回到主线程发送; 插件正在卸载时不再调度任务
+        if (!plugin.isEnabled()) return;
+        plugin.getResponseDispatcher().message(sender, message);
+    }
+
+    /**
+     * 本服务器见过的玩家名 (小写) 到 UUID 的映射, 只能在主线程调用
+     */
+    private static Map<String, UUID> knownPlayerNames() {
+        Map<String, UUID> names = new HashMap<>();
+        for (OfflinePlayer player : Bukkit.getOfflinePlayers()) {
+            if (player.getName() != null) {
+                names.put(player.getName().toLowerCase(), player.getUniqueId());
+            }
+        }
+        return names;
+    }
+
+    private static UUID parseUuid(String value) {
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    @FunctionalInterface
+    private interface JobBody {
+        void run() throws IOException;
+    }
+}
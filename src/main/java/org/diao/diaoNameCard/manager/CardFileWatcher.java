@@ -0,0 +1,177 @@
+package org.diao.diaoNameCard.manager;
+
+import org.diao.diaoNameCard.Main;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 名片配置文件监听器 (可选, namecards.watch.enabled)
+ * 监听插件数据文件夹和 cards/ 文件夹, config.yml 或名片文件被修改、替换或删除后
+ * (包括 cards/ 文件夹在运行期间被创建、删除或删除后重新创建)
+ * 等待一段时间 (namecards.watch.debounce-millis) 不再变化时,
+ * 在后台线程重新加载名片。编辑器保存一次文件通常会触发多个事件, 防抖后只加载一次;
+ * 文件内容与上次相同、或配置有语法错误时保留原有名片。整个过程都不占用主线程。
+ */
+public class CardFileWatcher {
+
+    private static final String CONFIG_FILE = "config.yml";
+
+    private final Main plugin;
+    private final boolean enabled;
+    private final long debounceMillis;
+    private WatchService watchService;
+    private Path folder;
+    // 插件数据文件夹的 WatchKey
+    private WatchKey folderKey;
+    // cards/ 文件夹的 WatchKey, 文件夹不存在时为 null (只在监听线程中修改)
+    private WatchKey cardsKey;
+    private Thread watchThread;
+    private ScheduledExecutorService reloadExecutor;
+    // 尚未执行的重新加载, 新事件到达时取消后重新计时
+    private ScheduledFuture<?> pendingReload;
+
+    public CardFileWatcher(Main plugin) {
+        this.plugin = plugin;
+        this.enabled = plugin.getConfig().getBoolean("namecards.watch.enabled", false);
+        this.debounceMillis = Math.max(50L, plugin.getConfig().getLong("namecards.watch.debounce-millis", 500L));
+    }
+
+    public void start() {
+        if (!enabled) return;
+        folder = plugin.getDataFolder().toPath();
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            folderKey = folder.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            registerCardsFolder(watchService);
+        } catch (IOException e) {
+            plugin.getLogger().severe("无法监听配置文件夹, 名片自动重载未启动: " + e.getMessage());
+            return;
+        }
+        reloadExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "DiaoNameCard-CardReload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        watchThread = new Thread(this::watch, "DiaoNameCard-CardWatcher");
+        watchThread.setDaemon(true);
+        watchThread.start();
+        plugin.getLogger().info("名片自动重载已启动, 正在监听 " + CONFIG_FILE
+                + (cardsKey != null ? " 和 " + CardShardLoader.CARDS_FOLDER + "/" : "") + "。");
+    }
+
+    public void stop() {
+        if (watchService != null) {
+            try {
+                // 关闭后 take() 抛出 ClosedWatchServiceException, 监听线程随之退出
+                watchService.close();
+            } catch (IOException ignored) {
+            }
+            watchService = null;
+        }
+        if (watchThread != null) {
+            watchThread.interrupt();
+            watchThread = null;
+        }
+        if (reloadExecutor != null) {
+            reloadExecutor.shutdownNow();
+            reloadExecutor = null;
+        }
+    }
+
+    private void watch() {
+        WatchService service = watchService;
+        while (true) {
+            WatchKey key;
+            try {
+                key = service.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            boolean changed = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                String name = String.valueOf(event.context());
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // 事件溢出时无法确定哪些文件变了, 按变化处理; cards/ 可能在此期间被创建
+                    if (key == folderKey) {
+                        tryRegisterCardsFolder(service);
+                    }
+                    changed = true;
+                } else if (key != folderKey) {
+                    changed |= CardShardLoader.isCardFile(name);
+                } else if (CardShardLoader.CARDS_FOLDER.equals(name)) {
+                    // cards/ 被创建 (或删除后重新创建) 时开始监听新文件夹, 被删除时其中的名片也随之消失
+                    if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                        tryRegisterCardsFolder(service);
+                    }
+                    changed = true;
+                } else if (CONFIG_FILE.equals(name)) {
+                    changed = true;
+                }
+            }
+            if (changed) {
+                scheduleReload();
+            }
+            if (!key.reset()) {
+                if (key != folderKey) {
+                    // cards/ 文件夹被删除, 仍继续监听 config.yml (重新创建后会再次注册)
+                    if (key == cardsKey) {
+                        cardsKey = null;
+                    }
+                    continue;
+                }
+                plugin.getLogger().warning("配置文件夹已不可访问, 名片自动重载已停止。");
+                return;
+            }
+        }
+    }
+
+    /**
+     * 开始监听 cards/ 文件夹, 文件夹不存在时不做任何事
+     * 同一路径的文件夹被删除后重新创建时会得到新的 WatchKey, 因此每次创建事件都重新注册。
+     */
+    private void registerCardsFolder(WatchService service) throws IOException {
+        Path cards = folder.resolve(CardShardLoader.CARDS_FOLDER);
+        if (Files.isDirectory(cards)) {
+            cardsKey = cards.register(service, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        }
+    }
+
+    private void tryRegisterCardsFolder(WatchService service) {
+        try {
+            registerCardsFolder(service);
+        } catch (IOException | ClosedWatchServiceException e) {
+            plugin.getLogger().warning("无法监听 " + CardShardLoader.CARDS_FOLDER + "/ 文件夹: " + e.getMessage());
+        }
+    }
+
+    private synchronized void scheduleReload() {
+        ScheduledExecutorService executor = reloadExecutor;
+        if (executor == null || executor.isShutdown()) return;
+        if (pendingReload != null) {
+            pendingReload.cancel(false);
+        }
+        pendingReload = executor.schedule(this::reload, debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void reload() {
+        try {
+            plugin.getCardManager().reloadFromFile(false);
+        } catch (Exception e) {
+            plugin.getLogger().severe("自动重新加载名片配置失败, 保留原有名片: " + e.getMessage());
+        }
+    }
+}
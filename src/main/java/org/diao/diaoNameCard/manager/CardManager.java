@@ -1,72 +1,280 @@
 package org.diao.diaoNameCard.manager;
 
-import org.bukkit.ChatColor;
+import org.bukkit.Bukkit;
 import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
 import org.diao.diaoNameCard.Main;
+import org.diao.diaoNameCard.model.CardCatalog;
+import org.diao.diaoNameCard.model.CatalogDiff;
 import org.diao.diaoNameCard.model.NameCard;
+import org.diao.diaoNameCard.protocol.CardPayloads;
+import org.diao.diaoNameCard.protocol.CatalogDeltaEncoder;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 名片配置管理器
- * 负责从 config.yml 加载和管理所有名片信息
+ * 负责从 config.yml 和 cards/ 文件夹加载和管理所有名片信息
+ * 名片目录是不可变快照, 重载时在后台线程解析配置并生成新快照, 最后一次性替换引用,
+ * 其他线程读取时不会看到加载到一半的目录。
+ * 重载后与旧目录逐张对比, 只把新增、修改和删除的名片推送给在线客户端 (可由 CardFileWatcher 在文件变化时自动触发)。
  */
 public class CardManager {
 
+    // 名片配置变化后推送给客户端的目录增量
+    public static final String DELTA_IDENTIFIER = "dnc_catalog_delta";
+
     private final Main plugin;
-    private final Map<String, NameCard> nameCards = new HashMap<>();
-    private String defaultCardId;
+    private final CardShardLoader shardLoader = new CardShardLoader();
+    // 目录快照和预先拼好的消息内容, 每次加载后整体替换
+    private volatile CardPayloads payloads = CardPayloads.EMPTY;
+    // 保证多次重载按发起顺序生效
+    private final Object reloadLock = new Object();
+    // 上次成功应用的 config.yml 内容和 cards/ 文件夹签名, 由 reloadLock 保护
+    private byte[] loadedContent;
+    private String loadedShards;
 
     public CardManager(Main plugin) {
         this.plugin = plugin;
     }
 
+    public void stop() {
+        shardLoader.close();
+    }
+
     /**
-     * 从配置文件加载所有名片信息
+     * 从已加载的配置加载所有名片信息 (插件启用时调用)
+     * 源文件与上次解析时相同则直接读取目录快照, 否则解析 YAML 并重新生成快照。
      */
     public void loadCards() {
-        nameCards.clear(); // 清空旧数据
-        plugin.reloadConfig(); // 重新加载配置文件
+        byte[] sourceHash = null;
+        try {
+            sourceHash = hashSources(Files.readAllBytes(configFile().toPath()));
+        } catch (IOException e) {
+            plugin.getLogger().warning("读取 config.yml 失败, 不使用目录快照: " + e.getMessage());
+        }
+        if (sourceHash != null) {
+            try {
+                CardCatalog cached = CatalogSnapshot.read(plugin.getDataFolder(), sourceHash);
+                if (cached != null) {
+                    plugin.getLogger().info("名片配置没有变化, 使用目录快照。");
+                    publish(CardPayloads.build(cached, maxMessageBytes(plugin.getConfig())));
+                    return;
+                }
+            } catch (IOException e) {
+                plugin.getLogger().warning("读取目录快照失败, 重新解析名片配置: " + e.getMessage());
+            }
+        }
 
-        ConfigurationSection cardsSection = plugin.getConfig().getConfigurationSection("namecards.cards");
-        if (cardsSection == null) {
-            plugin.getLogger().warning("配置文件中未找到 'namecards.cards' 部分，无法加载名片。");
+        List<CardShardLoader.Shard> shards = shardLoader.load(plugin.getDataFolder());
+        // 启动时没有可保留的旧目录, 读取失败的文件跳过, 其余名片照常加载
+        int failed = reportErrors(shards);
+        CardPayloads built = buildPayloads(plugin.getConfig(), shards);
+        publish(built);
+        // 有文件读取失败时目录不完整, 不写快照, 下次启动重新解析
+        if (failed == 0) {
+            writeSnapshot(built.getCatalog(), sourceHash);
+        }
+    }
+
+    /**
+     * 在后台线程重新读取 config.yml 和 cards/ 文件夹并替换名片目录 (/dnc reload)
+     * 文件读取和 YAML 解析都不在主线程进行; 其他配置项仍需重启插件才能生效。
+     * @return 新目录的 CompletableFuture, 读取失败时异常完成 (原目录保持不变)
+     */
+    public CompletableFuture<CardCatalog> reloadCards() {
+        CompletableFuture<CardCatalog> future = new CompletableFuture<>();
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            try {
+                future.complete(reloadFromFile(true));
+            } catch (Exception e) {
+                plugin.getLogger().severe("重新加载名片配置时出错: " + e.getMessage());
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 在调用线程上读取 config.yml 和 cards/ 文件夹并应用名片变更, 不能在主线程调用
+     * 只有内容发生变化的名片会推送给客户端 (DELTA_IDENTIFIER), 目录没有变化时不替换。
+     * @param force 为 false 时文件内容与上次读取的完全相同则直接跳过 (编辑器保存时常会触发多次修改事件)
+     * @return 生效的目录
+     * @throws IOException config.yml 读取失败或 cards/ 中有文件读取失败
+     * @throws InvalidConfigurationException YAML 语法错误
+     */
+    public CardCatalog reloadFromFile(boolean force) throws IOException, InvalidConfigurationException {
+        synchronized (reloadLock) {
+            byte[] content = Files.readAllBytes(configFile().toPath());
+            String shardSignature = CardShardLoader.signature(plugin.getDataFolder());
+            if (!force && Arrays.equals(content, loadedContent) && shardSignature.equals(loadedShards)) {
+                return payloads.getCatalog();
+            }
+            byte[] sourceHash = hashSources(content);
+            // loadConfiguration 遇到语法错误时会返回空配置, 这里需要让错误抛出以保留原目录
+            YamlConfiguration config = new YamlConfiguration();
+            config.loadFromString(new String(content, StandardCharsets.UTF_8));
+            List<CardShardLoader.Shard> shards = shardLoader.load(plugin.getDataFolder());
+            // 任意一个名片文件读取失败都保留原目录, 否则该文件中的名片会被当作已删除
+            int failed = reportErrors(shards);
+            if (failed > 0) {
+                throw new IOException(failed + " 个名片文件读取失败");
+            }
+            CardPayloads built = buildPayloads(config, shards);
+            CardCatalog catalog = apply(built);
+            loadedContent = content;
+            loadedShards = shardSignature;
+            writeSnapshot(built.getCatalog(), sourceHash);
+            return catalog;
+        }
+    }
+
+    /**
+     * 与当前目录对比后一次性替换, 并把变化的名片推送给所有在线客户端
+     */
+    private CardCatalog apply(CardPayloads built) {
+        CardPayloads previous = payloads;
+        CatalogDiff diff = CatalogDiff.compute(previous.getCatalog(), built.getCatalog());
+        if (diff.isEmpty()
+                && previous.getMaxMessageBytes() == built.getMaxMessageBytes()
+                && Objects.equals(previous.getCatalog().getDefaultCardId(), built.getCatalog().getDefaultCardId())) {
+            plugin.getLogger().info("名片配置没有变化。");
+            return previous.getCatalog();
+        }
+        publish(built);
+        if (!diff.isEmpty()) {
+            plugin.getLogger().info("名片变更: 新增 " + diff.getAdded().size() + " 个, 修改 " + diff.getModified().size()
+                    + " 个, 删除 " + diff.getRemoved().size() + " 个。");
+            plugin.getResponseDispatcher().broadcastAll(DELTA_IDENTIFIER, CatalogDeltaEncoder.encode(
+                    previous.getCatalog(), built.getCatalog(), diff, built.getMaxMessageBytes()));
+        }
+        return built.getCatalog();
+    }
+
+    private void addCard(Map<String, NameCard> nameCards, Map<String, String> sources, NameCard card, String source) {
+        String key = card.getId().toLowerCase(); // 使用小写ID作为键，避免大小写问题
+        String existing = sources.putIfAbsent(key, source);
+        if (existing != null) {
+            plugin.getLogger().warning("名片ID '" + card.getId() + "' 在 " + existing + " 和 " + source + " 中重复定义，使用 " + existing + " 中的定义。");
             return;
         }
+        nameCards.put(key, card);
+    }
 
-        for (String cardId : cardsSection.getKeys(false)) {
-            int layer = cardsSection.getInt(cardId + ".layer");
-            String texture = cardsSection.getString(cardId + ".texture", "");
-            // 支持颜色代码
-            String displayName = ChatColor.translateAlternateColorCodes('&', cardsSection.getString(cardId + ".display-name", "未命名名片"));
-            String description = ChatColor.translateAlternateColorCodes('&', cardsSection.getString(cardId + ".description", ""));
+    private void publish(CardPayloads built) {
+        this.payloads = built;
+        plugin.getLogger().info("成功加载了 " + built.getCatalog().size() + " 个名片 (目录版本 " + built.getCatalog().getVersion() + ")。");
+    }
 
-            NameCard card = new NameCard(cardId, layer, texture, displayName, description);
-            nameCards.put(cardId.toLowerCase(), card); // 使用小写ID作为键，避免大小写问题
+    private File configFile() {
+        return new File(plugin.getDataFolder(), "config.yml");
+    }
+
+    /**
+     * 在解析之前计算源文件哈希
+     * @param configContent 即将解析的 config.yml 内容
+     * @return 哈希, 读取失败时为 null (本次不使用也不写入快照)
+     */
+    private byte[] hashSources(byte[] configContent) {
+        try {
+            return CatalogSnapshot.hashSources(configContent, plugin.getDataFolder());
+        } catch (IOException e) {
+            plugin.getLogger().warning("计算名片配置哈希失败, 不使用目录快照: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeSnapshot(CardCatalog catalog, byte[] sourceHash) {
+        if (sourceHash == null) return;
+        try {
+            CatalogSnapshot.write(plugin.getDataFolder(), catalog, sourceHash);
+        } catch (IOException e) {
+            // 快照只用于加快启动, 写入失败不影响当前目录
+            plugin.getLogger().warning("写入目录快照失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 输出每个读取失败的名片文件
+     * @return 失败的文件数
+     */
+    private int reportErrors(List<CardShardLoader.Shard> shards) {
+        int failed = 0;
+        for (CardShardLoader.Shard shard : shards) {
+            if (shard.getError() != null) {
+                plugin.getLogger().severe("读取名片文件 " + CardShardLoader.CARDS_FOLDER + "/" + shard.getName() + " 失败: " + shard.getError());
+                failed++;
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * 根据配置和名片文件生成目录快照, 不修改任何共享状态
+     * 先加载 config.yml 中的名片, 再按文件名顺序合并 cards/ 中的名片; ID 重复时保留先出现的定义。
+     * @param config 插件配置
+     * @param shards cards/ 文件夹的解析结果
+     * @return 目录快照和预先拼好的消息内容
+     */
+    private CardPayloads buildPayloads(ConfigurationSection config, List<CardShardLoader.Shard> shards) {
+        Map<String, NameCard> nameCards = new LinkedHashMap<>();
+        // 小写名片ID -> 定义它的文件, 用于提示重复ID
+        Map<String, String> sources = new HashMap<>();
+        ConfigurationSection cardsSection = config.getConfigurationSection("namecards.cards");
+        if (cardsSection == null) {
+            if (shards.isEmpty()) {
+                plugin.getLogger().warning("配置文件中未找到 'namecards.cards' 部分，无法加载名片。");
+            }
+        } else {
+            for (String cardId : cardsSection.getKeys(false)) {
+                ConfigurationSection section = cardsSection.getConfigurationSection(cardId);
+                if (section == null) {
+                    plugin.getLogger().warning("config.yml 中的名片 '" + cardId + "' 格式不正确，已跳过。");
+                    continue;
+                }
+                addCard(nameCards, sources, CardShardLoader.parseCard(cardId, section), "config.yml");
+            }
+        }
+        for (CardShardLoader.Shard shard : shards) {
+            for (NameCard card : shard.getCards()) {
+                addCard(nameCards, sources, card, CardShardLoader.CARDS_FOLDER + "/" + shard.getName());
+            }
         }
 
-        this.defaultCardId = plugin.getConfig().getString("namecards.default-card-id", "");
+        String defaultCardId = config.getString("namecards.default-card-id", "");
 
         // 验证 default-card-id 的有效性，防止因配置错误导致功能失效
-        if (this.defaultCardId == null || this.defaultCardId.isEmpty()) {
+        if (defaultCardId == null || defaultCardId.isEmpty()) {
             // 如果服主根本没设置默认ID，给一个温和的警告
             plugin.getLogger().warning("配置文件中未设置 'default-card-id'，默认名片功能可能无法正常工作。");
-        } else if (getCard(this.defaultCardId) == null) {
+        } else if (!nameCards.containsKey(defaultCardId.toLowerCase())) {
             // 如果设置的ID是无效的，给出严重的错误提示
             plugin.getLogger().severe("************************************************************");
-            plugin.getLogger().severe("* [配置错误] 'default-card-id' 的值 '" + this.defaultCardId + "' 不是一个有效的名片 ID。");
+            plugin.getLogger().severe("* [配置错误] 'default-card-id' 的值 '" + defaultCardId + "' 不是一个有效的名片 ID。");
             plugin.getLogger().severe("* 请检查 'namecards.cards' 列表中是否存在此 ID。");
             plugin.getLogger().severe("* 默认名片功能已被禁用，直到你填写正确的ID。");
             plugin.getLogger().severe("************************************************************");
             // 将 defaultCardId 设为 null，安全地禁用该功能，防止后续出错
-            this.defaultCardId = null;
+            defaultCardId = null;
         }
 
-        plugin.getLogger().info("成功加载了 " + nameCards.size() + " 个名片。");
+        return CardPayloads.build(CardCatalog.of(nameCards.values(), defaultCardId), maxMessageBytes(config));
+    }
+
+    private static int maxMessageBytes(ConfigurationSection config) {
+        return Math.max(1024, config.getInt("protocol.max-message-bytes", 30000));
     }
 
     /**
@@ -75,26 +283,51 @@ public class CardManager {
      * @return NameCard 对象，如果不存在则返回 null
      */
     public NameCard getCard(String id) {
-        if (id == null) return null;
-        return nameCards.get(id.toLowerCase());
+        return getCatalog().getCard(id);
     }
 
     /**
      * 获取所有名片
-     * @return 所有名片的集合
+     * @return 所有名片的集合 (不可修改)
      */
     public Collection<NameCard> getAllCards() {
-        return nameCards.values();
+        return getCatalog().getCards();
     }
 
     /**
-     * 获取排序后的所有名片（按层级从小到大）
-     * @return 排序后的名片集合
+     * 获取排序后的所有名片（按层级从小到大, 同层级按ID）
+     * 直接返回加载时排好序的目录, 不再每次重新排序。
+     * @return 排序后的名片集合 (不可修改)
      */
     public Collection<NameCard> getAllCardsSorted() {
-        return nameCards.values().stream()
-                .sorted(Comparator.comparingInt(NameCard::getLayer))
-                .collect(Collectors.toList());
+        return getCatalog().getCards();
+    }
+
+    /**
+     * 按名片ID或展示名的前缀补全名片ID (使用目录加载时建立的前缀索引)
+     * @param prefix 前缀 (不区分大小写)
+     * @param limit 最多返回的条数
+     * @return 名片ID
+     */
+    public List<String> completeCardIds(String prefix, int limit) {
+        return getCatalog().completeCardIds(prefix, limit);
+    }
+
+    /**
+     * 获取当前的名片目录快照
+     * 需要多次读取目录时应先取一次快照, 避免中途被重载替换。
+     * @return 目录快照, 从未加载过时为空目录
+     */
+    public CardCatalog getCatalog() {
+        return payloads.getCatalog();
+    }
+
+    /**
+     * 获取预先拼好的消息内容 (与 getCatalog 为同一版本)
+     * @return 消息内容, 从未加载过时为空
+     */
+    public CardPayloads getPayloads() {
+        return payloads;
     }
 
     /**
@@ -102,6 +335,6 @@ public class CardManager {
      * @return 默认名片ID, 如果配置无效则返回 null
      */
     public String getDefaultCardId() {
-        return defaultCardId;
+        return getCatalog().getDefaultCardId();
     }
-}
\ No newline at end of file
+}
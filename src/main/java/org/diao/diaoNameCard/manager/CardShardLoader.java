@@ -0,0 +1,212 @@
+package org.diao.diaoNameCard.manager;
+
+import org.bukkit.ChatColor;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.diao.diaoNameCard.model.NameCard;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * 名片分片文件加载器
+ * 除 config.yml 中的 namecards.cards 外, 名片还可以放在插件目录下 cards/ 文件夹的多个 YAML 文件中,
+ * 每个文件的顶层键就是名片ID, 下面的字段与 namecards.cards 中相同。
+ * 各文件在 ForkJoinPool 上并行读取和解析, 结果按文件名顺序返回, 合并和重复ID检测由 CardManager 负责。
+ * 解析成功的文件按文件名、大小和修改时间缓存, 重载时只重新解析有变化的文件; 线程池在多次加载间复用。
+ */
+final class CardShardLoader {
+
+    static final String CARDS_FOLDER = "cards";
+
+    // 文件名 -> 上次解析成功的结果, 由 this 保护
+    private final Map<String, CachedShard> cache = new HashMap<>();
+    private ForkJoinPool pool;
+
+    /**
+     * 缓存的解析结果及其对应的文件状态
+     */
+    private static final class CachedShard {
+        private final long size;
+        private final long lastModified;
+        private final Shard shard;
+
+        private CachedShard(long size, long lastModified, Shard shard) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.shard = shard;
+        }
+
+        private boolean matches(File file) {
+            return file.length() == size && file.lastModified() == lastModified;
+        }
+    }
+
+    /**
+     * 一个名片文件的解析结果
+     */
+    static final class Shard {
+        private final String name;
+        private final List<NameCard> cards;
+        private final String error;
+
+        private Shard(String name, List<NameCard> cards, String error) {
+            this.name = name;
+            this.cards = cards;
+            this.error = error;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        /**
+         * @return 文件中的名片 (按文件中的顺序), 读取失败时为空
+         */
+        List<NameCard> getCards() {
+            return cards;
+        }
+
+        /**
+         * @return 错误信息, 读取成功时为 null
+         */
+        String getError() {
+            return error;
+        }
+    }
+
+    /**
+     * 从配置节点解析一张名片 (每个字段只在该名片自己的节点下查找)
+     * @param cardId 名片ID
+     * @param section 名片节点
+     * @return 名片
+     */
+    static NameCard parseCard(String cardId, ConfigurationSection section) {
+        int layer = section.getInt("layer");
+        String texture = section.getString("texture", "");
+        // 支持颜色代码
+        String displayName = ChatColor.translateAlternateColorCodes('&', section.getString("display-name", "未命名名片"));
+        String description = ChatColor.translateAlternateColorCodes('&', section.getString("description", ""));
+        String category = section.getString("category", "");
+        return new NameCard(cardId, layer, texture, displayName, description, category);
+    }
+
+    /**
+     * 读取 cards/ 文件夹中的所有 .yml / .yaml 文件 (不包含子文件夹)
+     * 与上次解析时大小和修改时间都相同的文件直接使用缓存, 其余文件并行解析; 读取失败的文件不缓存, 下次重新解析。
+     * @param dataFolder 插件目录
+     * @return 每个文件的解析结果, 按文件名排序; 文件夹不存在时为空列表
+     */
+    synchronized List<Shard> load(File dataFolder) {
+        File[] files = listFiles(dataFolder);
+        Map<String, File> present = new HashMap<>();
+        for (File file : files) {
+            present.put(file.getName(), file);
+        }
+        // 已删除的文件不再保留缓存
+        cache.keySet().retainAll(present.keySet());
+        if (files.length == 0) return Collections.emptyList();
+
+        // 先记录文件状态再解析, 解析期间文件被修改时缓存只会失效, 不会与新内容错配
+        List<ForkJoinTask<CachedShard>> tasks = new ArrayList<>(files.length);
+        for (File file : files) {
+            CachedShard cached = cache.get(file.getName());
+            if (cached != null && cached.matches(file)) {
+                tasks.add(null);
+                continue;
+            }
+            long size = file.length();
+            long lastModified = file.lastModified();
+            tasks.add(pool().submit(() -> new CachedShard(size, lastModified, parseFile(file))));
+        }
+        List<Shard> shards = new ArrayList<>(files.length);
+        for (int i = 0; i < files.length; i++) {
+            ForkJoinTask<CachedShard> task = tasks.get(i);
+            if (task == null) {
+                shards.add(cache.get(files[i].getName()).shard);
+                continue;
+            }
+            CachedShard parsed = task.join();
+            if (parsed.shard.getError() == null) {
+                cache.put(files[i].getName(), parsed);
+            } else {
+                cache.remove(files[i].getName());
+            }
+            shards.add(parsed.shard);
+        }
+        return shards;
+    }
+
+    /**
+     * 关闭解析线程池并清空缓存 (插件禁用时调用)
+     */
+    synchronized void close() {
+        if (pool != null) {
+            pool.shutdown();
+            pool = null;
+        }
+        cache.clear();
+    }
+
+    private ForkJoinPool pool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+        }
+        return pool;
+    }
+
+    /**
+     * 文件夹内容的签名 (文件名、大小、修改时间), 用于判断自上次加载后是否有文件变化
+     * @param dataFolder 插件目录
+     * @return 签名字符串
+     */
+    static String signature(File dataFolder) {
+        StringBuilder builder = new StringBuilder();
+        for (File file : listFiles(dataFolder)) {
+            builder.append(file.getName()).append(':').append(file.length()).append(':').append(file.lastModified()).append('\n');
+        }
+        return builder.toString();
+    }
+
+    static boolean isCardFile(String name) {
+        String lowered = name.toLowerCase();
+        return lowered.endsWith(".yml") || lowered.endsWith(".yaml");
+    }
+
+    /**
+     * @return cards/ 中的名片文件, 按文件名排序; 文件夹不存在时为空数组
+     */
+    static File[] listFiles(File dataFolder) {
+        File[] files = new File(dataFolder, CARDS_FOLDER).listFiles(file -> file.isFile() && isCardFile(file.getName()));
+        if (files == null) return new File[0];
+        Arrays.sort(files, (a, b) -> a.getName().compareTo(b.getName()));
+        return files;
+    }
+
+    private static Shard parseFile(File file) {
+        try {
+            YamlConfiguration config = new YamlConfiguration();
+            config.loadFromString(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+            List<NameCard> cards = new ArrayList<>();
+            for (String cardId : config.getKeys(false)) {
+                ConfigurationSection section = config.getConfigurationSection(cardId);
+                if (section == null) {
+                    return new Shard(file.getName(), Collections.emptyList(), "'" + cardId + "' 不是一个名片节点");
+                }
+                cards.add(parseCard(cardId, section));
+            }
+            return new Shard(file.getName(), cards, null);
+        } catch (Exception e) {
+            return new Shard(file.getName(), Collections.emptyList(), String.valueOf(e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.diao.diaoNameCard.manager;
+
+import org.diao.diaoNameCard.model.CardCatalog;
+import org.diao.diaoNameCard.model.NameCard;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 名片目录的二进制快照
+ * 保存解析完成的名片 (颜色代码已转换) 和默认名片ID, 以 config.yml 与 cards/ 中所有文件内容的 SHA-256 为键。
+ * 启动时源文件的哈希与快照一致就直接映射快照文件读取, 跳过 YAML 解析和颜色代码转换; 不一致或快照损坏时回退到解析 YAML。
+ *
+ * 文件格式: 魔数, 格式版本, 源文件哈希 (32 字节), 默认名片ID, 名片数量,
+ * 然后每张名片依次为: 名片ID, layer, 贴图路径, 展示名, 描述, 分类。字符串为 4 字节长度加 UTF-8 内容。
+ */
+final class CatalogSnapshot {
+
+    static final String FILE_NAME = "catalog.snapshot";
+
+    private static final int MAGIC = 0x444E4343; // "DNCC"
+    // 解析规则或文件格式变化时递增, 旧快照自动失效
+    private static final int FORMAT_VERSION = 1;
+    private static final int HASH_BYTES = 32;
+
+    private CatalogSnapshot() {
+    }
+
+    /**
+     * 计算源文件的哈希: config.yml 和 cards/ 中的每个名片文件 (按文件名顺序, 包括文件名)
+     * 应在解析源文件之前计算, 这样解析期间文件被修改时快照只会失效, 不会与新内容错配。
+     * @param configContent 即将解析的 config.yml 内容
+     * @param dataFolder 插件目录
+     * @return SHA-256
+     */
+    static byte[] hashSources(byte[] configContent, File dataFolder) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        update(digest, "config.yml", configContent);
+        for (File file : CardShardLoader.listFiles(dataFolder)) {
+            update(digest, file.getName(), Files.readAllBytes(file.toPath()));
+        }
+        return digest.digest();
+    }
+
+    // 文件名和内容都带长度前缀, 避免拼接后产生歧义
+    private static void update(MessageDigest digest, String name, byte[] content) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+        digest.update(intBytes(nameBytes.length));
+        digest.update(nameBytes);
+        digest.update(intBytes(content.length));
+        digest.update(content);
+    }
+
+    private static byte[] intBytes(int value) {
+        return new byte[]{(byte) (value >>> 24), (byte) (value >>> 16), (byte) (value >>> 8), (byte) value};
+    }
+
+    /**
+     * 读取快照
+     * @param dataFolder 插件目录
+     * @param sourceHash 当前源文件的哈希
+     * @return 目录, 快照不存在或哈希不一致时返回 null
+     * @throws IOException 快照文件损坏或无法读取
+     */
+    static CardCatalog read(File dataFolder, byte[] sourceHash) throws IOException {
+        File file = new File(dataFolder, FILE_NAME);
+        if (!file.isFile()) return null;
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION) return null;
+            byte[] hash = new byte[HASH_BYTES];
+            buffer.get(hash);
+            if (!Arrays.equals(hash, sourceHash)) return null;
+
+            String defaultCardId = readString(buffer);
+            int count = buffer.getInt();
+            // 每张名片至少占 6 个 int (5 个字符串长度和 layer)
+            if (count < 0 || count > buffer.remaining() / 24) throw new IOException("名片数量无效: " + count);
+            List<NameCard> cards = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String id = readString(buffer);
+                int layer = buffer.getInt();
+                cards.add(new NameCard(id, layer, readString(buffer), readString(buffer), readString(buffer), readString(buffer)));
+            }
+            return CardCatalog.of(cards, defaultCardId.isEmpty() ? null : defaultCardId);
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("快照文件不完整", e);
+        }
+    }
+
+    private static String readString(MappedByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("字符串长度无效: " + length);
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 写入快照 (先写临时文件再替换, 写到一半时旧快照仍然完整)
+     * @param dataFolder 插件目录
+     * @param catalog 解析完成的目录
+     * @param sourceHash 解析前计算的源文件哈希
+     */
+    static void write(File dataFolder, CardCatalog catalog, byte[] sourceHash) throws IOException {
+        File temp = new File(dataFolder, FILE_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.write(sourceHash);
+            writeString(out, catalog.getDefaultCardId());
+            out.writeInt(catalog.size());
+            for (NameCard card : catalog.getCards()) {
+                writeString(out, card.getId());
+                out.writeInt(card.getLayer());
+                writeString(out, card.getTexturePath());
+                writeString(out, card.getDisplayName());
+                writeString(out, card.getDescription());
+                writeString(out, card.getCategory());
+            }
+        }
+        Files.move(temp.toPath(), new File(dataFolder, FILE_NAME).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+}
@@ -0,0 +1,155 @@
+package org.diao.diaoNameCard.manager;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+import org.diao.diaoNameCard.Main;
+import org.diao.diaoNameCard.storage.PlayerChange;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 跨服缓存同步
+ * 群组服中所有子服共用同一个数据库, 每次写入都会记录一条变更日志。
+ * 本类按固定间隔读取序号大于上次处理位置的日志, 只刷新受影响的在线玩家的会话缓存,
+ * 遇到 "所有玩家" 的记录时刷新全部在线玩家。
+ *
+ * MySQL 的自增序号按分配顺序而不是提交顺序可见, 较小的序号可能晚于较大的序号出现。
+ * 因此这里只把 "连续处理过的最大序号" 作为下次查询的起点, 中间的空洞等待一段时间后才跳过。
+ */
+public class ChangeLogPoller {
+
+    // 序号空洞最多等待的时间 (回滚的事务会永久留下空洞)
+    private static final long GAP_TIMEOUT_MILLIS = 5000L;
+    // 清理过期日志的间隔
+    private static final long PRUNE_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final Main plugin;
+    private final boolean enabled;
+    private final long pollIntervalTicks;
+    private final int pollLimit;
+    private final long retentionMillis;
+    private final AtomicBoolean polling = new AtomicBoolean();
+    private BukkitTask task;
+
+    // 以下字段只在轮询回调中访问, 由 polling 标志保证同一时间只有一个线程
+    // 连续处理过的最大序号
+    private long horizon;
+    // 大于 horizon 且已经处理过的序号
+    private final Set<Long> seen = new HashSet<>();
+    private long gapSince;
+    private long lastPrune;
+
+    public ChangeLogPoller(Main plugin) {
+        this.plugin = plugin;
+        this.enabled = plugin.getConfig().getBoolean("sync.enabled", plugin.getStorageType().equals("mysql"));
+        this.pollIntervalTicks = Math.max(1L, plugin.getConfig().getLong("sync.poll-interval-ticks", 20L));
+        this.pollLimit = Math.max(1, plugin.getConfig().getInt("sync.poll-limit", 1000));
+        this.retentionMillis = TimeUnit.MINUTES.toMillis(Math.max(1, plugin.getConfig().getInt("sync.retention-minutes", 10)));
+    }
+
+    /**
+     * 从变更日志的末尾开始轮询 (启动前的变更已经体现在数据库里, 无需处理)
+     */
+    public void start() {
+        if (!enabled) return;
+        try {
+            horizon = plugin.getDatabase().getLatestChangeSequence().join();
+        } catch (Exception e) {
+            plugin.getLogger().severe("读取变更日志位置失败, 跨服缓存同步未启动: " + e.getMessage());
+            return;
+        }
+        lastPrune = System.currentTimeMillis();
+        task = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::poll, pollIntervalTicks, pollIntervalTicks);
+        plugin.getLogger().info("跨服缓存同步已启动, 从变更序号 " + horizon + " 开始。");
+    }
+
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+    }
+
+    private void poll() {
+        // 上一次轮询尚未完成时跳过本次
+        if (!polling.compareAndSet(false, true)) return;
+        plugin.getDatabase().pollChanges(horizon, pollLimit).whenComplete((changes, ex) -> {
+            try {
+                if (ex != null) {
+                    plugin.getLogger().warning("读取变更日志时出错: " + ex.getMessage());
+                    return;
+                }
+                apply(changes);
+                pruneIfDue();
+            } finally {
+                polling.set(false);
+            }
+        });
+    }
+
+    private void apply(List<PlayerChange> changes) {
+        Set<UUID> players = new HashSet<>();
+        boolean allPlayers = false;
+        long maxSequence = horizon;
+        for (PlayerChange change : changes) {
+            maxSequence = Math.max(maxSequence, change.getSequence());
+            // 空洞等待期间会重复读到同一批记录, 已处理过的直接跳过
+            if (!seen.add(change.getSequence()) || change.isLocal()) continue;
+            if (change.isAllPlayers()) {
+                allPlayers = true;
+            } else {
+                players.add(change.getUuid());
+            }
+        }
+        advanceHorizon();
+
+        // 一次读满且中间有空洞: 不再逐条等待, 直接跳到末尾并刷新全部在线玩家, 防止漏掉空洞中的变更
+        if (changes.size() >= pollLimit && !seen.isEmpty()) {
+            horizon = maxSequence;
+            seen.clear();
+            gapSince = 0;
+            allPlayers = true;
+        }
+
+        if (allPlayers) {
+            plugin.getPlayerDataManager().reloadSessions();
+        } else if (!players.isEmpty()) {
+            plugin.getPlayerDataManager().refreshSessions(players);
+        }
+    }
+
+    private void advanceHorizon() {
+        while (seen.remove(horizon + 1)) {
+            horizon++;
+        }
+        if (seen.isEmpty()) {
+            gapSince = 0;
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (gapSince == 0) {
+            gapSince = now;
+        } else if (now - gapSince > GAP_TIMEOUT_MILLIS) {
+            // 空洞等待超时 (通常是回滚的事务), 跳过它
+            horizon = Collections.min(seen) - 1;
+            gapSince = 0;
+            advanceHorizon();
+        }
+    }
+
+    private void pruneIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - lastPrune < PRUNE_INTERVAL_MILLIS) return;
+        lastPrune = now;
+        plugin.getDatabase().pruneChanges(now - retentionMillis).exceptionally(ex -> {
+            plugin.getLogger().warning("清理变更日志时出错: " + ex.getMessage());
+            return 0;
+        });
+    }
+}
@@ -0,0 +1,243 @@
+package org.diao.diaoNameCard.manager;
+
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+import org.diao.diaoNameCard.Main;
+import org.diao.diaoNameCard.storage.Database;
+import org.diao.diaoNameCard.storage.PlayerCardRow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 数据迁移工具 (/dnc migrate)
+ * 把 player_cards 和 player_meta 两张表从一种存储方式流式复制到另一种存储方式。
+ * 每张表一条流水线: 源数据库用游标逐批读取, 放入一个有界队列, 由独立线程按批次在一个事务中写入目标数据库,
+ * 因此内存中最多只有 "队列容量 + 2" 个批次的数据。两张表并行复制, 结束后核对行数。
+ */
+public class DataMigrator {
+
+    // 每张表的流水线中最多缓存的批次数量
+    private static final int QUEUE_CAPACITY = 4;
+    // 队列结束标记
+    private static final List<PlayerCardRow> END = new ArrayList<>(0);
+
+    private final Main plugin;
+    private final int batchSize;
+    private final long progressIntervalMillis;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final AtomicBoolean aborted = new AtomicBoolean();
+    private final ExecutorService workers;
+
+    public DataMigrator(Main plugin) {
+        this.plugin = plugin;
+        this.batchSize = Math.max(1, plugin.getConfig().getInt("migration.batch-size", 5000));
+        this.progressIntervalMillis = TimeUnit.SECONDS.toMillis(Math.max(1, plugin.getConfig().getInt("migration.progress-interval-seconds", 5)));
+        AtomicInteger counter = new AtomicInteger();
+        this.workers = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "DiaoNameCard-Migrate-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @return 是否有迁移正在执行
+     */
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * 在后台开始一次迁移
+     * @param sender 发起者, 用于接收进度
+     * @param from 源存储类型 (mysql / sqlite / file)
+     * @param to 目标存储类型 (mysql / sqlite / file)
+     * @return 是否成功开始 (已有迁移在执行时返回 false)
+     */
+    public boolean migrate(CommandSender sender, String from, String to) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        aborted.set(false);
+        workers.execute(() -> {
+            try {
+                run(sender, from.toLowerCase(), to.toLowerCase());
+            } catch (Exception e) {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                plugin.getLogger().severe("[数据迁移] 执行失败: " + cause.getMessage());
+                message(sender, ChatColor.RED + "[数据迁移] 执行失败: " + cause.getMessage());
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 插件卸载时中止正在执行的迁移
+     */
+    public void shutdown() {
+        aborted.set(true);
+        workers.shutdown();
+        try {
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run(CommandSender sender, String from, String to) throws InterruptedException {
+        List<Database> opened = new ArrayList<>();
+        try {
+            Database source = open(from, opened);
+            Database target = open(to, opened);
+
+            long sourceCards = source.countPlayerCards().join();
+            long sourceMeta = source.countPlayerMeta().join();
+            long targetCardsBefore = target.countPlayerCards().join();
+            long targetMetaBefore = target.countPlayerMeta().join();
+            message(sender, ChatColor.YELLOW + "[数据迁移] 开始从 " + from + " 迁移到 " + to + ": player_cards "
+                    + sourceCards + " 行, player_meta " + sourceMeta + " 行。");
+
+            AtomicLong cardsCopied = new AtomicLong();
+            AtomicLong metaCopied = new AtomicLong();
+            CompletableFuture<Void> cards = copyTable(source::streamPlayerCards, target::importPlayerCards, cardsCopied);
+            CompletableFuture<Void> meta = copyTable(source::streamPlayerMeta, target::importPlayerMeta, metaCopied);
+            CompletableFuture<Void> all = CompletableFuture.allOf(cards, meta);
+
+            long startedAt = System.currentTimeMillis();
+            while (true) {
+                try {
+                    all.get(progressIntervalMillis, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    message(sender, ChatColor.GRAY + "[数据迁移] 进度: player_cards " + cardsCopied.get() + "/" + sourceCards
+                            + ", player_meta " + metaCopied.get() + "/" + sourceMeta);
+                } catch (ExecutionException e) {
+                    aborted.set(true);
+                    throw new CompletionException(e.getCause());
+                }
+            }
+            long seconds = Math.max(1, (System.currentTimeMillis() - startedAt) / 1000);
+
+            // 核对行数: 目标原本为空时要求完全一致, 否则目标中至少要有源数据的行数 (重复行会被忽略或覆盖)
+            long targetCards = target.countPlayerCards().join();
+            long targetMeta = target.countPlayerMeta().join();
+            boolean cardsOk = verify(sourceCards, cardsCopied.get(), targetCardsBefore, targetCards);
+            boolean metaOk = verify(sourceMeta, metaCopied.get(), targetMetaBefore, targetMeta);
+            String summary = "player_cards 复制 " + cardsCopied.get() + " 行 (目标 " + targetCardsBefore + " -> " + targetCards + "), "
+                    + "player_meta 复制 " + metaCopied.get() + " 行 (目标 " + targetMetaBefore + " -> " + targetMeta + "), 用时 " + seconds + " 秒。";
+            if (cardsOk && metaOk) {
+                message(sender, ChatColor.GREEN + "[数据迁移] 完成, 行数核对通过: " + summary);
+            } else {
+                plugin.getLogger().warning("[数据迁移] 行数核对未通过: " + summary);
+                message(sender, ChatColor.RED + "[数据迁移] 完成, 但行数核对未通过: " + summary);
+            }
+
+            // 迁移到当前正在使用的存储时, 刷新在线玩家的缓存
+            if (to.equals(plugin.getStorageType())) {
+                plugin.getPlayerDataManager().reloadSessions();
+            }
+        } finally {
+            for (Database database : opened) {
+                database.disconnect();
+            }
+        }
+    }
+
+    /**
+     * 当前正在使用的存储直接复用插件的数据库实例, 否则新建并连接一个临时实例
+     */
+    private Database open(String type, List<Database> opened) {
+        if (type.equals(plugin.getStorageType())) {
+            return plugin.getDatabase();
+        }
+        Database database = plugin.createDatabase(type);
+        opened.add(database);
+        database.connect();
+        return database;
+    }
+
+    private static boolean verify(long sourceRows, long copied, long targetBefore, long targetAfter) {
+        if (copied != sourceRows) return false;
+        return targetBefore == 0 ? targetAfter == sourceRows : targetAfter >= sourceRows;
+    }
+
+    /**
+     * 复制一张表: 源数据库在自己的执行器中把批次放入有界队列 (队列满时阻塞读取), 本类的工作线程逐批写入目标数据库
+     */
+    private CompletableFuture<Void> copyTable(BiFunction<Integer, Consumer<List<PlayerCardRow>>, CompletableFuture<Void>> stream,
+                                              Function<List<PlayerCardRow>, CompletableFuture<Void>> importer,
+                                              AtomicLong copied) {
+        BlockingQueue<List<PlayerCardRow>> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+
+        CompletableFuture<Void> consumer = CompletableFuture.runAsync(() -> {
+            try {
+                while (true) {
+                    List<PlayerCardRow> batch = queue.take();
+                    if (batch == END) return;
+                    importer.apply(batch).join();
+                    copied.addAndGet(batch.size());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                aborted.set(true);
+                throw new CompletionException(e);
+            } catch (RuntimeException e) {
+                aborted.set(true);
+                throw e;
+            }
+        }, workers);
+
+        CompletableFuture<Void> producer = stream.apply(batchSize, batch -> enqueue(queue, batch));
+        producer.whenComplete((v, ex) -> {
+            if (ex != null) {
+                // 读取失败: 丢弃尚未写入的批次, 让写入线程尽快结束
+                aborted.set(true);
+                queue.clear();
+            }
+            enqueue(queue, END);
+        });
+        return producer.thenCombine(consumer, (a, b) -> null);
+    }
+
+    private void enqueue(BlockingQueue<List<PlayerCardRow>> queue, List<PlayerCardRow> batch) {
+        try {
+            while (!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                if (aborted.get()) {
+                    if (batch != END) {
+                        throw new CancellationException("数据迁移已中止");
+                    }
+                    // 结束标记必须送达, 写入线程可能已经退出, 直接清空队列腾出位置
+                    queue.clear();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("数据迁移已中止");
+        }
+    }
+
+    private void message(CommandSender sender, String message) {
+        // 消息统一回到主线程发送; 插件正在卸载时不再调度任务
+        if (!plugin.isEnabled()) return;
+        plugin.getResponseDispatcher().message(sender, message);
+    }
+}
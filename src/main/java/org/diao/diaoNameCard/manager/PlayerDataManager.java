@@ -1,24 +1,170 @@
 package org.diao.diaoNameCard.manager;
 
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
 import org.diao.diaoNameCard.Main;
+import org.diao.diaoNameCard.model.CardCatalog;
 import org.diao.diaoNameCard.model.NameCard;
+import org.diao.diaoNameCard.model.PlayerProfile;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 玩家数据管理器
  * 负责处理所有与玩家名片数据相关的逻辑（增删改查）
+ * 在线玩家的数据在登录时加载到会话缓存中，读操作直接从内存返回。
+ * 缓存未命中时, 同一玩家的并发读取共享同一个数据库查询 (single-flight)。
  */
 public class PlayerDataManager {
 
     private final Main plugin;
+    // 在线玩家的会话缓存: 登录时加载, 本地写入时同步更新, 退出时移除
+    private final Map<UUID, PlayerProfile> sessions = new ConcurrentHashMap<>();
+    // 正在进行的数据库读取: 同一玩家的并发读取共享一个 future, 写入该玩家时移除
+    private final Map<UUID, CompletableFuture<PlayerProfile>> inFlightLoads = new ConcurrentHashMap<>();
+    // 预登录时加载、尚未进入服务器的会话: UUID -> 开始加载的时间
+    // 登录被拒绝或客户端在进入前断开时不会触发退出事件, 超时后由定时任务移除
+    private final Map<UUID, Long> pendingJoins = new ConcurrentHashMap<>();
+    private final long joinTimeoutMillis;
+    private BukkitTask sweepTask;
 
     public PlayerDataManager(Main plugin) {
         this.plugin = plugin;
+        this.joinTimeoutMillis = Math.max(5L, plugin.getConfig().getLong("session.join-timeout-seconds", 60L)) * 1000L;
+    }
+
+    public void start() {
+        long intervalTicks = Math.max(20L, joinTimeoutMillis / 50L / 2L);
+        sweepTask = Bukkit.getScheduler().runTaskTimer(plugin, this::evictAbandonedSessions, intervalTicks, intervalTicks);
+    }
+
+    public void stop() {
+        if (sweepTask != null) {
+            sweepTask.cancel();
+            sweepTask = null;
+        }
+    }
+
+    /**
+     * 从数据库加载玩家数据到会话缓存 (在 AsyncPlayerPreLoginEvent 中调用)
+     * @param uuid 玩家UUID
+     * @return 加载完成的 CompletableFuture
+     */
+    public CompletableFuture<PlayerProfile> loadSession(UUID uuid) {
+        return loadProfile(uuid).thenApply(profile -> {
+            sessions.put(uuid, profile);
+            return profile;
+        });
+    }
+
+    /**
+     * 预登录时加载会话缓存 (在 AsyncPlayerPreLoginEvent 中调用)
+     * 玩家在 session.join-timeout-seconds 内没有进入服务器时缓存会被移除。
+     * @param uuid 玩家UUID
+     * @return 加载完成的 CompletableFuture
+     */
+    public CompletableFuture<PlayerProfile> preloadSession(UUID uuid) {
+        Long since = System.currentTimeMillis();
+        pendingJoins.put(uuid, since);
+        // 加载失败时不放入缓存 (thenApply 不会执行), 之后的读取回退到直接查询数据库
+        return loadProfile(uuid).whenComplete((profile, ex) -> {
+            if (ex != null) {
+                pendingJoins.remove(uuid, since);
+            }
+        }).thenApply(profile -> {
+            // 加载期间已被超时移除或登录已被拒绝时不再放入缓存
+            if (since.equals(pendingJoins.get(uuid))) {
+                sessions.put(uuid, profile);
+            }
+            return profile;
+        });
+    }
+
+    /**
+     * 玩家进入服务器后调用, 预加载的会话不再受超时限制
+     * @param uuid 玩家UUID
+     */
+    public void confirmJoin(UUID uuid) {
+        pendingJoins.remove(uuid);
+    }
+
+    /**
+     * 玩家退出或登录被拒绝时移除会话缓存
+     * @param uuid 玩家UUID
+     */
+    public void unloadSession(UUID uuid) {
+        pendingJoins.remove(uuid);
+        sessions.remove(uuid);
+    }
+
+    /**
+     * 移除预加载后超时仍未进入服务器的会话 (主线程执行, 在线玩家的会话保留)
+     */
+    private void evictAbandonedSessions() {
+        long deadline = System.currentTimeMillis() - joinTimeoutMillis;
+        pendingJoins.forEach((uuid, since) -> {
+            if (since < deadline && pendingJoins.remove(uuid, since) && Bukkit.getPlayer(uuid) == null) {
+                sessions.remove(uuid);
+            }
+        });
+    }
+
+    /**
+     * 获取玩家的名片数据, 在线玩家直接取缓存, 否则通过一次数据库查询读取
+     * 查询结果不会放入会话缓存, 查询失败时返回异常完成的 CompletableFuture
+     * @param uuid 玩家UUID
+     * @return 玩家名片数据的 CompletableFuture
+     */
+    public CompletableFuture<PlayerProfile> getProfile(UUID uuid) {
+        PlayerProfile cached = sessions.get(uuid);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return loadProfile(uuid);
+    }
+
+    /**
+     * 获取已缓存的玩家名片数据, 不查询数据库
+     * @param uuid 玩家UUID
+     * @return 玩家名片数据, 尚未加载时为 null
+     */
+    public PlayerProfile getCachedProfile(UUID uuid) {
+        return sessions.get(uuid);
+    }
+
+    private CompletableFuture<PlayerProfile> loadProfile(UUID uuid) {
+        CompletableFuture<PlayerProfile> created = new CompletableFuture<>();
+        CompletableFuture<PlayerProfile> existing = inFlightLoads.putIfAbsent(uuid, created);
+        if (existing != null) {
+            return existing;
+        }
+        // 只有第一个请求真正查询数据库, 查询结束后移除, 之后的读取重新查询
+        plugin.getDatabase().loadProfile(uuid).whenComplete((profile, ex) -> {
+            inFlightLoads.remove(uuid, created);
+            if (ex != null) {
+                created.completeExceptionally(ex);
+            } else {
+                created.complete(profile);
+            }
+        });
+        return created;
+    }
+
+    /**
+     * 写入玩家数据后调用, 之后的读取不再复用写入之前发起的查询
+     */
+    private void invalidate(UUID uuid) {
+        inFlightLoads.remove(uuid);
     }
 
     /**
@@ -28,34 +174,30 @@ public class PlayerDataManager {
      * @return 名片对象列表的 CompletableFuture
      */
     public CompletableFuture<List<NameCard>> getPlayerOwnedCards(UUID uuid) {
-        return plugin.getDatabase().getPlayerCards(uuid).thenApply(cardIds -> {
-            // 获取默认名片的ID，以备后用
-            String defaultCardId = plugin.getCardManager().getDefaultCardId();
-
-            // 将数据库中存储的名片ID转换为 NameCard 对象列表
-            List<NameCard> ownedCards = cardIds.stream()
-                    .map(id -> plugin.getCardManager().getCard(id))
-                    .filter(Objects::nonNull) // 过滤掉因配置删除而失效的名片
-                    .collect(Collectors.toList());
-
-            // 检查这个列表是否已经包含了默认名片
-            boolean hasDefaultCard = ownedCards.stream()
-                    .anyMatch(card -> card.getId().equalsIgnoreCase(defaultCardId));
-
-            // 如果列表里没有默认名片 (并且服务器配置了默认名片)
-            if (!hasDefaultCard && defaultCardId != null && !defaultCardId.isEmpty()) {
-                NameCard defaultCard = plugin.getCardManager().getCard(defaultCardId);
-                if (defaultCard != null) {
-                    // 将默认名片对象手动添加到列表中
-                    ownedCards.add(defaultCard);
-                }
+        return getProfile(uuid).thenApply(profile -> {
+            // 整个转换过程使用同一份目录快照, 避免中途被重载替换
+            CardCatalog catalog = plugin.getCardManager().getCatalog();
+            // 因配置删除而失效的名片会被过滤掉, 默认名片总是包含在内
+            BitSet mask = catalog.toCatalogMask(profile.getOwnedCards(), true);
+            List<NameCard> ownedCards = new ArrayList<>(mask.cardinality());
+            for (int index = mask.nextSetBit(0); index >= 0; index = mask.nextSetBit(index + 1)) {
+                ownedCards.add(catalog.getCards().get(index));
             }
-
-            // 返回最终的、完整的名片列表
             return ownedCards;
         });
     }
 
+    /**
+     * 获取玩家拥有的名片在目录序号上的位图 (包含默认名片)
+     * 应答客户端时用位运算区分拥有和未拥有的名片, 不再逐个比较名片ID。
+     * @param uuid 玩家UUID
+     * @param catalog 调用方持有的目录快照
+     * @return 位图的 CompletableFuture
+     */
+    public CompletableFuture<BitSet> getOwnedMask(UUID uuid, CardCatalog catalog) {
+        return getProfile(uuid).thenApply(profile -> catalog.toCatalogMask(profile.getOwnedCards(), true));
+    }
+
     /**
      * 检查玩家是否拥有某个名片
      * @param uuid 玩家UUID
@@ -67,7 +209,7 @@ public class PlayerDataManager {
         if (cardId.equalsIgnoreCase(plugin.getCardManager().getDefaultCardId())) {
             return CompletableFuture.completedFuture(true);
         }
-        return plugin.getDatabase().getPlayerCards(uuid).thenApply(cardIds -> cardIds.contains(cardId.toLowerCase()));
+        return getProfile(uuid).thenApply(profile -> profile.hasCard(cardId.toLowerCase()));
     }
 
     /**
@@ -76,7 +218,10 @@ public class PlayerDataManager {
      * @param cardId 名片ID
      */
     public void givePlayerCard(UUID uuid, String cardId) {
-        plugin.getDatabase().addPlayerCard(uuid, cardId.toLowerCase());
+        String id = cardId.toLowerCase();
+        sessions.computeIfPresent(uuid, (key, profile) -> profile.withCard(id));
+        invalidate(uuid);
+        plugin.getDatabase().addPlayerCard(uuid, id);
     }
 
     /**
@@ -85,12 +230,15 @@ public class PlayerDataManager {
      * @param cardId 名片ID
      */
     public void removePlayerCard(UUID uuid, String cardId) {
-        // 如果移除的是当前佩戴的名片，则自动切换到默认名片
-        getEquippedCard(uuid).thenAccept(equippedCard -> {
-            if (equippedCard != null && equippedCard.getId().equalsIgnoreCase(cardId)) {
+        String id = cardId.toLowerCase();
+        getProfile(uuid).thenAccept(profile -> {
+            // 如果移除的是当前佩戴的名片，则自动切换到默认名片
+            if (id.equalsIgnoreCase(profile.getEquippedCardId())) {
                 setEquippedCard(uuid, plugin.getCardManager().getDefaultCardId());
             }
-            plugin.getDatabase().removePlayerCard(uuid, cardId.toLowerCase());
+            sessions.computeIfPresent(uuid, (key, cached) -> cached.withoutCard(id));
+            invalidate(uuid);
+            plugin.getDatabase().removePlayerCard(uuid, id);
         });
     }
 
@@ -100,7 +248,11 @@ public class PlayerDataManager {
      * @param cardId 名片ID
      */
     public void setEquippedCard(UUID uuid, String cardId) {
-        plugin.getDatabase().setEquippedCard(uuid, cardId.toLowerCase());
+        String id = cardId.toLowerCase();
+        sessions.computeIfPresent(uuid, (key, profile) -> profile.withEquipped(id));
+        invalidate(uuid);
+        plugin.getDatabase().setEquippedCard(uuid, id);
+        plugin.getSubscriptionManager().notifyChanged(uuid);
     }
 
     /**
@@ -109,12 +261,94 @@ public class PlayerDataManager {
      * @return 名片对象的 CompletableFuture
      */
     public CompletableFuture<NameCard> getEquippedCard(UUID uuid) {
-        return plugin.getDatabase().getEquippedCard(uuid).thenApply(cardId -> {
+        return getProfile(uuid).thenApply(profile -> {
+            CardCatalog catalog = plugin.getCardManager().getCatalog();
+            String cardId = profile.getEquippedCardId();
             if (cardId == null || cardId.isEmpty()) {
                 // 如果没有设置，则返回默认名片
-                return plugin.getCardManager().getCard(plugin.getCardManager().getDefaultCardId());
+                return catalog.getCard(catalog.getDefaultCardId());
             }
-            return plugin.getCardManager().getCard(cardId);
+            return catalog.getCard(cardId);
         });
     }
-}
\ No newline at end of file
+
+    /**
+     * 批量获取多个玩家当前佩戴的名片
+     * 在线玩家直接取会话缓存, 其余玩家合并成一次批量查询。
+     * @param uuids 玩家UUID集合
+     * @return 玩家UUID到名片对象的映射, 没有佩戴名片且没有有效默认名片的玩家不在其中
+     */
+    public CompletableFuture<Map<UUID, NameCard>> getEquippedCards(Collection<UUID> uuids) {
+        Map<UUID, String> equipped = new HashMap<>();
+        List<UUID> missing = new ArrayList<>();
+        for (UUID uuid : uuids) {
+            PlayerProfile cached = sessions.get(uuid);
+            if (cached != null) {
+                equipped.put(uuid, cached.getEquippedCardId());
+            } else {
+                missing.add(uuid);
+            }
+        }
+
+        CompletableFuture<Map<UUID, String>> stored = missing.isEmpty()
+                ? CompletableFuture.completedFuture(Collections.emptyMap())
+                : plugin.getDatabase().getEquippedCards(missing);
+        return stored.thenApply(result -> {
+            CardCatalog catalog = plugin.getCardManager().getCatalog();
+            NameCard defaultCard = catalog.getCard(catalog.getDefaultCardId());
+            Map<UUID, NameCard> cards = new HashMap<>();
+            for (UUID uuid : missing) {
+                equipped.put(uuid, result.get(uuid));
+            }
+            equipped.forEach((uuid, cardId) -> {
+                // 没有设置时使用默认名片, 与 getEquippedCard 一致
+                NameCard card = cardId == null || cardId.isEmpty() ? defaultCard : catalog.getCard(cardId);
+                if (card != null) {
+                    cards.put(uuid, card);
+                }
+            });
+            return cards;
+        });
+    }
+
+    /**
+     * 批量发放名片后同步更新在线玩家的会话缓存
+     * @param uuids 本批次的玩家UUID
+     * @param cardId 名片ID
+     */
+    public void applyBulkGrant(Collection<UUID> uuids, String cardId) {
+        String id = cardId.toLowerCase();
+        for (UUID uuid : uuids) {
+            sessions.computeIfPresent(uuid, (key, profile) -> profile.withCard(id));
+            invalidate(uuid);
+        }
+    }
+
+    /**
+     * 重新从数据库加载所有在线玩家的会话缓存 (用于批量移除等无法逐个更新的场景)
+     * @return 全部加载完成的 CompletableFuture
+     */
+    public CompletableFuture<Void> reloadSessions() {
+        return refreshSessions(sessions.keySet());
+    }
+
+    /**
+     * 重新从数据库加载指定玩家的会话缓存, 没有缓存 (不在线) 的玩家会被忽略
+     * @param uuids 玩家UUID
+     * @return 全部加载完成的 CompletableFuture
+     */
+    public CompletableFuture<Void> refreshSessions(Collection<UUID> uuids) {
+        return CompletableFuture.allOf(uuids.stream()
+                .filter(sessions::containsKey)
+                // 数据已在别处被修改, 不能复用修改之前发起的查询
+                .peek(this::invalidate)
+                // 加载期间玩家可能已经退出, 只替换仍然存在的缓存; 佩戴名片有变化时推送给订阅者
+                .map(uuid -> loadProfile(uuid).thenAccept(profile -> {
+                    PlayerProfile previous = sessions.replace(uuid, profile);
+                    if (previous != null && !Objects.equals(previous.getEquippedCardId(), profile.getEquippedCardId())) {
+                        plugin.getSubscriptionManager().notifyChanged(uuid);
+                    }
+                }))
+                .toArray(CompletableFuture[]::new));
+    }
+}
@@ -0,0 +1,43 @@
+package org.diao.diaoNameCard.manager;
+
+import org.bukkit.entity.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * 在线玩家名的前缀索引
+ * 按小写玩家名排序, 玩家进入和退出时增删; 补全时从前缀处开始顺序读取, 不再遍历全部在线玩家。
+ */
+public class PlayerNameIndex {
+
+    // 小写玩家名 -> 玩家名 (玩家名不区分大小写唯一)
+    private final ConcurrentNavigableMap<String, String> names = new ConcurrentSkipListMap<>();
+
+    public void add(Player player) {
+        names.put(player.getName().toLowerCase(), player.getName());
+    }
+
+    public void remove(Player player) {
+        names.remove(player.getName().toLowerCase(), player.getName());
+    }
+
+    /**
+     * 查找以 prefix 开头的在线玩家名
+     * @param prefix 前缀 (不区分大小写)
+     * @param limit 最多返回的条数
+     * @return 玩家名, 按字典序
+     */
+    public List<String> complete(String prefix, int limit) {
+        String lowered = prefix.toLowerCase();
+        List<String> result = new ArrayList<>();
+        for (Map.Entry<String, String> entry : names.tailMap(lowered).entrySet()) {
+            if (result.size() >= limit || !entry.getKey().startsWith(lowered)) break;
+            result.add(entry.getValue());
+        }
+        return result;
+    }
+}
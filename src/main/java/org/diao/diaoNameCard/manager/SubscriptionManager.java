@@ -0,0 +1,222 @@
+package org.diao.diaoNameCard.manager;
+
+import org.bukkit.Bukkit;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+import org.diao.diaoNameCard.Main;
+import org.diao.diaoNameCard.protocol.CardPayload;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 佩戴名片变更订阅
+ * 客户端订阅感兴趣的玩家后, 只有这些玩家的佩戴名片发生变化时服务器才主动推送, 代替客户端定时轮询。
+ * 观察者退出、目标退出、目标离开观察者的追踪范围 (不同世界或超出距离) 时自动取消订阅,
+ * 并向观察者推送一条状态为 expired 的消息, 客户端据此知道不会再收到该玩家的推送。
+ */
+public class SubscriptionManager {
+
+    public static final String PUSH_IDENTIFIER = "dnc_card_push";
+    // 推送消息的最后一个字段: 订阅仍然有效 / 订阅已取消 (或被拒绝)
+    public static final String STATE_ACTIVE = "active";
+    public static final String STATE_EXPIRED = "expired";
+
+    private final Main plugin;
+    private final int maxPerViewer;
+    private final double rangeSquared;
+    private final long sweepIntervalTicks;
+    // 以下两个映射互为索引, 只在 synchronized 方法中修改
+    private final Map<UUID, Set<UUID>> viewersByTarget = new HashMap<>();
+    private final Map<UUID, Set<UUID>> targetsByViewer = new HashMap<>();
+    private BukkitTask sweepTask;
+
+    public SubscriptionManager(Main plugin) {
+        this.plugin = plugin;
+        this.maxPerViewer = Math.max(1, plugin.getConfig().getInt("subscription.max-per-viewer", 200));
+        double range = Math.max(1.0, plugin.getConfig().getDouble("subscription.range", 128.0));
+        this.rangeSquared = range * range;
+        this.sweepIntervalTicks = Math.max(1L, plugin.getConfig().getLong("subscription.sweep-interval-ticks", 40L));
+    }
+
+    public void start() {
+        sweepTask = Bukkit.getScheduler().runTaskTimer(plugin, this::sweep, sweepIntervalTicks, sweepIntervalTicks);
+    }
+
+    public synchronized void stop() {
+        if (sweepTask != null) {
+            sweepTask.cancel();
+            sweepTask = null;
+        }
+        viewersByTarget.clear();
+        targetsByViewer.clear();
+    }
+
+    /**
+     * 订阅目标玩家的佩戴名片变更, 超过每个观察者的上限时忽略多出的目标
+     * @param viewer 观察者
+     * @param targets 目标玩家
+     * @return 本次新增的订阅
+     */
+    public synchronized List<UUID> subscribe(UUID viewer, Collection<UUID> targets) {
+        Set<UUID> subscribed = targetsByViewer.computeIfAbsent(viewer, uuid -> new HashSet<>());
+        List<UUID> added = new ArrayList<>();
+        for (UUID target : targets) {
+            if (target.equals(viewer) || subscribed.size() >= maxPerViewer) continue;
+            if (subscribed.add(target)) {
+                viewersByTarget.computeIfAbsent(target, uuid -> new HashSet<>()).add(viewer);
+                added.add(target);
+            }
+        }
+        if (subscribed.isEmpty()) {
+            targetsByViewer.remove(viewer);
+        }
+        return added;
+    }
+
+    /**
+     * 取消订阅
+     * @param viewer 观察者
+     * @param targets 目标玩家, 为空时取消该观察者的全部订阅
+     */
+    public synchronized void unsubscribe(UUID viewer, Collection<UUID> targets) {
+        Set<UUID> subscribed = targetsByViewer.get(viewer);
+        if (subscribed == null) return;
+        for (UUID target : targets.isEmpty() ? new ArrayList<>(subscribed) : targets) {
+            if (subscribed.remove(target)) {
+                removeViewer(target, viewer);
+            }
+        }
+        if (subscribed.isEmpty()) {
+            targetsByViewer.remove(viewer);
+        }
+    }
+
+    /**
+     * 玩家退出时移除其作为观察者和目标的全部订阅
+     */
+    public synchronized void forget(UUID uuid) {
+        unsubscribe(uuid, new ArrayList<>());
+        Set<UUID> viewers = viewersByTarget.remove(uuid);
+        if (viewers == null) return;
+        for (UUID viewer : viewers) {
+            Set<UUID> subscribed = targetsByViewer.get(viewer);
+            if (subscribed != null && subscribed.remove(uuid) && subscribed.isEmpty()) {
+                targetsByViewer.remove(viewer);
+            }
+        }
+    }
+
+    private void removeViewer(UUID target, UUID viewer) {
+        Set<UUID> viewers = viewersByTarget.get(target);
+        if (viewers != null && viewers.remove(viewer) && viewers.isEmpty()) {
+            viewersByTarget.remove(target);
+        }
+    }
+
+    private synchronized List<UUID> getViewers(UUID target) {
+        Set<UUID> viewers = viewersByTarget.get(target);
+        return viewers == null ? null : new ArrayList<>(viewers);
+    }
+
+    /**
+     * 目标玩家的佩戴名片可能发生了变化, 向所有订阅者推送当前的名片
+     * 目标当前没有可显示的名片时推送一条清空的更新, 客户端不会继续显示旧名片。
+     * @param target 目标玩家
+     */
+    public void notifyChanged(UUID target) {
+        // 没有订阅者时不查询
+        if (getViewers(target) == null) return;
+        plugin.getPlayerDataManager().getEquippedCard(target).thenAccept(card -> {
+            CardPayload payload = card == null ? null : plugin.getCardManager().getPayloads().get(card.getId());
+            // 玩家名要在主线程中读取
+            plugin.getResponseDispatcher().execute(() -> {
+                List<UUID> viewers = getViewers(target);
+                if (viewers == null) return;
+                plugin.getResponseDispatcher().broadcast(viewers, PUSH_IDENTIFIER, pushMessage(target, payload));
+            });
+        });
+    }
+
+    /**
+     * 推送内容: 玩家名, UUID, 贴图路径, 展示名, 描述, 订阅状态 (只能在主线程中调用)
+     * @param payload 名片内容, 为 null 时贴图路径、展示名和描述为空字符串, 表示清空
+     */
+    public static String[] pushMessage(UUID target, CardPayload payload) {
+        String name = playerName(target);
+        if (payload == null) {
+            return new String[]{name, target.toString(), "", "", "", STATE_ACTIVE};
+        }
+        String[] equipped = payload.getEquipped();
+        return new String[]{name, target.toString(), equipped[0], equipped[1], equipped[2], STATE_ACTIVE};
+    }
+
+    /**
+     * 订阅已取消或被拒绝的推送: 名片字段为空, 订阅状态为 expired (只能在主线程中调用)
+     */
+    public static String[] expiredMessage(UUID target) {
+        return new String[]{playerName(target), target.toString(), "", "", "", STATE_EXPIRED};
+    }
+
+    private static String playerName(UUID uuid) {
+        Player player = Bukkit.getPlayer(uuid);
+        return player == null ? "" : player.getName();
+    }
+
+    /**
+     * 目标是否在观察者的追踪范围内 (同一世界且不超过 subscription.range), 超出范围的目标不能订阅
+     */
+    public boolean inRange(Player viewer, Player target) {
+        return inRange(viewer.getLocation(), target.getLocation());
+    }
+
+    /**
+     * 在主线程中检查所有订阅, 移除目标已离线、不在同一世界或超出距离的订阅
+     */
+    private void sweep() {
+        Map<UUID, List<UUID>> expired = new HashMap<>();
+        synchronized (this) {
+            for (Map.Entry<UUID, Set<UUID>> entry : targetsByViewer.entrySet()) {
+                Player viewer = Bukkit.getPlayer(entry.getKey());
+                for (UUID targetId : entry.getValue()) {
+                    Player target = Bukkit.getPlayer(targetId);
+                    if (viewer == null || target == null || !inRange(viewer.getLocation(), target.getLocation())) {
+                        expired.computeIfAbsent(entry.getKey(), uuid -> new ArrayList<>()).add(targetId);
+                    }
+                }
+            }
+            expired.forEach(this::unsubscribe);
+        }
+        // 通知观察者这些订阅已经失效, 客户端需要时可以重新订阅
+        expired.forEach((viewerId, targets) -> {
+            Player viewer = Bukkit.getPlayer(viewerId);
+            if (viewer == null) return;
+            List<String[]> messages = new ArrayList<>(targets.size());
+            targets.forEach(target -> messages.add(expiredMessage(target)));
+            plugin.getResponseDispatcher().send(viewer, PUSH_IDENTIFIER, messages);
+        });
+    }
+
+    private boolean inRange(Location viewer, Location target) {
+        return viewer.getWorld() != null && viewer.getWorld().equals(target.getWorld())
+                && viewer.distanceSquared(target) <= rangeSquared;
+    }
+
+    /**
+     * @return 当前的订阅总数
+     */
+    public synchronized int getSubscriptionCount() {
+        int count = 0;
+        for (Set<UUID> targets : targetsByViewer.values()) {
+            count += targets.size();
+        }
+        return count;
+    }
+}
@@ -0,0 +1,280 @@
+package org.diao.diaoNameCard.model;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 名片目录快照 (不可变)
+ * 每次加载配置时生成一份: 名片按 layer、ID 排序后的固定顺序, 每张名片在目录中的序号, 默认名片,
+ * 以及根据全部名片内容计算出的版本号。客户端缓存目录后只需按序号接收拥有情况。
+ * 重载时在后台线程生成新快照后整体替换, 读取方拿到的总是一份完整的目录。
+ *
+ * 同时建立分页查询用的二级索引: 目录顺序上的 layer 数组 (可二分查找层级范围),
+ * 每个分类的序号列表 (升序), 以及去掉颜色代码后的小写展示名。
+ * 另有名片ID和展示名的前缀索引, 命令补全时不再遍历全部名片。
+ */
+public final class CardCatalog {
+
+    public static final CardCatalog EMPTY = of(Collections.emptyList(), null);
+
+    private final String version;
+    private final List<NameCard> cards;
+    private final Map<String, Integer> indexes;
+    private final int[] layers;
+    // 小写分类名 -> 该分类下名片的目录序号 (升序)
+    private final Map<String, int[]> categories;
+    private final String[] searchNames;
+    // 名片ID和展示名 -> 名片ID, 用于命令补全
+    private final PrefixIndex completions;
+    private final String defaultCardId;
+    // CardIndex 编号 -> 目录序号 (-1 表示不在目录中)
+    private final int[] catalogIndexes;
+
+    private CardCatalog(String version, List<NameCard> cards, Map<String, Integer> indexes, String defaultCardId) {
+        this.version = version;
+        this.cards = cards;
+        this.indexes = indexes;
+        this.defaultCardId = defaultCardId;
+        int[] registered = new int[cards.size()];
+        int maxIndex = -1;
+        for (int i = 0; i < cards.size(); i++) {
+            registered[i] = CardIndex.of(cards.get(i).getId());
+            maxIndex = Math.max(maxIndex, registered[i]);
+        }
+        this.catalogIndexes = new int[maxIndex + 1];
+        Arrays.fill(catalogIndexes, -1);
+        for (int i = 0; i < registered.length; i++) {
+            catalogIndexes[registered[i]] = i;
+        }
+        this.layers = new int[cards.size()];
+        this.searchNames = new String[cards.size()];
+        Map<String, List<Integer>> postings = new HashMap<>();
+        for (int i = 0; i < cards.size(); i++) {
+            NameCard card = cards.get(i);
+            layers[i] = card.getLayer();
+            searchNames[i] = stripColor(card.getDisplayName()).toLowerCase();
+            if (!card.getCategory().isEmpty()) {
+                postings.computeIfAbsent(card.getCategory().toLowerCase(), key -> new ArrayList<>()).add(i);
+            }
+        }
+        Map<String, int[]> categories = new HashMap<>(postings.size() * 2);
+        postings.forEach((category, list) -> categories.put(category, list.stream().mapToInt(Integer::intValue).toArray()));
+        this.categories = categories;
+        List<String> completionKeys = new ArrayList<>(cards.size() * 2);
+        List<String> completionValues = new ArrayList<>(cards.size() * 2);
+        for (int i = 0; i < cards.size(); i++) {
+            completionKeys.add(cards.get(i).getId());
+            completionValues.add(cards.get(i).getId());
+            if (!searchNames[i].isEmpty()) {
+                completionKeys.add(searchNames[i]);
+                completionValues.add(cards.get(i).getId());
+            }
+        }
+        this.completions = PrefixIndex.of(completionKeys, completionValues);
+    }
+
+    /**
+     * 根据名片集合生成目录
+     * @param source 名片集合 (顺序无关)
+     * @param defaultCardId 默认名片ID, 必须在 source 中, 没有时为 null
+     * @return 目录快照
+     */
+    public static CardCatalog of(Collection<NameCard> source, String defaultCardId) {
+        List<NameCard> sorted = new ArrayList<>(source);
+        sorted.sort(Comparator.comparingInt(NameCard::getLayer).thenComparing(NameCard::getId));
+        Map<String, Integer> indexes = new HashMap<>(sorted.size() * 2);
+        for (int i = 0; i < sorted.size(); i++) {
+            indexes.put(sorted.get(i).getId().toLowerCase(), i);
+        }
+        return new CardCatalog(computeVersion(sorted), Collections.unmodifiableList(sorted), indexes, defaultCardId);
+    }
+
+    /**
+     * 目录版本号: 按目录顺序对所有名片字段做 SHA-256, 取前 8 字节的十六进制
+     */
+    private static String computeVersion(List<NameCard> cards) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (NameCard card : cards) {
+            update(digest, card.getId());
+            update(digest, String.valueOf(card.getLayer()));
+            update(digest, card.getTexturePath());
+            update(digest, card.getDisplayName());
+            update(digest, card.getDescription());
+            update(digest, card.getCategory());
+        }
+        byte[] hash = digest.digest();
+        StringBuilder builder = new StringBuilder(16);
+        for (int i = 0; i < 8; i++) {
+            builder.append(Character.forDigit((hash[i] >> 4) & 0xF, 16));
+            builder.append(Character.forDigit(hash[i] & 0xF, 16));
+        }
+        return builder.toString();
+    }
+
+    // 每个字段带长度前缀, 避免字段拼接后产生歧义
+    private static void update(MessageDigest digest, String value) {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        int length = bytes.length;
+        digest.update(new byte[]{(byte) (length >>> 24), (byte) (length >>> 16), (byte) (length >>> 8), (byte) length});
+        digest.update(bytes);
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return 按目录顺序排列的名片 (不可修改)
+     */
+    public List<NameCard> getCards() {
+        return cards;
+    }
+
+    /**
+     * 获取名片在目录中的序号
+     * @param cardId 名片ID (不区分大小写)
+     * @return 序号, 不在目录中时返回 -1
+     */
+    public int indexOf(String cardId) {
+        if (cardId == null) return -1;
+        Integer index = indexes.get(cardId.toLowerCase());
+        return index == null ? -1 : index;
+    }
+
+    public int size() {
+        return cards.size();
+    }
+
+    /**
+     * 把玩家拥有的名片转换为目录序号上的位图
+     * 不在目录中的名片 (已从配置中删除) 被忽略; includeDefault 为 true 时总是包含默认名片。
+     * @param owned 拥有的名片编号
+     * @param includeDefault 是否加入默认名片
+     * @return 目录序号上的位图
+     */
+    public BitSet toCatalogMask(CardSet owned, boolean includeDefault) {
+        BitSet mask = new BitSet(cards.size());
+        owned.forEach(index -> {
+            if (index < catalogIndexes.length && catalogIndexes[index] >= 0) {
+                mask.set(catalogIndexes[index]);
+            }
+        });
+        if (includeDefault && defaultCardId != null) {
+            int index = indexOf(defaultCardId);
+            if (index >= 0) {
+                mask.set(index);
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * 根据ID获取名片
+     * @param cardId 名片ID (不区分大小写)
+     * @return 名片, 不存在时返回 null
+     */
+    public NameCard getCard(String cardId) {
+        int index = indexOf(cardId);
+        return index < 0 ? null : cards.get(index);
+    }
+
+    /**
+     * @return 默认名片ID, 未配置或配置无效时为 null
+     */
+    public String getDefaultCardId() {
+        return defaultCardId;
+    }
+
+    /**
+     * @return 第一个 layer 不小于 layer 的目录序号 (都小于时返回 size)
+     */
+    public int lowerBound(int layer) {
+        int low = 0;
+        int high = layers.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (layers[mid] < layer) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return 第一个 layer 大于 layer 的目录序号 (都不大于时返回 size)
+     */
+    public int upperBound(int layer) {
+        return layer == Integer.MAX_VALUE ? layers.length : lowerBound(layer + 1);
+    }
+
+    /**
+     * 获取分类下的名片序号
+     * @param category 分类名 (不区分大小写)
+     * @return 升序的目录序号, 分类不存在时为空数组; 调用方不能修改
+     */
+    public int[] getCategory(String category) {
+        int[] posting = categories.get(category.toLowerCase());
+        return posting == null ? new int[0] : posting;
+    }
+
+    /**
+     * @return 目录序号对应名片去掉颜色代码后的小写展示名
+     */
+    public String getSearchName(int index) {
+        return searchNames[index];
+    }
+
+    /**
+     * 按名片ID或展示名 (去掉颜色代码) 的前缀补全名片ID
+     * @param prefix 前缀 (不区分大小写)
+     * @param limit 最多返回的条数
+     * @return 名片ID
+     */
+    public List<String> completeCardIds(String prefix, int limit) {
+        return completions.complete(prefix, limit);
+    }
+
+    /**
+     * 按名片ID或展示名的前缀补全满足条件的名片ID
+     * @param prefix 前缀 (不区分大小写)
+     * @param limit 最多返回的条数
+     * @param filter 名片ID需要满足的条件
+     * @return 名片ID
+     */
+    public List<String> completeCardIds(String prefix, int limit, Predicate<String> filter) {
+        return completions.complete(prefix, limit, filter);
+    }
+
+    // 去掉 § 颜色代码
+    private static String stripColor(String text) {
+        if (text == null) return "";
+        StringBuilder builder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\u00A7' && i + 1 < text.length()) {
+                i++;
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+}
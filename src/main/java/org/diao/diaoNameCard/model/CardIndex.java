@@ -0,0 +1,67 @@
+package org.diao.diaoNameCard.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 名片ID到紧凑整数编号的注册表
+ * 第一次出现的名片ID (小写) 按顺序分配 0, 1, 2 ... 的编号, 之后不再改变,
+ * 重载配置后编号仍然有效, 因此玩家的拥有情况可以直接存成编号上的位图 (见 CardSet)。
+ * 编号只在本次运行期间有效, 不会写入数据库。
+ */
+public final class CardIndex {
+
+    private static final Map<String, Integer> indexes = new ConcurrentHashMap<>();
+    private static volatile String[] ids = new String[64];
+    private static int size;
+
+    private CardIndex() {
+    }
+
+    /**
+     * 获取名片ID的编号, 第一次出现时分配新编号
+     * @param cardId 名片ID (不区分大小写)
+     * @return 编号
+     */
+    public static int of(String cardId) {
+        String key = cardId.toLowerCase();
+        Integer index = indexes.get(key);
+        return index != null ? index : register(key);
+    }
+
+    /**
+     * 查询名片ID的编号, 不分配新编号
+     * @param cardId 名片ID (不区分大小写)
+     * @return 编号, 从未出现过时返回 -1
+     */
+    public static int find(String cardId) {
+        if (cardId == null) return -1;
+        Integer index = indexes.get(cardId.toLowerCase());
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * @param index 编号
+     * @return 对应的名片ID (小写)
+     */
+    public static String idOf(int index) {
+        return ids[index];
+    }
+
+    private static synchronized int register(String key) {
+        Integer existing = indexes.get(key);
+        if (existing != null) return existing;
+        int index = size;
+        String[] current = ids;
+        if (index == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[index] = key;
+        // 先写数组再发布编号, 拿到编号的线程一定能读到对应的ID
+        ids = current;
+        size = index + 1;
+        indexes.put(key, index);
+        return index;
+    }
+}
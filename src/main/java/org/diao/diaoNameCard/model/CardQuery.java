@@ -0,0 +1,156 @@
+package org.diao.diaoNameCard.model;
+
+import java.util.BitSet;
+
+/**
+ * 名片目录的分页查询
+ * 游标是目录序号: 每页从游标处继续, 按目录顺序 (layer、ID) 返回符合条件的名片。
+ * 候选名片直接取自 CardCatalog 的二级索引: 指定分类时遍历该分类的序号列表, 只看拥有的名片时遍历拥有情况位图,
+ * 否则遍历层级范围; 因此不带展示名筛选时每页的开销只与页大小有关。
+ */
+public final class CardQuery {
+
+    /**
+     * 拥有情况筛选
+     */
+    public enum Ownership {
+        ALL,
+        OWNED,
+        NOT_OWNED;
+
+        /**
+         * @param value 请求中的写法: all / owned / not_owned, 空字符串视为 all
+         */
+        public static Ownership parse(String value) {
+            if (value == null || value.isEmpty()) return ALL;
+            return valueOf(value.toUpperCase());
+        }
+    }
+
+    private Ownership ownership = Ownership.ALL;
+    private int minLayer = Integer.MIN_VALUE;
+    private int maxLayer = Integer.MAX_VALUE;
+    private String category;
+    private String nameFilter;
+
+    public CardQuery ownership(Ownership ownership) {
+        this.ownership = ownership;
+        return this;
+    }
+
+    public CardQuery layers(int minLayer, int maxLayer) {
+        this.minLayer = minLayer;
+        this.maxLayer = maxLayer;
+        return this;
+    }
+
+    /**
+     * @param category 分类名 (不区分大小写), 为空时不筛选
+     */
+    public CardQuery category(String category) {
+        this.category = category == null || category.isEmpty() ? null : category;
+        return this;
+    }
+
+    /**
+     * @param text 展示名中包含的文字 (不区分大小写, 忽略颜色代码), 为空时不筛选
+     */
+    public CardQuery nameContains(String text) {
+        this.nameFilter = text == null || text.isEmpty() ? null : text.toLowerCase();
+        return this;
+    }
+
+    /**
+     * 执行查询
+     * @param catalog 目录快照
+     * @param owned 目标玩家拥有的名片 (目录序号上的位图)
+     * @param cursor 起始目录序号 (包含)
+     * @param limit 最多返回的条目数
+     * @return 一页结果
+     */
+    public Page execute(CardCatalog catalog, BitSet owned, int cursor, int limit) {
+        int start = Math.max(Math.max(0, cursor), catalog.lowerBound(minLayer));
+        int end = catalog.upperBound(maxLayer);
+        int[] indexes = new int[Math.max(0, Math.min(limit, end - start))];
+        int count = 0;
+
+        if (category != null) {
+            int[] posting = catalog.getCategory(category);
+            int position = firstAtLeast(posting, start);
+            for (; position < posting.length && posting[position] < end; position++) {
+                if (count == indexes.length) return new Page(indexes, count, posting[position]);
+                if (matches(catalog, owned, posting[position])) {
+                    indexes[count++] = posting[position];
+                }
+            }
+        } else if (ownership == Ownership.OWNED) {
+            for (int index = owned.nextSetBit(start); index >= 0 && index < end; index = owned.nextSetBit(index + 1)) {
+                if (count == indexes.length) return new Page(indexes, count, index);
+                if (matches(catalog, owned, index)) {
+                    indexes[count++] = index;
+                }
+            }
+        } else {
+            for (int index = start; index < end; index++) {
+                if (count == indexes.length) return new Page(indexes, count, index);
+                if (matches(catalog, owned, index)) {
+                    indexes[count++] = index;
+                }
+            }
+        }
+        return new Page(indexes, count, -1);
+    }
+
+    private boolean matches(CardCatalog catalog, BitSet owned, int index) {
+        if (ownership == Ownership.OWNED && !owned.get(index)) return false;
+        if (ownership == Ownership.NOT_OWNED && owned.get(index)) return false;
+        return nameFilter == null || catalog.getSearchName(index).contains(nameFilter);
+    }
+
+    private static int firstAtLeast(int[] sorted, int value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 一页查询结果
+     */
+    public static final class Page {
+        private final int[] indexes;
+        private final int size;
+        private final int nextCursor;
+
+        private Page(int[] indexes, int size, int nextCursor) {
+            this.indexes = indexes;
+            this.size = size;
+            this.nextCursor = nextCursor;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        /**
+         * @return 第 i 个结果的目录序号
+         */
+        public int get(int i) {
+            return indexes[i];
+        }
+
+        /**
+         * @return 下一页的游标, 没有更多结果时为 -1
+         */
+        public int getNextCursor() {
+            return nextCursor;
+        }
+    }
+}
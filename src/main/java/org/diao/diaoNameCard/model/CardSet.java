@@ -0,0 +1,133 @@
+package org.diao.diaoNameCard.model;
+
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * 名片编号集合 (不可变)
+ * 参考 roaring bitmap 的容器选择: 拥有的名片较少时存成有序的 int 数组, 较多时存成 long 位图,
+ * 始终选择占用内存更小的一种。修改操作返回新对象。
+ */
+public final class CardSet {
+
+    public static final CardSet EMPTY = new CardSet(new int[0], null, 0);
+
+    // 二者只有一个不为 null
+    private final int[] array;
+    private final long[] words;
+    private final int size;
+
+    private CardSet(int[] array, long[] words, int size) {
+        this.array = array;
+        this.words = words;
+        this.size = size;
+    }
+
+    /**
+     * 根据编号生成集合 (可以无序、可以重复)
+     */
+    public static CardSet of(int[] indexes) {
+        if (indexes.length == 0) return EMPTY;
+        int[] sorted = indexes.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        return compact(Arrays.copyOf(sorted, count));
+    }
+
+    // 在数组和位图之间选择更小的一种
+    private static CardSet compact(int[] sorted) {
+        if (sorted.length == 0) return EMPTY;
+        int wordCount = (sorted[sorted.length - 1] >>> 6) + 1;
+        if ((long) sorted.length * Integer.BYTES <= (long) wordCount * Long.BYTES) {
+            return new CardSet(sorted, null, sorted.length);
+        }
+        long[] words = new long[wordCount];
+        for (int index : sorted) {
+            words[index >>> 6] |= 1L << index;
+        }
+        return new CardSet(null, words, sorted.length);
+    }
+
+    public boolean contains(int index) {
+        if (index < 0) return false;
+        if (words != null) {
+            int word = index >>> 6;
+            return word < words.length && (words[word] & (1L << index)) != 0;
+        }
+        return Arrays.binarySearch(array, index) >= 0;
+    }
+
+    /**
+     * @return 加入编号后的集合
+     */
+    public CardSet with(int index) {
+        if (contains(index)) return this;
+        int[] values = values();
+        int[] result = Arrays.copyOf(values, values.length + 1);
+        int position = -Arrays.binarySearch(values, index) - 1;
+        System.arraycopy(values, position, result, position + 1, values.length - position);
+        result[position] = index;
+        return compact(result);
+    }
+
+    /**
+     * @return 移除编号后的集合
+     */
+    public CardSet without(int index) {
+        if (!contains(index)) return this;
+        int[] values = values();
+        int position = Arrays.binarySearch(values, index);
+        int[] result = new int[values.length - 1];
+        System.arraycopy(values, 0, result, 0, position);
+        System.arraycopy(values, position + 1, result, position, values.length - position - 1);
+        return compact(result);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 按编号从小到大遍历
+     */
+    public void forEach(IntConsumer action) {
+        if (words == null) {
+            for (int index : array) {
+                action.accept(index);
+            }
+            return;
+        }
+        for (int word = 0; word < words.length; word++) {
+            long bits = words[word];
+            while (bits != 0) {
+                action.accept((word << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    /**
+     * @return 按编号升序排列的数组 (新数组)
+     */
+    public int[] toArray() {
+        return words == null ? array.clone() : values();
+    }
+
+    // 数组容器直接返回内部数组, 调用方不能修改
+    private int[] values() {
+        if (words == null) return array;
+        int[] result = new int[size];
+        int[] position = {0};
+        forEach(index -> result[position[0]++] = index);
+        return result;
+    }
+}
@@ -0,0 +1,92 @@
+package org.diao.diaoNameCard.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 两份名片目录之间的差异 (不可变)
+ * 按名片ID (不区分大小写) 对比: 只在新目录中的为新增, 只在旧目录中的为删除,
+ * 两边都有但任意字段不同的为修改。
+ */
+public final class CatalogDiff {
+
+    private final List<NameCard> added;
+    private final List<NameCard> removed;
+    private final List<NameCard> modified;
+
+    private CatalogDiff(List<NameCard> added, List<NameCard> removed, List<NameCard> modified) {
+        this.added = added;
+        this.removed = removed;
+        this.modified = modified;
+    }
+
+    /**
+     * 对比两份目录
+     * @param previous 旧目录
+     * @param current 新目录
+     * @return 差异, 新增和修改的名片取自新目录, 删除的名片取自旧目录
+     */
+    public static CatalogDiff compute(CardCatalog previous, CardCatalog current) {
+        List<NameCard> added = new ArrayList<>();
+        List<NameCard> removed = new ArrayList<>();
+        List<NameCard> modified = new ArrayList<>();
+        for (NameCard card : current.getCards()) {
+            NameCard old = previous.getCard(card.getId());
+            if (old == null) {
+                added.add(card);
+            } else if (!sameContent(old, card)) {
+                modified.add(card);
+            }
+        }
+        for (NameCard card : previous.getCards()) {
+            if (current.indexOf(card.getId()) < 0) {
+                removed.add(card);
+            }
+        }
+        return new CatalogDiff(Collections.unmodifiableList(added), Collections.unmodifiableList(removed),
+                Collections.unmodifiableList(modified));
+    }
+
+    private static boolean sameContent(NameCard a, NameCard b) {
+        return a.getLayer() == b.getLayer()
+                && Objects.equals(a.getId(), b.getId())
+                && Objects.equals(a.getTexturePath(), b.getTexturePath())
+                && Objects.equals(a.getDisplayName(), b.getDisplayName())
+                && Objects.equals(a.getDescription(), b.getDescription())
+                && Objects.equals(a.getCategory(), b.getCategory());
+    }
+
+    /**
+     * @return 新增的名片 (按新目录顺序)
+     */
+    public List<NameCard> getAdded() {
+        return added;
+    }
+
+    /**
+     * @return 删除的名片 (按旧目录顺序)
+     */
+    public List<NameCard> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return 内容有变化的名片 (按新目录顺序)
+     */
+    public List<NameCard> getModified() {
+        return modified;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && modified.isEmpty();
+    }
+
+    /**
+     * @return 变化的名片总数
+     */
+    public int size() {
+        return added.size() + removed.size() + modified.size();
+    }
+}
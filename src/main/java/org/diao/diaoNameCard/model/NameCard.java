@@ -10,6 +10,7 @@ public class NameCard {
     private final String texturePath; // 贴图路径
     private final String displayName; // 展示名
     private final String description; // 描述
+    private final String category; // 分类, 未设置时为空字符串
 
 /**
  * NameCard类的构造函数，用于创建名片对象
@@ -20,6 +21,14 @@ public class NameCard {
  * @param description 名片的描述信息
  */
     public NameCard(String id, int layer, String texturePath, String displayName, String description) {
+        this(id, layer, texturePath, displayName, description, "");
+    }
+
+/**
+ * 带分类的构造函数
+ * @param category 名片的分类, 用于客户端按分类筛选
+ */
+    public NameCard(String id, int layer, String texturePath, String displayName, String description, String category) {
     // 初始化名片的ID属性
         this.id = id;
     // 初始化名片的层级属性
@@ -30,6 +39,8 @@ public class NameCard {
         this.displayName = displayName;
     // 初始化名片的描述信息属性
         this.description = description;
+    // 初始化名片的分类属性
+        this.category = category == null ? "" : category;
     }
 
 /**
@@ -74,4 +85,12 @@ public class NameCard {
     public String getDescription() {
         return description;  // 返回description字段的值
     }
+
+/**
+ * 获取分类的方法
+ * @return 分类名称, 未设置时为空字符串
+ */
+    public String getCategory() {
+        return category;
+    }
 }
\ No newline at end of file
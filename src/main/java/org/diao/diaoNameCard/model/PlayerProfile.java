@@ -0,0 +1,115 @@
+package org.diao.diaoNameCard.model;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 玩家名片数据模型类
+ * 封装玩家拥有的名片和当前佩戴的名片ID。
+ * 拥有的名片以 CardIndex 编号的 CardSet 存储, 大量玩家常驻内存时只占用很少的空间。
+ * 对象不可变，修改操作会返回一个新对象，方便在多个线程之间共享。
+ */
+public class PlayerProfile {
+    private final CardSet ownedCards; // 拥有的名片编号
+    private final String equippedCardId; // 佩戴的名片ID, 可能为 null
+
+    /**
+     * PlayerProfile 的构造函数
+     * @param ownedCardIds 拥有的名片ID
+     * @param equippedCardId 佩戴的名片ID, 未设置时为 null
+     */
+    public PlayerProfile(Collection<String> ownedCardIds, String equippedCardId) {
+        int[] indexes = new int[ownedCardIds.size()];
+        int i = 0;
+        for (String cardId : ownedCardIds) {
+            indexes[i++] = CardIndex.of(cardId);
+        }
+        this.ownedCards = CardSet.of(indexes);
+        this.equippedCardId = canonical(equippedCardId);
+    }
+
+    private PlayerProfile(CardSet ownedCards, String equippedCardId) {
+        this.ownedCards = ownedCards;
+        this.equippedCardId = equippedCardId;
+    }
+
+    // 使用注册表中的字符串实例, 避免每个玩家各持有一份相同的ID
+    private static String canonical(String cardId) {
+        return cardId == null ? null : CardIndex.idOf(CardIndex.of(cardId));
+    }
+
+    /**
+     * 获取拥有的名片ID集合 (每次调用都会新建集合, 热点路径应使用 getOwnedCards)
+     * @return 只读的名片ID集合 (小写)
+     */
+    public Set<String> getOwnedCardIds() {
+        Set<String> ids = new HashSet<>(ownedCards.size() * 2);
+        forEachOwned(ids::add);
+        return Collections.unmodifiableSet(ids);
+    }
+
+    /**
+     * @return 拥有的名片编号集合
+     */
+    public CardSet getOwnedCards() {
+        return ownedCards;
+    }
+
+    /**
+     * 遍历拥有的名片ID (小写)
+     */
+    public void forEachOwned(Consumer<String> action) {
+        ownedCards.forEach(index -> action.accept(CardIndex.idOf(index)));
+    }
+
+    /**
+     * @return 拥有的名片数量
+     */
+    public int getOwnedCount() {
+        return ownedCards.size();
+    }
+
+    /**
+     * 获取佩戴的名片ID
+     * @return 名片ID, 未设置时为 null
+     */
+    public String getEquippedCardId() {
+        return equippedCardId;
+    }
+
+    /**
+     * 是否拥有某个名片
+     * @param cardId 名片ID (小写)
+     * @return 是否拥有
+     */
+    public boolean hasCard(String cardId) {
+        return ownedCards.contains(CardIndex.find(cardId));
+    }
+
+    /**
+     * @return 添加了指定名片后的新对象
+     */
+    public PlayerProfile withCard(String cardId) {
+        CardSet cards = ownedCards.with(CardIndex.of(cardId));
+        return cards == ownedCards ? this : new PlayerProfile(cards, equippedCardId);
+    }
+
+    /**
+     * @return 移除了指定名片后的新对象
+     */
+    public PlayerProfile withoutCard(String cardId) {
+        int index = CardIndex.find(cardId);
+        if (!ownedCards.contains(index)) return this;
+        return new PlayerProfile(ownedCards.without(index), equippedCardId);
+    }
+
+    /**
+     * @return 佩戴了指定名片后的新对象
+     */
+    public PlayerProfile withEquipped(String cardId) {
+        return new PlayerProfile(ownedCards, canonical(cardId));
+    }
+}
@@ -0,0 +1,99 @@
+package org.diao.diaoNameCard.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * 不区分大小写的前缀索引 (不可变)
+ * 小写的键按字典序排成数组, 以某个前缀开头的键在数组中是连续的一段, 二分查找起点后顺序读取即可,
+ * 查询耗时只与前缀长度、键数量的对数和返回条数有关。多个键可以对应同一个值 (例如名片ID和展示名)。
+ */
+public final class PrefixIndex {
+
+    public static final PrefixIndex EMPTY = new PrefixIndex(new String[0], new String[0]);
+
+    private final String[] keys;
+    private final String[] values;
+
+    private PrefixIndex(String[] keys, String[] values) {
+        this.keys = keys;
+        this.values = values;
+    }
+
+    /**
+     * @param keys 键 (不区分大小写)
+     * @param values 与键一一对应的值
+     * @return 前缀索引
+     */
+    public static PrefixIndex of(List<String> keys, List<String> values) {
+        if (keys.size() != values.size()) {
+            throw new IllegalArgumentException("键和值的数量不一致");
+        }
+        Integer[] order = new Integer[keys.size()];
+        String[] lowered = new String[keys.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            lowered[i] = keys.get(i).toLowerCase();
+        }
+        Arrays.sort(order, Comparator.comparing(i -> lowered[i]));
+        String[] sortedKeys = new String[order.length];
+        String[] sortedValues = new String[order.length];
+        for (int i = 0; i < order.length; i++) {
+            sortedKeys[i] = lowered[order[i]];
+            sortedValues[i] = values.get(order[i]);
+        }
+        return new PrefixIndex(sortedKeys, sortedValues);
+    }
+
+    /**
+     * 查找键以 prefix 开头的值
+     * @param prefix 前缀 (不区分大小写), 空字符串匹配全部
+     * @param limit 最多返回的条数
+     * @return 去重后的值, 按匹配到的键的字典序
+     */
+    public List<String> complete(String prefix, int limit) {
+        return complete(prefix, limit, value -> true);
+    }
+
+    /**
+     * 查找键以 prefix 开头且满足条件的值
+     * @param prefix 前缀 (不区分大小写), 空字符串匹配全部
+     * @param limit 最多返回的条数 (只计算满足条件的值)
+     * @param filter 值需要满足的条件
+     * @return 去重后的值, 按匹配到的键的字典序
+     */
+    public List<String> complete(String prefix, int limit, Predicate<String> filter) {
+        String lowered = prefix.toLowerCase();
+        Set<String> result = new LinkedHashSet<>();
+        for (int i = lowerBound(lowered); i < keys.length && result.size() < limit; i++) {
+            if (!keys[i].startsWith(lowered)) break;
+            if (filter.test(values[i])) {
+                result.add(values[i]);
+            }
+        }
+        return new ArrayList<>(result);
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    private int lowerBound(String key) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
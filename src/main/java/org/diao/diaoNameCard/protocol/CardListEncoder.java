@@ -0,0 +1,48 @@
+package org.diao.diaoNameCard.protocol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 分块名片列表编码器
+ * 把整张名片列表打包成尽量少的几条消息, 每条消息的估算大小不超过上限。
+ * 每条消息的格式: 总条目数, 块序号 (从 0 开始), 总块数, 然后是若干个条目,
+ * 每个条目依次为: 名片ID, 贴图路径, 展示名, 描述, 是否拥有。
+ */
+public final class CardListEncoder {
+
+    // 每个条目包含的字符串数量
+    public static final int FIELDS_PER_ENTRY = 5;
+    private static final int HEADER_FIELDS = 3;
+    // 头部三个数字的估算大小
+    private static final int HEADER_BYTES = HEADER_FIELDS * MessageChunker.HEADER_FIELD_BYTES;
+
+    private final List<String[]> entries = new ArrayList<>();
+
+    /**
+     * 追加一个条目 (按追加顺序输出)
+     * @param payload 预先拼好的名片消息内容
+     * @param owned 是否拥有
+     */
+    public void add(CardPayload payload, boolean owned) {
+        entries.add(payload.getEntry(owned));
+    }
+
+    /**
+     * 按大小上限分块
+     * 单个条目本身超过上限时独占一块 (无法再拆分)。
+     * @param maxBytes 每条消息的字节数上限
+     * @return 每条消息的全部字符串 (已包含头部)
+     */
+    public List<String[]> encode(int maxBytes) {
+        List<List<String[]>> chunks = MessageChunker.chunk(entries, HEADER_BYTES, maxBytes);
+        String total = String.valueOf(entries.size());
+        String chunkCount = String.valueOf(chunks.size());
+        List<String[]> messages = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            String[] header = {total, String.valueOf(i), chunkCount};
+            messages.add(MessageChunker.join(header, chunks.get(i), FIELDS_PER_ENTRY));
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,65 @@
+package org.diao.diaoNameCard.protocol;
+
+import org.diao.diaoNameCard.model.CardQuery;
+
+import java.util.BitSet;
+
+/**
+ * 分页名片列表编码器
+ * 消息格式: 目录版本号, 下一页游标 (没有更多时为空字符串), 本页条目数, 然后是若干个条目,
+ * 每个条目依次为: 名片ID, 贴图路径, 展示名, 描述, 是否拥有。
+ * 整页超过消息大小上限时截断, 游标指向第一个未发送的条目。
+ */
+public final class CardPageEncoder {
+
+    private static final int HEADER_FIELDS = 3;
+
+    private CardPageEncoder() {
+    }
+
+    /**
+     * @param payloads 与查询使用同一版本的消息内容
+     * @param page 查询结果
+     * @param owned 拥有情况位图
+     * @param maxBytes 消息的字节数上限
+     * @return 消息的全部字符串
+     */
+    public static String[] encode(CardPayloads payloads, CardQuery.Page page, BitSet owned, int maxBytes) {
+        String version = payloads.getCatalog().getVersion();
+        int bytes = HEADER_FIELDS * MessageChunker.HEADER_FIELD_BYTES + MessageChunker.estimateBytes(new String[]{version});
+        int count = 0;
+        int nextCursor = page.getNextCursor();
+        for (; count < page.size(); count++) {
+            String[] entry = payloads.getPayloads().get(page.get(count)).getEntry(owned.get(page.get(count)));
+            int entryBytes = MessageChunker.estimateBytes(entry);
+            if (count > 0 && bytes + entryBytes > maxBytes) {
+                nextCursor = page.get(count);
+                break;
+            }
+            bytes += entryBytes;
+        }
+
+        String[] message = new String[HEADER_FIELDS + count * CardListEncoder.FIELDS_PER_ENTRY];
+        message[0] = version;
+        message[1] = nextCursor < 0 ? "" : version + ":" + nextCursor;
+        message[2] = String.valueOf(count);
+        for (int i = 0; i < count; i++) {
+            String[] entry = payloads.getPayloads().get(page.get(i)).getEntry(owned.get(page.get(i)));
+            System.arraycopy(entry, 0, message, HEADER_FIELDS + i * CardListEncoder.FIELDS_PER_ENTRY, CardListEncoder.FIELDS_PER_ENTRY);
+        }
+        return message;
+    }
+
+    /**
+     * 解析游标
+     * @param cursor 游标 ("目录版本号:序号"), 为空表示第一页
+     * @param version 当前目录版本号
+     * @return 起始目录序号; 目录已经重新加载过时从头开始
+     */
+    public static int parseCursor(String cursor, String version) {
+        if (cursor == null || cursor.isEmpty()) return 0;
+        int separator = cursor.lastIndexOf(':');
+        if (separator < 0 || !cursor.substring(0, separator).equals(version)) return 0;
+        return Integer.parseInt(cursor.substring(separator + 1));
+    }
+}
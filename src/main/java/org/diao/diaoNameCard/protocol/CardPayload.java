@@ -0,0 +1,58 @@
+package org.diao.diaoNameCard.protocol;
+
+import org.diao.diaoNameCard.model.NameCard;
+
+/**
+ * 单张名片预先拼好的消息内容 (不可变)
+ * 在加载名片时生成, 应答时直接发送, 不再逐次创建数组和拼接字段。
+ * 数组会被直接交给 CloudPick, 调用方不能修改其中的元素。
+ */
+public final class CardPayload {
+
+    private final NameCard card;
+    private final int catalogIndex;
+    // dnc_card: 贴图路径, 展示名, 描述
+    private final String[] equipped;
+    // dnc_card_list / dnc_id_card_i / 分块列表条目: 名片ID, 贴图路径, 展示名, 描述, 是否拥有
+    private final String[] ownedEntry;
+    private final String[] notOwnedEntry;
+    // dnc_catalog 条目: 名片ID, layer, 贴图路径, 展示名, 描述
+    private final String[] catalogEntry;
+
+    CardPayload(NameCard card, int catalogIndex) {
+        this.card = card;
+        this.catalogIndex = catalogIndex;
+        this.equipped = new String[]{card.getTexturePath(), card.getDisplayName(), card.getDescription()};
+        this.ownedEntry = new String[]{card.getId(), card.getTexturePath(), card.getDisplayName(), card.getDescription(), "true"};
+        this.notOwnedEntry = new String[]{card.getId(), card.getTexturePath(), card.getDisplayName(), card.getDescription(), "false"};
+        this.catalogEntry = new String[]{card.getId(), String.valueOf(card.getLayer()),
+                card.getTexturePath(), card.getDisplayName(), card.getDescription()};
+    }
+
+    public NameCard getCard() {
+        return card;
+    }
+
+    /**
+     * @return 名片在目录中的序号
+     */
+    public int getCatalogIndex() {
+        return catalogIndex;
+    }
+
+    public String[] getEquipped() {
+        return equipped;
+    }
+
+    /**
+     * @param owned 是否拥有
+     * @return 列表条目 (与 dnc_id_card_i 的格式相同)
+     */
+    public String[] getEntry(boolean owned) {
+        return owned ? ownedEntry : notOwnedEntry;
+    }
+
+    String[] getCatalogEntry() {
+        return catalogEntry;
+    }
+}
@@ -0,0 +1,85 @@
+package org.diao.diaoNameCard.protocol;
+
+import org.diao.diaoNameCard.model.CardCatalog;
+import org.diao.diaoNameCard.model.NameCard;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 整个目录预先拼好的消息内容 (不可变)
+ * 包含每张名片的 CardPayload 以及已经分好块的 dnc_catalog 消息, 与生成它的目录快照一一对应。
+ */
+public final class CardPayloads {
+
+    public static final CardPayloads EMPTY = build(CardCatalog.EMPTY, 30000);
+
+    private final CardCatalog catalog;
+    private final int maxMessageBytes;
+    // 按目录顺序
+    private final List<CardPayload> payloads;
+    private final Map<String, CardPayload> byId;
+    private final List<String[]> catalogMessages;
+
+    private CardPayloads(CardCatalog catalog, int maxMessageBytes, List<CardPayload> payloads,
+                         Map<String, CardPayload> byId, List<String[]> catalogMessages) {
+        this.catalog = catalog;
+        this.maxMessageBytes = maxMessageBytes;
+        this.payloads = payloads;
+        this.byId = byId;
+        this.catalogMessages = catalogMessages;
+    }
+
+    /**
+     * 为目录中的每张名片生成消息内容
+     * @param catalog 目录快照
+     * @param maxMessageBytes 每条消息的字节数上限
+     * @return 预先拼好的消息内容
+     */
+    public static CardPayloads build(CardCatalog catalog, int maxMessageBytes) {
+        List<CardPayload> payloads = new ArrayList<>(catalog.size());
+        Map<String, CardPayload> byId = new HashMap<>(catalog.size() * 2);
+        for (NameCard card : catalog.getCards()) {
+            CardPayload payload = new CardPayload(card, payloads.size());
+            payloads.add(payload);
+            byId.put(card.getId().toLowerCase(), payload);
+        }
+        List<String[]> catalogMessages = Collections.unmodifiableList(
+                CatalogEncoder.encodeCatalog(catalog, payloads, maxMessageBytes));
+        return new CardPayloads(catalog, maxMessageBytes, Collections.unmodifiableList(payloads), byId, catalogMessages);
+    }
+
+    public CardCatalog getCatalog() {
+        return catalog;
+    }
+
+    public int getMaxMessageBytes() {
+        return maxMessageBytes;
+    }
+
+    /**
+     * @return 按目录顺序排列的消息内容 (不可修改)
+     */
+    public List<CardPayload> getPayloads() {
+        return payloads;
+    }
+
+    /**
+     * @param cardId 名片ID (不区分大小写)
+     * @return 消息内容, 名片不在目录中时返回 null
+     */
+    public CardPayload get(String cardId) {
+        if (cardId == null) return null;
+        return byId.get(cardId.toLowerCase());
+    }
+
+    /**
+     * @return 已分块的完整目录消息 (不可修改)
+     */
+    public List<String[]> getCatalogMessages() {
+        return catalogMessages;
+    }
+}
@@ -0,0 +1,61 @@
+package org.diao.diaoNameCard.protocol;
+
+import org.diao.diaoNameCard.model.CardCatalog;
+import org.diao.diaoNameCard.model.CatalogDiff;
+import org.diao.diaoNameCard.model.NameCard;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 目录增量编码器
+ * 名片配置热重载后只推送变化的名片。每条消息的格式: 新目录版本号, 旧目录版本号, 块序号 (从 0 开始), 总块数,
+ * 然后是若干个条目, 每个条目依次为: 操作 (add/modify/remove), 名片ID, layer, 贴图路径, 展示名, 描述
+ * (remove 条目除名片ID外均为空字符串)。
+ * 已缓存旧版本目录的客户端应用增量后按 layer 升序、同 layer 按名片ID排序即得到新目录的顺序;
+ * 缓存了其他版本的客户端应忽略增量, 下次请求时会收到完整目录。
+ */
+public final class CatalogDeltaEncoder {
+
+    public static final int FIELDS_PER_ENTRY = 6;
+    private static final int HEADER_FIELDS = 4;
+    private static final int HEADER_BYTES = HEADER_FIELDS * MessageChunker.HEADER_FIELD_BYTES;
+
+    private CatalogDeltaEncoder() {
+    }
+
+    /**
+     * @param previous 旧目录
+     * @param current 新目录
+     * @param diff 两份目录之间的差异
+     * @param maxBytes 每条消息的字节数上限
+     * @return 每条消息的全部字符串 (已包含头部), 没有差异时为空列表
+     */
+    public static List<String[]> encode(CardCatalog previous, CardCatalog current, CatalogDiff diff, int maxBytes) {
+        List<String[]> entries = new ArrayList<>(diff.size());
+        for (NameCard card : diff.getAdded()) {
+            entries.add(entry("add", card));
+        }
+        for (NameCard card : diff.getModified()) {
+            entries.add(entry("modify", card));
+        }
+        for (NameCard card : diff.getRemoved()) {
+            entries.add(new String[]{"remove", card.getId(), "", "", "", ""});
+        }
+        if (entries.isEmpty()) return new ArrayList<>();
+
+        List<List<String[]>> chunks = MessageChunker.chunk(entries, HEADER_BYTES, maxBytes);
+        String chunkCount = String.valueOf(chunks.size());
+        List<String[]> messages = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            String[] header = {current.getVersion(), previous.getVersion(), String.valueOf(i), chunkCount};
+            messages.add(MessageChunker.join(header, chunks.get(i), FIELDS_PER_ENTRY));
+        }
+        return messages;
+    }
+
+    private static String[] entry(String operation, NameCard card) {
+        return new String[]{operation, card.getId(), String.valueOf(card.getLayer()),
+                card.getTexturePath(), card.getDisplayName(), card.getDescription()};
+    }
+}
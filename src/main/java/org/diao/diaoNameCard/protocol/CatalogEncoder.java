@@ -0,0 +1,56 @@
+package org.diao.diaoNameCard.protocol;
+
+import org.diao.diaoNameCard.model.CardCatalog;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * 名片目录同步编码器
+ * 目录消息格式: 目录版本号, 块序号 (从 0 开始), 总块数, 然后是若干个条目,
+ * 每个条目依次为: 名片ID, layer, 贴图路径, 展示名, 描述 (按目录顺序, 条目的位置即目录序号)。
+ * 带上 layer 是为了让客户端应用目录增量后能够重新排序。
+ * 拥有情况为目录序号上的位图: 第 i 张名片对应第 i / 8 个字节的第 i % 8 位 (低位在前),
+ * 末尾全零的字节省略, 整体以 Base64 编码。
+ */
+public final class CatalogEncoder {
+
+    public static final int FIELDS_PER_ENTRY = 5;
+    private static final int HEADER_BYTES = 3 * MessageChunker.HEADER_FIELD_BYTES;
+
+    private CatalogEncoder() {
+    }
+
+    /**
+     * 把整个目录按大小上限分块 (在 CardPayloads 生成时调用一次)
+     * @param catalog 目录
+     * @param payloads 按目录顺序排列的消息内容
+     * @param maxBytes 每条消息的字节数上限
+     * @return 每条消息的全部字符串 (已包含头部)
+     */
+    static List<String[]> encodeCatalog(CardCatalog catalog, List<CardPayload> payloads, int maxBytes) {
+        List<String[]> entries = new ArrayList<>(payloads.size());
+        for (CardPayload payload : payloads) {
+            entries.add(payload.getCatalogEntry());
+        }
+        List<List<String[]>> chunks = MessageChunker.chunk(entries, HEADER_BYTES, maxBytes);
+        String chunkCount = String.valueOf(chunks.size());
+        List<String[]> messages = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            String[] header = {catalog.getVersion(), String.valueOf(i), chunkCount};
+            messages.add(MessageChunker.join(header, chunks.get(i), FIELDS_PER_ENTRY));
+        }
+        return messages;
+    }
+
+    /**
+     * 把目录序号上的拥有情况位图编码为字符串
+     * @param owned 拥有情况位图 (见 CardCatalog#toCatalogMask)
+     * @return Base64 编码的位图
+     */
+    public static String encodeOwned(BitSet owned) {
+        return Base64.getEncoder().encodeToString(owned.toByteArray());
+    }
+}
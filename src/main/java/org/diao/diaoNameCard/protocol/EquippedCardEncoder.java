@@ -0,0 +1,45 @@
+package org.diao.diaoNameCard.protocol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量佩戴名片应答编码器
+ * 每条消息的格式: 总条目数, 块序号 (从 0 开始), 总块数, 然后是若干个条目,
+ * 每个条目依次为: 玩家 (与请求中的写法相同), 贴图路径, 展示名, 描述。
+ */
+public final class EquippedCardEncoder {
+
+    public static final int FIELDS_PER_ENTRY = 4;
+    private static final int HEADER_FIELDS = 3;
+    private static final int HEADER_BYTES = HEADER_FIELDS * MessageChunker.HEADER_FIELD_BYTES;
+
+    private final List<String[]> entries = new ArrayList<>();
+
+    /**
+     * 追加一个条目
+     * @param player 请求中的玩家名或 UUID
+     * @param payload 该玩家佩戴的名片
+     */
+    public void add(String player, CardPayload payload) {
+        String[] equipped = payload.getEquipped();
+        entries.add(new String[]{player, equipped[0], equipped[1], equipped[2]});
+    }
+
+    /**
+     * 按大小上限分块
+     * @param maxBytes 每条消息的字节数上限
+     * @return 每条消息的全部字符串 (已包含头部)
+     */
+    public List<String[]> encode(int maxBytes) {
+        List<List<String[]>> chunks = MessageChunker.chunk(entries, HEADER_BYTES, maxBytes);
+        String total = String.valueOf(entries.size());
+        String chunkCount = String.valueOf(chunks.size());
+        List<String[]> messages = new ArrayList<>(chunks.size());
+        for (int i = 0; i < chunks.size(); i++) {
+            String[] header = {total, String.valueOf(i), chunkCount};
+            messages.add(MessageChunker.join(header, chunks.get(i), FIELDS_PER_ENTRY));
+        }
+        return messages;
+    }
+}
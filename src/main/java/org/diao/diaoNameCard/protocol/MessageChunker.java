@@ -0,0 +1,88 @@
+package org.diao.diaoNameCard.protocol;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按消息大小上限把条目分块 (分块列表与名片目录共用)
+ */
+final class MessageChunker {
+
+    // 每个字符串的长度前缀 (VarInt) 最多占用的字节数
+    static final int LENGTH_PREFIX_BYTES = 3;
+    // 一个头部字段 (数字或版本号) 的估算大小
+    static final int HEADER_FIELD_BYTES = 20 + LENGTH_PREFIX_BYTES;
+
+    private MessageChunker() {
+    }
+
+    /**
+     * 按顺序分块, 单个条目本身超过上限时独占一块 (无法再拆分)。
+     * 空列表也返回一个空块, 让客户端知道列表为空。
+     * @param entries 条目
+     * @param headerBytes 每条消息头部的估算大小
+     * @param maxBytes 每条消息的字节数上限
+     * @return 分块后的条目
+     */
+    static List<List<String[]>> chunk(List<String[]> entries, int headerBytes, int maxBytes) {
+        List<List<String[]>> chunks = new ArrayList<>();
+        List<String[]> current = new ArrayList<>();
+        int currentBytes = headerBytes;
+        for (String[] entry : entries) {
+            int entryBytes = estimateBytes(entry);
+            if (!current.isEmpty() && currentBytes + entryBytes > maxBytes) {
+                chunks.add(current);
+                current = new ArrayList<>();
+                currentBytes = headerBytes;
+            }
+            current.add(entry);
+            currentBytes += entryBytes;
+        }
+        if (!current.isEmpty() || chunks.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+
+    /**
+     * 把头部和块内条目拼成一条消息
+     */
+    static String[] join(String[] header, List<String[]> chunk, int fieldsPerEntry) {
+        String[] message = new String[header.length + chunk.size() * fieldsPerEntry];
+        System.arraycopy(header, 0, message, 0, header.length);
+        int index = header.length;
+        for (String[] entry : chunk) {
+            System.arraycopy(entry, 0, message, index, fieldsPerEntry);
+            index += fieldsPerEntry;
+        }
+        return message;
+    }
+
+    static int estimateBytes(String[] entry) {
+        int bytes = 0;
+        for (String field : entry) {
+            bytes += utf8Length(field) + LENGTH_PREFIX_BYTES;
+        }
+        return bytes;
+    }
+
+    // 直接按字符计算 UTF-8 长度, 不创建临时字节数组
+    private static int utf8Length(String value) {
+        if (value == null) return 0;
+        int length = 0;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                length++;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+}
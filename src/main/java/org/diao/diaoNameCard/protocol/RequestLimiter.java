@@ -0,0 +1,201 @@
+package org.diao.diaoNameCard.protocol;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+import org.diao.diaoNameCard.Main;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 客户端请求限流器
+ * 每个请求者的每种请求标识符各有一个令牌桶, 令牌耗尽后的请求直接丢弃;
+ * 同一请求者在去重窗口内重复发送完全相同的只读请求 (标识符和内容都相同) 时, 视为与上一次合并,
+ * 不再查询数据库, 由上一次请求的应答一并满足。会改变状态的请求 (例如订阅和取消订阅) 不能合并,
+ * 否则 "订阅 A, 取消订阅 A, 订阅 A" 中的最后一次会被丢弃, 只受令牌桶限制。
+ * 防止被修改的客户端或每帧重发请求的界面拖垮存储线程。
+ */
+public class RequestLimiter {
+
+    // 清理过期状态的间隔 (1 分钟)
+    private static final long CLEANUP_INTERVAL_TICKS = 20L * 60;
+
+    /**
+     * 检查结果
+     */
+    public enum Result {
+        ACCEPTED,
+        MERGED,
+        DROPPED
+    }
+
+    private final Main plugin;
+    private final boolean enabled;
+    private final double burst;
+    private final double tokensPerNano;
+    private final long dedupWindowNanos;
+    private final Map<UUID, Requester> requesters = new ConcurrentHashMap<>();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder merged = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private BukkitTask cleanupTask;
+
+    public RequestLimiter(Main plugin) {
+        this.plugin = plugin;
+        this.enabled = plugin.getConfig().getBoolean("protocol.rate-limit.enabled", true);
+        this.burst = Math.max(1, plugin.getConfig().getInt("protocol.rate-limit.burst", 20));
+        double perSecond = Math.max(0.1, plugin.getConfig().getDouble("protocol.rate-limit.per-second", 10.0));
+        this.tokensPerNano = perSecond / 1_000_000_000d;
+        this.dedupWindowNanos = Math.max(0L, plugin.getConfig().getLong("protocol.dedup-window-millis", 250L)) * 1_000_000L;
+    }
+
+    public void start() {
+        if (!enabled) return;
+        cleanupTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::cleanup, CLEANUP_INTERVAL_TICKS, CLEANUP_INTERVAL_TICKS);
+    }
+
+    public void stop() {
+        if (cleanupTask != null) {
+            cleanupTask.cancel();
+            cleanupTask = null;
+        }
+        requesters.clear();
+    }
+
+    /**
+     * 检查一个请求是否应该处理
+     * @param requester 请求者
+     * @param identifier 请求标识符
+     * @param data 请求内容
+     * @return 检查结果, 只有 ACCEPTED 需要处理
+     */
+    public Result check(UUID requester, String identifier, Collection<String> data) {
+        return check(requester, identifier, data, true);
+    }
+
+    /**
+     * 检查一个请求是否应该处理
+     * @param requester 请求者
+     * @param identifier 请求标识符
+     * @param data 请求内容
+     * @param deduplicate 是否参与去重 (会改变状态的请求传 false, 只受令牌桶限制)
+     * @return 检查结果, 只有 ACCEPTED 需要处理
+     */
+    public Result check(UUID requester, String identifier, Collection<String> data, boolean deduplicate) {
+        if (!enabled) {
+            accepted.increment();
+            return Result.ACCEPTED;
+        }
+        Result result = requesters.computeIfAbsent(requester, uuid -> new Requester())
+                .check(identifier, deduplicate ? String.join("\u0000", data) : null, System.nanoTime());
+        switch (result) {
+            case ACCEPTED:
+                accepted.increment();
+                break;
+            case MERGED:
+                merged.increment();
+                break;
+            default:
+                dropped.increment();
+                break;
+        }
+        return result;
+    }
+
+    /**
+     * 玩家退出时释放其限流状态
+     */
+    public void forget(UUID requester) {
+        requesters.remove(requester);
+    }
+
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    public long getMerged() {
+        return merged.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    // 移除令牌已回满且去重窗口已过的状态
+    private void cleanup() {
+        long now = System.nanoTime();
+        requesters.values().forEach(requester -> requester.cleanup(now));
+        requesters.values().removeIf(Requester::isIdle);
+    }
+
+    /**
+     * 单个请求者的状态, 所有方法都在自身的锁内执行
+     */
+    private final class Requester {
+        private final Map<String, Bucket> buckets = new HashMap<>();
+        private final Map<String, Long> recent = new HashMap<>();
+
+        /**
+         * @param data 请求内容, 为 null 时不参与去重
+         */
+        synchronized Result check(String identifier, String data, long now) {
+            String key = data == null ? null : identifier + '\u0000' + data;
+            Long last = key == null ? null : recent.get(key);
+            if (last != null && now - last < dedupWindowNanos) {
+                return Result.MERGED;
+            }
+            Bucket bucket = buckets.computeIfAbsent(identifier, id -> new Bucket(now));
+            if (!bucket.tryAcquire(now)) {
+                return Result.DROPPED;
+            }
+            if (key != null && dedupWindowNanos > 0) {
+                recent.put(key, now);
+            }
+            return Result.ACCEPTED;
+        }
+
+        synchronized void cleanup(long now) {
+            recent.values().removeIf(time -> now - time >= dedupWindowNanos);
+            buckets.values().removeIf(bucket -> bucket.isFull(now));
+        }
+
+        synchronized boolean isIdle() {
+            return recent.isEmpty() && buckets.isEmpty();
+        }
+    }
+
+    /**
+     * 令牌桶: 容量为 burst, 每秒补充 per-second 个令牌
+     */
+    private final class Bucket {
+        private double tokens = burst;
+        private long updatedAt;
+
+        Bucket(long now) {
+            this.updatedAt = now;
+        }
+
+        boolean tryAcquire(long now) {
+            refill(now);
+            if (tokens < 1) {
+                return false;
+            }
+            tokens -= 1;
+            return true;
+        }
+
+        boolean isFull(long now) {
+            refill(now);
+            return tokens >= burst;
+        }
+
+        private void refill(long now) {
+            tokens = Math.min(burst, tokens + (now - updatedAt) * tokensPerNano);
+            updatedAt = now;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package org.diao.diaoNameCard.protocol;
+
+import org.bukkit.Bukkit;
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitTask;
+import org.diao.diaoNameCard.Main;
+import yslelf.cloudpick.bukkit.api.PacketSender;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 应答发送器
+ * 任意线程上完成的查询结果都先放入无锁队列, 由主线程上唯一的定时任务每 tick 统一发送,
+ * 代替每个结果各自调度一次 runTask, 也保证数据包和聊天消息都在主线程发出。
+ * 每 tick 的发送时间有上限, 超出的部分留到下一个 tick。
+ */
+public class ResponseDispatcher {
+
+    private final Main plugin;
+    private final long budgetNanos;
+    private final Queue<Runnable> queue = new ConcurrentLinkedQueue<>();
+    // ConcurrentLinkedQueue.size() 需要遍历整个队列, 单独计数
+    private final AtomicInteger pending = new AtomicInteger();
+    private BukkitTask task;
+
+    public ResponseDispatcher(Main plugin) {
+        this.plugin = plugin;
+        this.budgetNanos = Math.max(1L, plugin.getConfig().getLong("protocol.dispatch-budget-millis", 5L)) * 1_000_000L;
+    }
+
+    public void start() {
+        task = Bukkit.getScheduler().runTaskTimer(plugin, this::drain, 1L, 1L);
+    }
+
+    /**
+     * 停止发送, 队列中尚未发送的应答会被丢弃
+     */
+    public void stop() {
+        if (task != null) {
+            task.cancel();
+            task = null;
+        }
+        queue.clear();
+        pending.set(0);
+    }
+
+    /**
+     * 发送一条数据包 (玩家已离线时忽略)
+     * @param player 接收者
+     * @param identifier 标识符
+     * @param data 内容, 放入队列后不能再修改
+     */
+    public void send(Player player, String identifier, String... data) {
+        execute(() -> {
+            if (player.isOnline()) {
+                PacketSender.sendCustomData(player, identifier, data);
+            }
+        });
+    }
+
+    /**
+     * 依次发送同一个应答的多条数据包 (整体占用一个队列位置, 不会被其他应答插入)
+     * @param player 接收者
+     * @param identifier 标识符
+     * @param messages 每条数据包的内容
+     */
+    public void send(Player player, String identifier, List<String[]> messages) {
+        if (messages.isEmpty()) return;
+        execute(() -> {
+            if (!player.isOnline()) return;
+            for (String[] message : messages) {
+                PacketSender.sendCustomData(player, identifier, message);
+            }
+        });
+    }
+
+    /**
+     * 向多个在线玩家发送同一条数据包 (离线的玩家被忽略)
+     * @param players 接收者UUID
+     * @param identifier 标识符
+     * @param data 内容, 放入队列后不能再修改
+     */
+    public void broadcast(Collection<UUID> players, String identifier, String... data) {
+        execute(() -> {
+            for (UUID uuid : players) {
+                Player player = Bukkit.getPlayer(uuid);
+                if (player != null) {
+                    PacketSender.sendCustomData(player, identifier, data);
+                }
+            }
+        });
+    }
+
+    /**
+     * 向当前所有在线玩家依次发送同一个应答的多条数据包 (发送时才读取在线玩家列表)
+     * @param identifier 标识符
+     * @param messages 每条数据包的内容
+     */
+    public void broadcastAll(String identifier, List<String[]> messages) {
+        if (messages.isEmpty()) return;
+        execute(() -> {
+            for (Player player : Bukkit.getOnlinePlayers()) {
+                for (String[] message : messages) {
+                    PacketSender.sendCustomData(player, identifier, message);
+                }
+            }
+        });
+    }
+
+    /**
+     * 发送一条聊天消息
+     */
+    public void message(CommandSender sender, String message) {
+        execute(() -> sender.sendMessage(message));
+    }
+
+    /**
+     * 在主线程执行一个操作
+     */
+    public void execute(Runnable action) {
+        queue.add(action);
+        pending.incrementAndGet();
+    }
+
+    /**
+     * @return 尚未发送的应答数量
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    private void drain() {
+        long deadline = System.nanoTime() + budgetNanos;
+        Runnable action;
+        while ((action = queue.poll()) != null) {
+            pending.decrementAndGet();
+            try {
+                action.run();
+            } catch (Exception e) {
+                plugin.getLogger().warning("发送应答时出错: " + e.getMessage());
+            }
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package org.diao.diaoNameCard.storage;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+
+/**
+ * 名片ID字典的内存缓存
+ * 对应数据库中的 card_dictionary 表，把名片ID字符串映射为一个小整数，
+ * player_cards_v2 / player_meta_v2 只存储这个整数。
+ */
+public class CardDictionary {
+
+    private final Map<String, Integer> ints = new ConcurrentHashMap<>();
+    private final Map<Integer, String> ids = new ConcurrentHashMap<>();
+
+    /**
+     * @param cardId 名片ID
+     * @return 对应的整数编号, 尚未缓存时返回 null
+     */
+    public Integer getInt(String cardId) {
+        return ints.get(cardId);
+    }
+
+    /**
+     * @param cardInt 整数编号
+     * @return 对应的名片ID, 尚未缓存时返回 null
+     */
+    public String getCardId(int cardInt) {
+        return ids.get(cardInt);
+    }
+
+    /**
+     * 缓存一条字典记录
+     * @param cardInt 整数编号
+     * @param cardId 名片ID
+     */
+    public void put(int cardInt, String cardId) {
+        ints.put(cardId, cardInt);
+        ids.put(cardInt, cardId);
+    }
+
+    /**
+     * 清空缓存, 之后的查询会重新从数据库读取
+     */
+    public void clear() {
+        ints.clear();
+        ids.clear();
+    }
+
+    /**
+     * 遍历所有字典记录
+     * @param action 接收 (整数编号, 名片ID)
+     */
+    public void forEach(BiConsumer<Integer, String> action) {
+        ids.forEach(action);
+    }
+
+    public int size() {
+        return ints.size();
+    }
+}
@@ -1,8 +1,14 @@
 package org.diao.diaoNameCard.storage;
 
+import org.diao.diaoNameCard.model.PlayerProfile;
+
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * 数据库操作接口
@@ -27,6 +33,14 @@ public interface Database {
      */
     CompletableFuture<List<String>> getPlayerCards(UUID uuid);
 
+    /**
+     * 一次性读取玩家拥有的名片ID和当前装备的名片ID
+     * 只占用一次连接和一次网络往返
+     * @param uuid 玩家的UUID
+     * @return 一个包含玩家名片数据的 CompletableFuture, 读取失败时异常完成 (不能当作空数据缓存)
+     */
+    CompletableFuture<PlayerProfile> loadProfile(UUID uuid);
+
     /**
      * 为玩家添加一个名片
      * @param uuid 玩家的UUID
@@ -50,6 +64,13 @@ public interface Database {
      */
     CompletableFuture<String> getEquippedCard(UUID uuid);
 
+    /**
+     * 批量获取多个玩家当前装备的名片ID (使用 IN 查询, 按安全的参数数量分块)
+     * @param uuids 玩家UUID集合
+     * @return 玩家UUID到名片ID的映射, 没有佩戴记录的玩家不在其中
+     */
+    CompletableFuture<Map<UUID, String>> getEquippedCards(Collection<UUID> uuids);
+
     /**
      * 设置玩家当前装备的名片
      * @param uuid 玩家的UUID
@@ -57,4 +78,117 @@ public interface Database {
      * @return 一个表示操作完成的 CompletableFuture
      */
     CompletableFuture<Void> setEquippedCard(UUID uuid, String cardId);
+
+    /**
+     * 在一个事务中批量写入多条名片增删和佩戴操作
+     * @param batch 已合并的写操作集合
+     * @return 一个表示操作完成的 CompletableFuture, 写入失败时异常完成
+     */
+    CompletableFuture<Void> writeBatch(WriteBatch batch);
+
+    /**
+     * 为多个玩家批量添加同一个名片 (多行 INSERT, 已拥有的玩家会被忽略)
+     * @param uuids 玩家UUID集合
+     * @param cardId 名片ID
+     * @return 一个包含实际新增行数的 CompletableFuture
+     */
+    CompletableFuture<Integer> addCardToPlayers(Collection<UUID> uuids, String cardId);
+
+    /**
+     * 从所有玩家处移除某个名片, 每次调用最多删除 limit 行
+     * @param cardId 名片ID
+     * @param limit 本次最多删除的行数
+     * @return 一个包含本次删除行数的 CompletableFuture, 小于 limit 表示已经全部删除
+     */
+    CompletableFuture<Integer> removeCardFromAll(String cardId, int limit);
+
+    /**
+     * 清除所有玩家对某个名片的佩戴记录 (之后会显示默认名片)
+     * @param cardId 名片ID
+     * @return 一个包含受影响玩家数量的 CompletableFuture
+     */
+    CompletableFuture<Integer> clearEquippedCard(String cardId);
+
+    /**
+     * 统计拥有某个名片的玩家数量
+     * @param cardId 名片ID
+     * @return 一个包含玩家数量的 CompletableFuture
+     */
+    CompletableFuture<Long> countCardOwners(String cardId);
+
+    /**
+     * 以游标方式流式读取全部玩家名片记录, 每读满 batchSize 行调用一次 sink
+     * sink 在数据库线程中被调用，可以阻塞以实现背压
+     * @param batchSize 每批行数
+     * @param sink 接收每一批数据
+     * @return 全部读取完成的 CompletableFuture
+     */
+    CompletableFuture<Void> streamPlayerCards(int batchSize, Consumer<List<PlayerCardRow>> sink);
+
+    /**
+     * 以游标方式流式读取全部玩家佩戴记录, 用法同 {@link #streamPlayerCards}
+     * @param batchSize 每批行数
+     * @param sink 接收每一批数据
+     * @return 全部读取完成的 CompletableFuture
+     */
+    CompletableFuture<Void> streamPlayerMeta(int batchSize, Consumer<List<PlayerCardRow>> sink);
+
+    /**
+     * 在一个事务中批量导入玩家名片记录 (已存在的记录会被忽略)
+     * @param rows 名片记录
+     * @return 导入完成的 CompletableFuture
+     */
+    CompletableFuture<Void> importPlayerCards(List<PlayerCardRow> rows);
+
+    /**
+     * 在一个事务中批量导入玩家佩戴记录 (已存在的记录会被覆盖)
+     * @param rows 佩戴记录
+     * @return 导入完成的 CompletableFuture
+     */
+    CompletableFuture<Void> importPlayerMeta(List<PlayerCardRow> rows);
+
+    /**
+     * @return 玩家名片记录总行数
+     */
+    CompletableFuture<Long> countPlayerCards();
+
+    /**
+     * @return 玩家佩戴记录总行数
+     */
+    CompletableFuture<Long> countPlayerMeta();
+
+    /**
+     * 读取变更日志中序号大于 afterSequence 的记录 (按序号升序)
+     * 不支持变更日志的实现返回空列表。
+     * @param afterSequence 已处理的最大序号
+     * @param limit 最多返回的记录数
+     * @return 变更记录列表
+     */
+    default CompletableFuture<List<PlayerChange>> pollChanges(long afterSequence, int limit) {
+        return CompletableFuture.completedFuture(Collections.emptyList());
+    }
+
+    /**
+     * @return 变更日志中当前最大的序号, 没有记录时为 0
+     */
+    default CompletableFuture<Long> getLatestChangeSequence() {
+        return CompletableFuture.completedFuture(0L);
+    }
+
+    /**
+     * 删除早于指定时间的变更日志
+     * @param beforeMillis 时间戳 (毫秒)
+     * @return 删除的行数
+     */
+    default CompletableFuture<Integer> pruneChanges(long beforeMillis) {
+        return CompletableFuture.completedFuture(0);
+    }
+
+    /**
+     * 获取数据库执行器中正在排队的任务数量
+     * @return 排队中的任务数
+     */
+    default int getQueueDepth() {
+        return 0;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,177 @@
+package org.diao.diaoNameCard.storage;
+
+import org.diao.diaoNameCard.Main;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 数据库专用执行器
+ * 所有阻塞的 JDBC 调用都在这里执行，不再占用 ForkJoinPool.commonPool()。
+ * 支持两种模式 (storage.executor.mode):
+ * - platform: 固定大小的平台线程池，线程数默认与连接池大小一致；
+ * - virtual: 每个任务一个虚拟线程 (需要 Java 21)，同时执行的任务数仍受线程数限制。
+ * 两种模式都有一个有界的等待队列 (storage.executor.queue-size)，队列满时直接拒绝新任务。
+ */
+public class DatabaseExecutor implements Executor {
+
+    private final Main plugin;
+    private final int concurrency;
+    private final int queueCapacity;
+    private final ExecutorService delegate;
+    // 仅 platform 模式使用
+    private final ThreadPoolExecutor pool;
+    // 仅 virtual 模式使用: 限制并发数, 并统计已提交未完成的任务
+    private final Semaphore permits;
+    private final AtomicInteger submitted = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param plugin 插件实例
+     * @param name 线程名前缀
+     * @param defaultThreads 默认线程数 (一般等于连接池大小)
+     */
+    public DatabaseExecutor(Main plugin, String name, int defaultThreads) {
+        this.plugin = plugin;
+        int threads = plugin.getConfig().getInt("storage.executor.threads", 0);
+        this.concurrency = Math.max(1, threads > 0 ? threads : defaultThreads);
+        this.queueCapacity = Math.max(1, plugin.getConfig().getInt("storage.executor.queue-size", 1000));
+
+        String mode = plugin.getConfig().getString("storage.executor.mode", "platform").toLowerCase();
+        ExecutorService virtual = mode.equals("virtual") ? createVirtualExecutor() : null;
+        if (virtual != null) {
+            this.delegate = virtual;
+            this.pool = null;
+            this.permits = new Semaphore(concurrency);
+            plugin.getLogger().info("数据库执行器使用虚拟线程模式, 最大并发 " + concurrency + "。");
+        } else {
+            this.pool = new ThreadPoolExecutor(concurrency, concurrency, 60L, TimeUnit.SECONDS,
+                    new ArrayBlockingQueue<>(queueCapacity), namedThreads("DiaoNameCard-" + name), new ThreadPoolExecutor.AbortPolicy());
+            this.delegate = pool;
+            this.permits = null;
+        }
+    }
+
+    /**
+     * 通过反射创建虚拟线程执行器, 以便插件仍能在 Java 17 上编译和运行
+     */
+    private ExecutorService createVirtualExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            plugin.getLogger().warning("当前 Java 版本不支持虚拟线程, 数据库执行器回退为平台线程池。");
+            return null;
+        }
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        if (pool != null) {
+            try {
+                pool.execute(command);
+            } catch (RejectedExecutionException e) {
+                rejected.incrementAndGet();
+                throw e;
+            }
+            return;
+        }
+
+        // virtual 模式: 已提交的任务数超过 "并发数 + 队列容量" 时拒绝
+        if (submitted.incrementAndGet() > concurrency + queueCapacity) {
+            submitted.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new RejectedExecutionException("数据库任务队列已满");
+        }
+        try {
+            delegate.execute(() -> {
+                try {
+                    permits.acquireUninterruptibly();
+                    try {
+                        command.run();
+                    } finally {
+                        permits.release();
+                    }
+                } finally {
+                    submitted.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            submitted.decrementAndGet();
+            rejected.incrementAndGet();
+            throw e;
+        }
+    }
+
+    /**
+     * 在执行器中运行一个有返回值的任务, 队列已满时返回一个异常完成的 CompletableFuture
+     */
+    public <T> CompletableFuture<T> supply(Supplier<T> supplier) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, this);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * 在执行器中运行一个无返回值的任务, 队列已满时返回一个异常完成的 CompletableFuture
+     */
+    public CompletableFuture<Void> run(Runnable runnable) {
+        try {
+            return CompletableFuture.runAsync(runnable, this);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * @return 正在排队等待执行的任务数量
+     */
+    public int getQueueDepth() {
+        if (pool != null) {
+            return pool.getQueue().size();
+        }
+        return Math.max(0, submitted.get() - (concurrency - permits.availablePermits()));
+    }
+
+    /**
+     * @return 因队列已满而被拒绝的任务总数
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * 停止接收新任务, 并等待已提交的任务执行完毕
+     */
+    public void shutdown() {
+        delegate.shutdown();
+        try {
+            if (!delegate.awaitTermination(10, TimeUnit.SECONDS)) {
+                plugin.getLogger().warning("数据库执行器未能在 10 秒内执行完剩余任务。");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,719 @@
+package org.diao.diaoNameCard.storage;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+import org.diao.diaoNameCard.Main;
+import org.diao.diaoNameCard.model.CardIndex;
+import org.diao.diaoNameCard.model.PlayerProfile;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * 内存 + 追加日志的文件存储实现 (storage.type: file)
+ * 适合单服使用: 全部数据常驻内存, 读操作直接返回内存中的不可变对象, 不经过 JDBC。
+ * 每次写入先以定长记录追加到内存映射的日志文件 (player_data.<代>.log), 再修改内存。
+ * 日志超过 storage.file.compact-threshold-mb 时切换到新一代日志, 并在后台把当前数据写成快照 (player_data.snapshot),
+ * 之后删除旧日志。启动时先读取快照, 再按顺序重放快照之后的日志。
+ *
+ * 日志记录都是 "设置某个键的值" 形式 (添加/移除某张名片, 设置佩戴名片), 重复重放结果不变,
+ * 因此快照可以在不加锁的情况下生成, 与新日志中的记录重叠也没有关系。
+ */
+public class FlatFile implements Database {
+
+    private static final int LOG_MAGIC = 0x444E434C; // "DNCL"
+    private static final int SNAPSHOT_MAGIC = 0x444E4353; // "DNCS"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    // 日志记录类型; 0 表示日志结束 (映射区域中未写入的部分都是 0)
+    private static final byte OP_END = 0;
+    private static final byte OP_DEFINE = 1; // 名片字典: [int 编号][short 长度][UTF-8 名片ID]
+    private static final byte OP_ADD = 2; // 添加名片: [long][long UUID][int 编号]
+    private static final byte OP_REMOVE = 3; // 移除名片: 同上
+    private static final byte OP_EQUIP = 4; // 佩戴名片: 同上, 编号为 NO_CARD 表示清除
+    private static final int RECORD_SIZE = 1 + 16 + 4;
+    private static final int NO_CARD = -1;
+
+    private static final String SNAPSHOT_NAME = "player_data.snapshot";
+    private static final String LOG_PREFIX = "player_data.";
+    private static final String LOG_SUFFIX = ".log";
+    private static final PlayerProfile EMPTY = new PlayerProfile(Collections.emptyList(), null);
+
+    private final Main plugin;
+    private final File folder;
+    private final int initialLogSize;
+    private final int compactThreshold;
+    private final long syncIntervalTicks;
+
+    private final Map<UUID, PlayerProfile> players = new ConcurrentHashMap<>();
+    // 在 player_meta 中有记录的玩家 (佩戴记录可能为 null)
+    private final Set<UUID> metaRows = ConcurrentHashMap.newKeySet();
+    private final CardDictionary dictionary = new CardDictionary();
+
+    // 以下字段只在持有 writeLock 时访问
+    private final Object writeLock = new Object();
+    private int nextCardInt = 1;
+    private long generation;
+    private FileChannel logChannel;
+    private MappedByteBuffer log;
+    private int logPosition;
+    private boolean dirty;
+
+    private final AtomicBoolean compacting = new AtomicBoolean();
+    // 加载失败的原因; 此时内存中的数据不完整, 所有读写都直接失败, 不能把它当成全部数据
+    private volatile IOException loadFailure;
+    private DatabaseExecutor executor;
+    private BukkitTask syncTask;
+
+    public FlatFile(Main plugin) {
+        this.plugin = plugin;
+        this.folder = plugin.getDataFolder();
+        this.initialLogSize = Math.max(1, plugin.getConfig().getInt("storage.file.initial-log-mb", 4)) << 20;
+        this.compactThreshold = Math.min(1024, Math.max(1, plugin.getConfig().getInt("storage.file.compact-threshold-mb", 64))) << 20;
+        this.syncIntervalTicks = Math.max(1L, plugin.getConfig().getLong("storage.file.sync-interval-ticks", 20L));
+    }
+
+    @Override
+    public void connect() {
+        try {
+            folder.mkdirs();
+            long snapshotGeneration = loadSnapshot();
+
+            // 重放快照之后的所有日志, 快照之前的日志已经包含在快照中
+            Map<Long, Path> logs = listLogs();
+            long lastGeneration = snapshotGeneration;
+            int lastPosition = 0;
+            int replayed = 0;
+            for (Map.Entry<Long, Path> entry : logs.entrySet()) {
+                if (entry.getKey() < snapshotGeneration) {
+                    deleteLog(entry.getValue());
+                    continue;
+                }
+                lastGeneration = entry.getKey();
+                lastPosition = replay(entry.getValue());
+                replayed++;
+            }
+            // 继续追加到最后一代日志的末尾
+            synchronized (writeLock) {
+                openLog(lastGeneration, lastPosition);
+            }
+
+            executor = new DatabaseExecutor(plugin, "File", 1);
+            syncTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::sync, syncIntervalTicks, syncIntervalTicks);
+            plugin.getLogger().info("文件存储已加载: " + players.size() + " 名玩家, " + dictionary.size() + " 种名片。");
+
+            // 启动时存在多代日志或日志已经很大, 立即整理一次
+            if (replayed > 1 || lastPosition > compactThreshold) {
+                compactAsync();
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("无法加载文件存储, 所有读写都将失败: " + e.getMessage());
+            loadFailure = e;
+            players.clear();
+            metaRows.clear();
+            synchronized (writeLock) {
+                closeLog();
+                log = null;
+            }
+        }
+    }
+
+    private <T> CompletableFuture<T> notLoaded() {
+        return CompletableFuture.failedFuture(new IOException("文件存储未能加载", loadFailure));
+    }
+
+    @Override
+    public void disconnect() {
+        if (syncTask != null) {
+            syncTask.cancel();
+            syncTask = null;
+        }
+        if (executor != null) {
+            // 等待正在进行的快照写完
+            executor.shutdown();
+        }
+        synchronized (writeLock) {
+            if (log != null) {
+                log.force();
+            }
+            closeLog();
+        }
+        plugin.getLogger().info("文件存储已关闭。");
+    }
+
+    // --- 快照与日志文件 ---
+
+    private Path logPath(long generation) {
+        return new File(folder, LOG_PREFIX + generation + LOG_SUFFIX).toPath();
+    }
+
+    /**
+     * @return 数据目录中的所有日志, 按代号升序
+     */
+    private Map<Long, Path> listLogs() {
+        Map<Long, Path> logs = new TreeMap<>();
+        File[] files = folder.listFiles((dir, name) -> name.startsWith(LOG_PREFIX) && name.endsWith(LOG_SUFFIX));
+        if (files == null) return logs;
+        for (File file : files) {
+            String name = file.getName();
+            try {
+                logs.put(Long.parseLong(name.substring(LOG_PREFIX.length(), name.length() - LOG_SUFFIX.length())), file.toPath());
+            } catch (NumberFormatException ignored) {
+                // 不是本插件的日志文件
+            }
+        }
+        return logs;
+    }
+
+    /**
+     * 读取快照
+     * @return 快照之后的第一代日志的代号, 没有快照时为 0
+     */
+    private long loadSnapshot() throws IOException {
+        File file = new File(folder, SNAPSHOT_NAME);
+        if (!file.isFile()) return 0;
+        try (InputStream stream = Files.newInputStream(file.toPath());
+             DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 1 << 16))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("无法识别的快照文件: " + file.getName());
+            }
+            long snapshotGeneration = in.readLong();
+            int dictionarySize = in.readInt();
+            for (int i = 0; i < dictionarySize; i++) {
+                defineLoaded(in.readInt(), in.readUTF());
+            }
+            while (in.readByte() != 0) {
+                UUID uuid = new UUID(in.readLong(), in.readLong());
+                boolean hasMeta = in.readBoolean();
+                String equipped = dictionary.getCardId(in.readInt());
+                int cardCount = in.readInt();
+                List<String> cards = new ArrayList<>(cardCount);
+                for (int i = 0; i < cardCount; i++) {
+                    String cardId = dictionary.getCardId(in.readInt());
+                    if (cardId != null) cards.add(cardId);
+                }
+                players.put(uuid, new PlayerProfile(cards, equipped));
+                if (hasMeta) metaRows.add(uuid);
+            }
+            return snapshotGeneration;
+        }
+    }
+
+    /**
+     * 重放一个日志文件
+     * @return 日志末尾 (下一条记录) 的位置
+     */
+    private int replay(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE) return 0;
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt() != LOG_MAGIC || buffer.getInt() != FORMAT_VERSION) {
+                throw new IOException("无法识别的日志文件: " + path.getFileName());
+            }
+            while (buffer.hasRemaining()) {
+                int start = buffer.position();
+                byte op = buffer.get();
+                if (op == OP_END) return start;
+                if (!replayRecord(op, buffer)) {
+                    plugin.getLogger().warning("日志文件 " + path.getFileName() + " 在位置 " + start + " 处不完整, 之后的内容已忽略。");
+                    return start;
+                }
+            }
+            return buffer.position();
+        }
+    }
+
+    private boolean replayRecord(byte op, MappedByteBuffer buffer) {
+        if (op == OP_DEFINE) {
+            if (buffer.remaining() < 6) return false;
+            int cardInt = buffer.getInt();
+            int length = buffer.getShort() & 0xFFFF;
+            if (buffer.remaining() < length) return false;
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            defineLoaded(cardInt, new String(bytes, StandardCharsets.UTF_8));
+            return true;
+        }
+        if (op != OP_ADD && op != OP_REMOVE && op != OP_EQUIP) return false;
+        if (buffer.remaining() < RECORD_SIZE - 1) return false;
+        UUID uuid = new UUID(buffer.getLong(), buffer.getLong());
+        int cardInt = buffer.getInt();
+        String cardId = cardInt == NO_CARD ? null : dictionary.getCardId(cardInt);
+        if (op == OP_EQUIP) {
+            applyEquip(uuid, cardId);
+        } else if (cardId != null) {
+            if (op == OP_ADD) applyAdd(uuid, cardId);
+            else applyRemove(uuid, cardId);
+        }
+        return true;
+    }
+
+    private void defineLoaded(int cardInt, String cardId) {
+        dictionary.put(cardInt, cardId);
+        nextCardInt = Math.max(nextCardInt, cardInt + 1);
+    }
+
+    /**
+     * 打开 (或创建) 一代日志并映射到内存 (需持有 writeLock)
+     * @param position 下一条记录的写入位置, 0 表示新文件
+     */
+    private void openLog(long generation, int position) throws IOException {
+        FileChannel channel = FileChannel.open(logPath(generation),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = Math.max(channel.size(), initialLogSize);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (position < HEADER_SIZE) {
+            buffer.putInt(0, LOG_MAGIC);
+            buffer.putInt(4, FORMAT_VERSION);
+            position = HEADER_SIZE;
+        }
+        // 覆盖可能残留的不完整记录
+        buffer.put(position, OP_END);
+        closeLog();
+        this.logChannel = channel;
+        this.log = buffer;
+        this.logPosition = position;
+        this.generation = generation;
+    }
+
+    private void closeLog() {
+        if (logChannel == null) return;
+        try {
+            logChannel.close();
+        } catch (IOException e) {
+            plugin.getLogger().warning("关闭日志文件时出错: " + e.getMessage());
+        }
+        logChannel = null;
+    }
+
+    /**
+     * 保证日志中还有 bytes 字节 (外加一个结束标记) 的空间, 不够时扩大映射区域 (需持有 writeLock)
+     */
+    private void ensureCapacity(int bytes) throws IOException {
+        long required = (long) logPosition + bytes + 1;
+        if (required <= log.capacity()) return;
+        long size = Math.min(Integer.MAX_VALUE, Math.max(required, log.capacity() * 2L));
+        if (size < required) {
+            throw new IOException("日志文件已达到 2GB 上限");
+        }
+        log = logChannel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    /**
+     * 追加一条定长记录 (需持有 writeLock)
+     * 先写数据和其后的结束标记, 最后写记录类型, 写到一半时重放会把它当作日志结尾。
+     */
+    private void append(byte op, UUID uuid, int cardInt) throws IOException {
+        ensureCapacity(RECORD_SIZE);
+        int position = logPosition;
+        log.putLong(position + 1, uuid.getMostSignificantBits());
+        log.putLong(position + 9, uuid.getLeastSignificantBits());
+        log.putInt(position + 17, cardInt);
+        log.put(position + RECORD_SIZE, OP_END);
+        log.put(position, op);
+        logPosition += RECORD_SIZE;
+        dirty = true;
+    }
+
+    /**
+     * 获取名片的字典编号, 新名片会先在日志中登记 (需持有 writeLock)
+     */
+    private int defineCard(String cardId) throws IOException {
+        Integer existing = dictionary.getInt(cardId);
+        if (existing != null) return existing;
+        byte[] bytes = cardId.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) {
+            throw new IOException("名片ID过长: " + cardId);
+        }
+        int cardInt = nextCardInt++;
+        ensureCapacity(1 + 4 + 2 + bytes.length);
+        int position = logPosition;
+        log.putInt(position + 1, cardInt);
+        log.putShort(position + 5, (short) bytes.length);
+        log.put(position + 7, bytes);
+        log.put(position + 7 + bytes.length, OP_END);
+        log.put(position, OP_DEFINE);
+        logPosition += 7 + bytes.length;
+        dirty = true;
+        dictionary.put(cardInt, cardId);
+        return cardInt;
+    }
+
+    /**
+     * 定时把映射区域中的修改同步到磁盘, 并在日志过大时触发整理
+     */
+    private void sync() {
+        MappedByteBuffer toForce;
+        boolean compact;
+        synchronized (writeLock) {
+            if (!dirty || log == null) return;
+            dirty = false;
+            toForce = log;
+            compact = logPosition > compactThreshold;
+        }
+        toForce.force();
+        if (compact) {
+            compactAsync();
+        }
+    }
+
+    private void compactAsync() {
+        if (!compacting.compareAndSet(false, true)) return;
+        executor.run(this::compact).whenComplete((v, ex) -> {
+            compacting.set(false);
+            if (ex != null) {
+                plugin.getLogger().severe("整理存储文件时出错: " + ex.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 切换到新一代日志, 把当前数据写成快照, 成功后删除旧日志
+     */
+    private void compact() {
+        long snapshotGeneration;
+        try {
+            synchronized (writeLock) {
+                log.force();
+                snapshotGeneration = generation + 1;
+                openLog(snapshotGeneration, 0);
+            }
+            writeSnapshot(snapshotGeneration);
+            for (Map.Entry<Long, Path> entry : listLogs().entrySet()) {
+                if (entry.getKey() < snapshotGeneration) {
+                    deleteLog(entry.getValue());
+                }
+            }
+        } catch (IOException e) {
+            // 旧日志仍然保留, 下次启动时照常重放
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 删除已经包含在快照中的旧日志
+     * 删除失败不影响整理结果 (例如 Windows 上旧日志的映射区域在被回收前无法删除), 下次整理或启动时会重试。
+     */
+    private void deleteLog(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            plugin.getLogger().warning("暂时无法删除旧日志 " + path.getFileName() + ", 将在下次整理或启动时重试: " + e.getMessage());
+        }
+    }
+
+    private void writeSnapshot(long snapshotGeneration) throws IOException {
+        File temp = new File(folder, SNAPSHOT_NAME + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(snapshotGeneration);
+            Map<Integer, String> cards = new TreeMap<>();
+            dictionary.forEach(cards::put);
+            out.writeInt(cards.size());
+            for (Map.Entry<Integer, String> entry : cards.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeUTF(entry.getValue());
+            }
+            for (Map.Entry<UUID, PlayerProfile> entry : players.entrySet()) {
+                PlayerProfile profile = entry.getValue();
+                out.writeByte(1);
+                out.writeLong(entry.getKey().getMostSignificantBits());
+                out.writeLong(entry.getKey().getLeastSignificantBits());
+                out.writeBoolean(metaRows.contains(entry.getKey()));
+                Integer equipped = profile.getEquippedCardId() == null ? null : dictionary.getInt(profile.getEquippedCardId());
+                out.writeInt(equipped == null ? NO_CARD : equipped);
+                int[] owned = profile.getOwnedCards().toArray();
+                out.writeInt(owned.length);
+                for (int index : owned) {
+                    Integer cardInt = dictionary.getInt(CardIndex.idOf(index));
+                    out.writeInt(cardInt == null ? NO_CARD : cardInt);
+                }
+            }
+            out.writeByte(0);
+            out.flush();
+            file.getFD().sync();
+        }
+        Files.move(temp.toPath(), new File(folder, SNAPSHOT_NAME).toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // --- 内存数据 ---
+
+    private boolean applyAdd(UUID uuid, String cardId) {
+        boolean[] added = new boolean[1];
+        players.compute(uuid, (key, profile) -> {
+            PlayerProfile current = profile == null ? EMPTY : profile;
+            added[0] = !current.hasCard(cardId);
+            return current.withCard(cardId);
+        });
+        return added[0];
+    }
+
+    private void applyRemove(UUID uuid, String cardId) {
+        players.computeIfPresent(uuid, (key, profile) -> prune(key, profile.withoutCard(cardId)));
+    }
+
+    private void applyEquip(UUID uuid, String cardId) {
+        metaRows.add(uuid);
+        players.compute(uuid, (key, profile) -> (profile == null ? EMPTY : profile).withEquipped(cardId));
+    }
+
+    /**
+     * 没有任何名片也没有佩戴记录的玩家不再占用内存
+     */
+    private PlayerProfile prune(UUID uuid, PlayerProfile profile) {
+        return profile.getOwnedCount() == 0 && !metaRows.contains(uuid) ? null : profile;
+    }
+
+    // --- Database 接口 ---
+
+    @Override
+    public CompletableFuture<List<String>> getPlayerCards(UUID uuid) {
+        if (loadFailure != null) return notLoaded();
+        PlayerProfile profile = players.get(uuid);
+        return CompletableFuture.completedFuture(profile == null ? new ArrayList<>() : new ArrayList<>(profile.getOwnedCardIds()));
+    }
+
+    @Override
+    public CompletableFuture<PlayerProfile> loadProfile(UUID uuid) {
+        if (loadFailure != null) return notLoaded();
+        return CompletableFuture.completedFuture(players.getOrDefault(uuid, EMPTY));
+    }
+
+    @Override
+    public CompletableFuture<Void> addPlayerCard(UUID uuid, String cardId) {
+        WriteBatch batch = new WriteBatch();
+        batch.addCard(uuid, cardId);
+        return writeBatch(batch);
+    }
+
+    @Override
+    public CompletableFuture<Void> removePlayerCard(UUID uuid, String cardId) {
+        WriteBatch batch = new WriteBatch();
+        batch.removeCard(uuid, cardId);
+        return writeBatch(batch);
+    }
+
+    @Override
+    public CompletableFuture<String> getEquippedCard(UUID uuid) {
+        if (loadFailure != null) return notLoaded();
+        PlayerProfile profile = players.get(uuid);
+        return CompletableFuture.completedFuture(profile == null ? null : profile.getEquippedCardId());
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, String>> getEquippedCards(Collection<UUID> uuids) {
+        if (loadFailure != null) return notLoaded();
+        Map<UUID, String> result = new HashMap<>();
+        for (UUID uuid : uuids) {
+            PlayerProfile profile = players.get(uuid);
+            if (profile != null && profile.getEquippedCardId() != null) {
+                result.put(uuid, profile.getEquippedCardId());
+            }
+        }
+        return CompletableFuture.completedFuture(result);
+    }
+
+    @Override
+    public CompletableFuture<Void> setEquippedCard(UUID uuid, String cardId) {
+        WriteBatch batch = new WriteBatch();
+        batch.setEquipped(uuid, cardId);
+        return writeBatch(batch);
+    }
+
+    @Override
+    public CompletableFuture<Void> writeBatch(WriteBatch batch) {
+        if (loadFailure != null) return notLoaded();
+        if (batch.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        try {
+            synchronized (writeLock) {
+                for (WriteBatch.CardChange change : batch.getAddedCards()) {
+                    append(OP_ADD, change.getUuid(), defineCard(change.getCardId()));
+                    applyAdd(change.getUuid(), change.getCardId());
+                }
+                for (WriteBatch.CardChange change : batch.getRemovedCards()) {
+                    Integer cardInt = dictionary.getInt(change.getCardId());
+                    if (cardInt == null) continue; // 从未出现过的名片, 不可能被拥有
+                    append(OP_REMOVE, change.getUuid(), cardInt);
+                    applyRemove(change.getUuid(), change.getCardId());
+                }
+                for (Map.Entry<UUID, String> entry : batch.getEquippedChanges().entrySet()) {
+                    append(OP_EQUIP, entry.getKey(), entry.getValue() == null ? NO_CARD : defineCard(entry.getValue()));
+                    applyEquip(entry.getKey(), entry.getValue());
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("写入存储日志时出错: " + e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public CompletableFuture<Integer> addCardToPlayers(Collection<UUID> uuids, String cardId) {
+        if (loadFailure != null) return notLoaded();
+        int inserted = 0;
+        try {
+            synchronized (writeLock) {
+                int cardInt = defineCard(cardId);
+                for (UUID uuid : uuids) {
+                    PlayerProfile profile = players.get(uuid);
+                    if (profile != null && profile.hasCard(cardId)) continue;
+                    append(OP_ADD, uuid, cardInt);
+                    if (applyAdd(uuid, cardId)) inserted++;
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("批量添加名片时出错: " + e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        }
+        return CompletableFuture.completedFuture(inserted);
+    }
+
+    @Override
+    public CompletableFuture<Integer> removeCardFromAll(String cardId, int limit) {
+        if (loadFailure != null) return notLoaded();
+        int deleted = 0;
+        try {
+            synchronized (writeLock) {
+                Integer cardInt = dictionary.getInt(cardId);
+                if (cardInt == null) return CompletableFuture.completedFuture(0);
+                for (Map.Entry<UUID, PlayerProfile> entry : players.entrySet()) {
+                    if (deleted >= limit) break;
+                    if (!entry.getValue().hasCard(cardId)) continue;
+                    append(OP_REMOVE, entry.getKey(), cardInt);
+                    applyRemove(entry.getKey(), cardId);
+                    deleted++;
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("批量移除名片时出错: " + e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        }
+        return CompletableFuture.completedFuture(deleted);
+    }
+
+    @Override
+    public CompletableFuture<Integer> clearEquippedCard(String cardId) {
+        if (loadFailure != null) return notLoaded();
+        int updated = 0;
+        try {
+            synchronized (writeLock) {
+                for (Map.Entry<UUID, PlayerProfile> entry : players.entrySet()) {
+                    if (!cardId.equals(entry.getValue().getEquippedCardId())) continue;
+                    append(OP_EQUIP, entry.getKey(), NO_CARD);
+                    applyEquip(entry.getKey(), null);
+                    updated++;
+                }
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("重置玩家佩戴名片时出错: " + e.getMessage());
+            return CompletableFuture.failedFuture(e);
+        }
+        return CompletableFuture.completedFuture(updated);
+    }
+
+    @Override
+    public CompletableFuture<Long> countCardOwners(String cardId) {
+        if (loadFailure != null) return notLoaded();
+        return CompletableFuture.completedFuture(players.values().stream().filter(profile -> profile.hasCard(cardId)).count());
+    }
+
+    @Override
+    public CompletableFuture<Void> streamPlayerCards(int batchSize, Consumer<List<PlayerCardRow>> sink) {
+        if (loadFailure != null) return notLoaded();
+        // sink 可能阻塞 (背压), 放到执行器中运行
+        return executor.run(() -> {
+            List<PlayerCardRow> batch = new ArrayList<>(batchSize);
+            for (Map.Entry<UUID, PlayerProfile> entry : players.entrySet()) {
+                for (int index : entry.getValue().getOwnedCards().toArray()) {
+                    batch.add(new PlayerCardRow(entry.getKey(), CardIndex.idOf(index)));
+                    if (batch.size() >= batchSize) {
+                        sink.accept(batch);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+            }
+            if (!batch.isEmpty()) sink.accept(batch);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> streamPlayerMeta(int batchSize, Consumer<List<PlayerCardRow>> sink) {
+        if (loadFailure != null) return notLoaded();
+        return executor.run(() -> {
+            List<PlayerCardRow> batch = new ArrayList<>(batchSize);
+            for (UUID uuid : metaRows) {
+                PlayerProfile profile = players.get(uuid);
+                batch.add(new PlayerCardRow(uuid, profile == null ? null : profile.getEquippedCardId()));
+                if (batch.size() >= batchSize) {
+                    sink.accept(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) sink.accept(batch);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> importPlayerCards(List<PlayerCardRow> rows) {
+        WriteBatch batch = new WriteBatch();
+        rows.forEach(row -> batch.addCard(row.getUuid(), row.getCardId()));
+        return writeBatch(batch);
+    }
+
+    @Override
+    public CompletableFuture<Void> importPlayerMeta(List<PlayerCardRow> rows) {
+        WriteBatch batch = new WriteBatch();
+        rows.forEach(row -> batch.setEquipped(row.getUuid(), row.getCardId()));
+        return writeBatch(batch);
+    }
+
+    @Override
+    public CompletableFuture<Long> countPlayerCards() {
+        if (loadFailure != null) return notLoaded();
+        return CompletableFuture.completedFuture(players.values().stream().mapToLong(PlayerProfile::getOwnedCount).sum());
+    }
+
+    @Override
+    public CompletableFuture<Long> countPlayerMeta() {
+        if (loadFailure != null) return notLoaded();
+        return CompletableFuture.completedFuture((long) metaRows.size());
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return executor == null ? 0 : executor.getQueueDepth();
+    }
+}
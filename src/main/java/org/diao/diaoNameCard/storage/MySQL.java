@@ -3,29 +3,60 @@ package org.diao.diaoNameCard.storage;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import org.diao.diaoNameCard.Main;
+import org.diao.diaoNameCard.model.PlayerProfile;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.sql.Types;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 /**
  * MySQL 数据库操作实现类
  * 实现了 Database 接口，负责所有与 MySQL 数据库的交互。
  * 使用 HikariCP 连接池以提高性能和稳定性。
+ * 表结构 (v2): UUID 存为 BINARY(16)，名片ID通过 card_dictionary 映射为整数。
+ * 开启 sync.enabled 时, 每次写入都会在同一事务中记录变更日志 (player_changes), 供群组中的其他服务器刷新缓存。
  */
 public class MySQL implements Database {
 
+    // 旧版数据迁移时每段复制的行数
+    private static final int MIGRATION_CHUNK_SIZE = 10000;
+    // 批量查询佩戴名片时每条 IN 语句的最大参数数量
+    private static final int LOOKUP_CHUNK_SIZE = 500;
+    // 多行 INSERT 每条语句最多包含的行数
+    private static final int MULTI_ROW_LIMIT = 1000;
+
     private final Main plugin;
     private HikariDataSource dataSource;
+    private DatabaseExecutor executor;
+    // 建表在执行器中进行, 完成之前对变更日志表的操作都排在它之后
+    private CompletableFuture<Void> schema = CompletableFuture.completedFuture(null);
+    // 旧版数据迁移在建表之后于执行器中后台进行, 完成之前对 v2 表的操作都排在它之后
+    private CompletableFuture<Void> migration = CompletableFuture.completedFuture(null);
+    private final CardDictionary dictionary = new CardDictionary();
+    private final boolean changeLogEnabled;
+    // 本服务器本次运行的标识, 用于在变更日志中区分自己写入的记录
+    private final byte[] serverId = UuidCodec.toBytes(UUID.randomUUID());
 
     public MySQL(Main plugin) {
         this.plugin = plugin;
+        this.changeLogEnabled = plugin.getConfig().getBoolean("sync.enabled", true);
     }
 
     @Override
@@ -60,13 +91,19 @@ public class MySQL implements Database {
             config.addDataSourceProperty("maintainTimeStats", "false");
             config.addDataSourceProperty("autoReconnect", "true"); // 自动重连
             config.setConnectionTimeout(5000); // 5秒连接超时
+            int poolSize = Math.max(1, plugin.getConfig().getInt("storage.mysql.pool-size", 10));
+            config.setMaximumPoolSize(poolSize);
 
             // 创建数据源
             dataSource = new HikariDataSource(config);
             plugin.getLogger().info("MySQL 数据库连接池已成功初始化。");
 
-            // 异步初始化数据库表
-            CompletableFuture.runAsync(this::initializeTables);
+            // 数据库任务使用独立的执行器, 线程数默认与连接池大小一致
+            executor = new DatabaseExecutor(plugin, "MySQL", poolSize);
+
+            // 建表、旧版数据的迁移和字典加载都放到执行器中依次进行, 不阻塞主线程
+            schema = executor.run(this::initializeTables);
+            migration = schema.thenCompose(ignored -> executor.run(this::migrateInBackground));
 
         } catch (Exception e) {
             plugin.getLogger().severe("无法初始化 MySQL 数据库连接池: " + e.getMessage());
@@ -74,40 +111,229 @@ public class MySQL implements Database {
     }
 
     /**
-     * 初始化数据库表结构
-     * 如果表不存在，则创建它们。
+     * 在执行器线程中初始化数据库表结构
+     * 如果表不存在，则创建它们。旧版表的迁移由 migrateInBackground 在后台完成。
      */
     private void initializeTables() {
-        // 创建玩家元数据表，存储装备的名片ID
+        // 名片ID字典表, 把名片ID字符串映射为小整数
+        String dictionaryTable = "CREATE TABLE IF NOT EXISTS `card_dictionary` (" +
+                "`card_int` INT NOT NULL AUTO_INCREMENT," +
+                "`card_id` VARCHAR(255) NOT NULL," +
+                "PRIMARY KEY (`card_int`)," +
+                "UNIQUE INDEX `card_id_unique` (`card_id`)" +
+                ");";
+
+        // 创建玩家元数据表，存储装备的名片编号
         // `uuid` 是主键，确保每个玩家只有一条记录。
-        String playerMetaTable = "CREATE TABLE IF NOT EXISTS `player_meta` (" +
-                "`uuid` VARCHAR(36) NOT NULL," +
-                "`equipped_card_id` VARCHAR(255) NULL," +
+        String playerMetaTable = "CREATE TABLE IF NOT EXISTS `player_meta_v2` (" +
+                "`uuid` BINARY(16) NOT NULL," +
+                "`equipped_card_int` INT NULL," +
                 "PRIMARY KEY (`uuid`)" +
                 ");";
 
         // 创建玩家拥有的名片列表
-        // `uuid` 和 `card_id` 联合唯一索引，确保玩家不会重复拥有同一个名片。
-        String playerCardsTable = "CREATE TABLE IF NOT EXISTS `player_cards` (" +
-                "`id` INT NOT NULL AUTO_INCREMENT," +
-                "`uuid` VARCHAR(36) NOT NULL," +
-                "`card_id` VARCHAR(255) NOT NULL," +
-                "PRIMARY KEY (`id`)," +
-                "UNIQUE INDEX `uuid_card_id_unique` (`uuid`, `card_id`)" +
+        // 以 (`uuid`, `card_int`) 为聚簇主键，同一玩家的所有名片在物理上相邻存储。
+        String playerCardsTable = "CREATE TABLE IF NOT EXISTS `player_cards_v2` (" +
+                "`uuid` BINARY(16) NOT NULL," +
+                "`card_int` INT NOT NULL," +
+                "PRIMARY KEY (`uuid`, `card_int`)," +
+                "INDEX `card_int_index` (`card_int`)" +
+                ");";
+
+        // 变更日志: 只记录 "哪个玩家在什么时候被哪台服务器修改过", 不记录具体内容
+        String playerChangesTable = "CREATE TABLE IF NOT EXISTS `player_changes` (" +
+                "`seq` BIGINT NOT NULL AUTO_INCREMENT," +
+                "`uuid` BINARY(16) NOT NULL," +
+                "`server_id` BINARY(16) NOT NULL," +
+                "`created_at` BIGINT NOT NULL," +
+                "PRIMARY KEY (`seq`)," +
+                "INDEX `created_at_index` (`created_at`)" +
                 ");";
 
         // try-with-resources 语句确保连接和声明在使用后自动关闭
         try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute(dictionaryTable);
             statement.execute(playerMetaTable);
             statement.execute(playerCardsTable);
+            statement.execute(playerChangesTable);
             plugin.getLogger().info("数据库表结构检查/创建完成。");
         } catch (SQLException e) {
             plugin.getLogger().severe("创建数据库表时出错: " + e.getMessage());
         }
     }
 
+    /**
+     * 在执行器线程中迁移旧版数据并加载字典
+     * 迁移失败时只记录错误, 之后照常使用 v2 表 (与迁移前一样, 旧表保留原名, 下次启动会重试)。
+     */
+    private void migrateInBackground() {
+        try (Connection connection = dataSource.getConnection()) {
+            migrateLegacyTables(connection);
+            loadDictionary(connection);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("迁移旧版数据时出错: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 在执行器中运行一个访问 v2 表的任务, 旧版数据迁移完成之前先排在迁移之后
+     * (变更日志表不参与迁移, 相关操作使用 changeLog, 只等待建表完成)
+     */
+    private <T> CompletableFuture<T> supply(Supplier<T> task) {
+        return migration.isDone() ? executor.supply(task) : migration.thenCompose(ignored -> executor.supply(task));
+    }
+
+    private CompletableFuture<Void> run(Runnable task) {
+        return migration.isDone() ? executor.run(task) : migration.thenCompose(ignored -> executor.run(task));
+    }
+
+    /**
+     * 在执行器中运行一个访问变更日志表的任务, 建表完成之前先排在建表之后
+     */
+    private <T> CompletableFuture<T> changeLog(Supplier<T> task) {
+        return schema.isDone() ? executor.supply(task) : schema.thenCompose(ignored -> executor.supply(task));
+    }
+
+    /**
+     * 把旧版 (VARCHAR UUID + 字符串名片ID) 的数据迁移到 v2 表结构
+     * player_cards 按自增ID分段复制，每段一个独立的语句，不会长时间锁住整张表。
+     * 迁移完成后旧表被重命名为 *_legacy 作为备份。使用 INSERT IGNORE, 中途失败后可以安全重跑。
+     */
+    private void migrateLegacyTables(Connection connection) throws SQLException {
+        boolean hasCards = tableExists(connection, "player_cards");
+        boolean hasMeta = tableExists(connection, "player_meta");
+        if (!hasCards && !hasMeta) return;
+
+        plugin.getLogger().info("检测到旧版数据表, 正在迁移到新的表结构...");
+        try (Statement statement = connection.createStatement()) {
+            if (hasCards) {
+                statement.executeUpdate("INSERT IGNORE INTO `card_dictionary` (`card_id`) SELECT DISTINCT `card_id` FROM `player_cards`;");
+            }
+            if (hasMeta) {
+                statement.executeUpdate("INSERT IGNORE INTO `card_dictionary` (`card_id`) SELECT DISTINCT `equipped_card_id` FROM `player_meta` WHERE `equipped_card_id` IS NOT NULL;");
+            }
+
+            if (hasCards) {
+                long maxId = 0;
+                try (ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(`id`), 0) FROM `player_cards`;")) {
+                    if (rs.next()) maxId = rs.getLong(1);
+                }
+                String copySql = "INSERT IGNORE INTO `player_cards_v2` (`uuid`, `card_int`) " +
+                        "SELECT UNHEX(REPLACE(p.`uuid`, '-', '')), d.`card_int` FROM `player_cards` p " +
+                        "JOIN `card_dictionary` d ON d.`card_id` = p.`card_id` WHERE p.`id` > ? AND p.`id` <= ?;";
+                try (PreparedStatement ps = connection.prepareStatement(copySql)) {
+                    for (long from = 0; from < maxId; from += MIGRATION_CHUNK_SIZE) {
+                        ps.setLong(1, from);
+                        ps.setLong(2, from + MIGRATION_CHUNK_SIZE);
+                        ps.executeUpdate();
+                    }
+                }
+                plugin.getLogger().info("已迁移 player_cards (最大ID " + maxId + ")。");
+            }
+
+            if (hasMeta) {
+                statement.executeUpdate("INSERT IGNORE INTO `player_meta_v2` (`uuid`, `equipped_card_int`) " +
+                        "SELECT UNHEX(REPLACE(m.`uuid`, '-', '')), d.`card_int` FROM `player_meta` m " +
+                        "LEFT JOIN `card_dictionary` d ON d.`card_id` = m.`equipped_card_id`;");
+                plugin.getLogger().info("已迁移 player_meta。");
+            }
+
+            List<String> renames = new ArrayList<>();
+            if (hasCards) renames.add("`player_cards` TO `player_cards_legacy`");
+            if (hasMeta) renames.add("`player_meta` TO `player_meta_legacy`");
+            statement.execute("RENAME TABLE " + String.join(", ", renames) + ";");
+        }
+        plugin.getLogger().info("数据迁移完成, 旧表已重命名为 *_legacy。");
+    }
+
+    private boolean tableExists(Connection connection, String table) throws SQLException {
+        try (ResultSet rs = connection.getMetaData().getTables(connection.getCatalog(), null, table, new String[]{"TABLE"})) {
+            return rs.next();
+        }
+    }
+
+    /**
+     * 启动时把整张字典表读入内存
+     */
+    private void loadDictionary(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT `card_int`, `card_id` FROM `card_dictionary`;")) {
+            while (rs.next()) {
+                dictionary.put(rs.getInt(1), rs.getString(2));
+            }
+        }
+    }
+
+    /**
+     * 把名片ID转换为字典编号, 字典中不存在的名片会被自动插入
+     * @param connection 当前使用的连接
+     * @param cardIds 名片ID
+     * @return 名片ID -> 编号
+     */
+    private Map<String, Integer> resolveCardInts(Connection connection, Collection<String> cardIds) throws SQLException {
+        Map<String, Integer> result = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String cardId : cardIds) {
+            Integer cardInt = dictionary.getInt(cardId);
+            if (cardInt != null) {
+                result.put(cardId, cardInt);
+            } else {
+                missing.add(cardId);
+            }
+        }
+        if (missing.isEmpty()) return result;
+
+        try (PreparedStatement insert = connection.prepareStatement("INSERT IGNORE INTO `card_dictionary` (`card_id`) VALUES (?);")) {
+            for (String cardId : missing) {
+                insert.setString(1, cardId);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        String sql = "SELECT `card_int`, `card_id` FROM `card_dictionary` WHERE `card_id` IN (" + placeholders(missing.size()) + ");";
+        try (PreparedStatement select = connection.prepareStatement(sql)) {
+            for (int i = 0; i < missing.size(); i++) {
+                select.setString(i + 1, missing.get(i));
+            }
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    dictionary.put(rs.getInt(1), rs.getString(2));
+                }
+            }
+        }
+        for (String cardId : missing) {
+            Integer cardInt = dictionary.getInt(cardId);
+            if (cardInt != null) result.put(cardId, cardInt);
+        }
+        return result;
+    }
+
+    /**
+     * 在当前连接 (和事务) 中为每个玩家写入一条变更日志
+     */
+    private void logChanges(Connection connection, Collection<UUID> uuids) throws SQLException {
+        if (!changeLogEnabled || uuids.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        try (PreparedStatement ps = connection.prepareStatement("INSERT INTO `player_changes` (`uuid`, `server_id`, `created_at`) VALUES (?, ?, ?);")) {
+            for (UUID uuid : uuids) {
+                ps.setBytes(1, UuidCodec.toBytes(uuid));
+                ps.setBytes(2, serverId);
+                ps.setLong(3, now);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
     @Override
     public void disconnect() {
+        if (executor != null) {
+            executor.shutdown();
+        }
         if (dataSource != null && !dataSource.isClosed()) {
             dataSource.close();
             plugin.getLogger().info("MySQL 数据库连接池已关闭。");
@@ -116,12 +342,13 @@ public class MySQL implements Database {
 
     @Override
     public CompletableFuture<List<String>> getPlayerCards(UUID uuid) {
-        // CompletableFuture.supplyAsync 用于执行有返回值的异步任务
-        return CompletableFuture.supplyAsync(() -> {
+        // supply 用于在数据库执行器中执行有返回值的异步任务
+        return supply(() -> {
             List<String> cards = new ArrayList<>();
-            String sql = "SELECT `card_id` FROM `player_cards` WHERE `uuid` = ?;";
+            String sql = "SELECT d.`card_id` FROM `player_cards_v2` p " +
+                    "JOIN `card_dictionary` d ON d.`card_int` = p.`card_int` WHERE p.`uuid` = ?;";
             try (Connection connection = dataSource.getConnection(); PreparedStatement ps = connection.prepareStatement(sql)) {
-                ps.setString(1, uuid.toString());
+                ps.setBytes(1, UuidCodec.toBytes(uuid));
                 ResultSet rs = ps.executeQuery();
                 while (rs.next()) {
                     cards.add(rs.getString("card_id"));
@@ -135,46 +362,59 @@ public class MySQL implements Database {
     }
 
     @Override
-    public CompletableFuture<Void> addPlayerCard(UUID uuid, String cardId) {
-        // CompletableFuture.runAsync 用于执行没有返回值的异步任务
-        return CompletableFuture.runAsync(() -> {
-            // `INSERT IGNORE` 会在出现重复键（根据UNIQUE索引）时忽略插入，而不是报错
-            String sql = "INSERT IGNORE INTO `player_cards` (`uuid`, `card_id`) VALUES (?, ?);";
+    public CompletableFuture<PlayerProfile> loadProfile(UUID uuid) {
+        return supply(() -> {
+            List<String> cards = new ArrayList<>();
+            String equipped = null;
+            // 用 UNION ALL 把两张表的查询合并成一条语句, 第二列标记该行来自哪张表
+            String sql = "SELECT d.`card_id`, 0 AS `equipped` FROM `player_cards_v2` p " +
+                    "JOIN `card_dictionary` d ON d.`card_int` = p.`card_int` WHERE p.`uuid` = ? " +
+                    "UNION ALL SELECT d.`card_id`, 1 FROM `player_meta_v2` m " +
+                    "LEFT JOIN `card_dictionary` d ON d.`card_int` = m.`equipped_card_int` WHERE m.`uuid` = ?;";
             try (Connection connection = dataSource.getConnection(); PreparedStatement ps = connection.prepareStatement(sql)) {
-                ps.setString(1, uuid.toString());
-                ps.setString(2, cardId);
-                ps.executeUpdate();
+                byte[] uuidBytes = UuidCodec.toBytes(uuid);
+                ps.setBytes(1, uuidBytes);
+                ps.setBytes(2, uuidBytes);
+                ResultSet rs = ps.executeQuery();
+                while (rs.next()) {
+                    if (rs.getInt(2) == 1) {
+                        equipped = rs.getString(1);
+                    } else {
+                        cards.add(rs.getString(1));
+                    }
+                }
             } catch (SQLException e) {
-                plugin.getLogger().severe("为玩家添加名片时出错: " + e.getMessage());
-                e.printStackTrace();
+                plugin.getLogger().severe("读取玩家名片数据时出错: " + e.getMessage());
+                throw new CompletionException(e);
             }
+            return new PlayerProfile(cards, equipped);
         });
     }
 
+    @Override
+    public CompletableFuture<Void> addPlayerCard(UUID uuid, String cardId) {
+        WriteBatch batch = new WriteBatch();
+        batch.addCard(uuid, cardId);
+        return writeBatch(batch);
+    }
+
     @Override
     public CompletableFuture<Void> removePlayerCard(UUID uuid, String cardId) {
-        return CompletableFuture.runAsync(() -> {
-            String sql = "DELETE FROM `player_cards` WHERE `uuid` = ? AND `card_id` = ?;";
-            try (Connection connection = dataSource.getConnection(); PreparedStatement ps = connection.prepareStatement(sql)) {
-                ps.setString(1, uuid.toString());
-                ps.setString(2, cardId);
-                ps.executeUpdate();
-            } catch (SQLException e) {
-                plugin.getLogger().severe("移除玩家名片时出错: " + e.getMessage());
-                e.printStackTrace();
-            }
-        });
+        WriteBatch batch = new WriteBatch();
+        batch.removeCard(uuid, cardId);
+        return writeBatch(batch);
     }
 
     @Override
     public CompletableFuture<String> getEquippedCard(UUID uuid) {
-        return CompletableFuture.supplyAsync(() -> {
-            String sql = "SELECT `equipped_card_id` FROM `player_meta` WHERE `uuid` = ?;";
+        return supply(() -> {
+            String sql = "SELECT d.`card_id` FROM `player_meta_v2` m " +
+                    "LEFT JOIN `card_dictionary` d ON d.`card_int` = m.`equipped_card_int` WHERE m.`uuid` = ?;";
             try (Connection connection = dataSource.getConnection(); PreparedStatement ps = connection.prepareStatement(sql)) {
-                ps.setString(1, uuid.toString());
+                ps.setBytes(1, UuidCodec.toBytes(uuid));
                 ResultSet rs = ps.executeQuery();
                 if (rs.next()) {
-                    return rs.getString("equipped_card_id");
+                    return rs.getString("card_id");
                 }
             } catch (SQLException e) {
                 plugin.getLogger().severe("获取玩家佩戴名片时出错: " + e.getMessage());
@@ -184,20 +424,367 @@ public class MySQL implements Database {
         });
     }
 
+    @Override
+    public CompletableFuture<Map<UUID, String>> getEquippedCards(Collection<UUID> uuids) {
+        List<UUID> players = new ArrayList<>(new HashSet<>(uuids));
+        return supply(() -> {
+            Map<UUID, String> result = new HashMap<>();
+            if (players.isEmpty()) return result;
+            try (Connection connection = dataSource.getConnection()) {
+                for (int from = 0; from < players.size(); from += LOOKUP_CHUNK_SIZE) {
+                    List<UUID> chunk = players.subList(from, Math.min(players.size(), from + LOOKUP_CHUNK_SIZE));
+                    String sql = "SELECT m.`uuid`, d.`card_id` FROM `player_meta_v2` m " +
+                            "JOIN `card_dictionary` d ON d.`card_int` = m.`equipped_card_int` " +
+                            "WHERE m.`uuid` IN (" + placeholders(chunk.size()) + ");";
+                    try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                        for (int i = 0; i < chunk.size(); i++) {
+                            ps.setBytes(i + 1, UuidCodec.toBytes(chunk.get(i)));
+                        }
+                        try (ResultSet rs = ps.executeQuery()) {
+                            while (rs.next()) {
+                                result.put(UuidCodec.fromBytes(rs.getBytes(1)), rs.getString(2));
+                            }
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                plugin.getLogger().severe("批量获取玩家佩戴名片时出错: " + e.getMessage());
+                e.printStackTrace();
+            }
+            return result;
+        });
+    }
+
     @Override
     public CompletableFuture<Void> setEquippedCard(UUID uuid, String cardId) {
-        return CompletableFuture.runAsync(() -> {
+        WriteBatch batch = new WriteBatch();
+        batch.setEquipped(uuid, cardId);
+        return writeBatch(batch);
+    }
+
+    @Override
+    public CompletableFuture<Void> writeBatch(WriteBatch batch) {
+        return run(() -> {
+            if (batch.isEmpty()) return;
+            // 驱动开启了 rewriteBatchedStatements, 同一语句的 addBatch 会被改写成多行 VALUES 一次发送
+            String insertSql = "INSERT IGNORE INTO `player_cards_v2` (`uuid`, `card_int`) VALUES (?, ?);";
+            String deleteSql = "DELETE FROM `player_cards_v2` WHERE `uuid` = ? AND `card_int` = ?;";
             // 使用 MySQL 的 `ON DUPLICATE KEY UPDATE` (UPSERT) 语法
-            // 如果 `uuid` 已存在，则更新 `equipped_card_id` 字段；否则，插入新行。
-            String sql = "INSERT INTO `player_meta` (`uuid`, `equipped_card_id`) VALUES (?, ?) ON DUPLICATE KEY UPDATE `equipped_card_id` = VALUES(`equipped_card_id`);";
+            String equipSql = "INSERT INTO `player_meta_v2` (`uuid`, `equipped_card_int`) VALUES (?, ?) ON DUPLICATE KEY UPDATE `equipped_card_int` = VALUES(`equipped_card_int`);";
+            List<WriteBatch.CardChange> added = batch.getAddedCards();
+            List<WriteBatch.CardChange> removed = batch.getRemovedCards();
+            try (Connection connection = dataSource.getConnection()) {
+                Set<String> cardIds = new HashSet<>();
+                added.forEach(change -> cardIds.add(change.getCardId()));
+                removed.forEach(change -> cardIds.add(change.getCardId()));
+                batch.getEquippedChanges().values().stream().filter(Objects::nonNull).forEach(cardIds::add);
+                Map<String, Integer> cardInts = resolveCardInts(connection, cardIds);
+
+                connection.setAutoCommit(false);
+                try (PreparedStatement insert = connection.prepareStatement(insertSql);
+                     PreparedStatement delete = connection.prepareStatement(deleteSql);
+                     PreparedStatement equip = connection.prepareStatement(equipSql)) {
+                    for (WriteBatch.CardChange change : added) {
+                        insert.setBytes(1, UuidCodec.toBytes(change.getUuid()));
+                        insert.setInt(2, cardInts.get(change.getCardId()));
+                        insert.addBatch();
+                    }
+                    for (WriteBatch.CardChange change : removed) {
+                        delete.setBytes(1, UuidCodec.toBytes(change.getUuid()));
+                        delete.setInt(2, cardInts.get(change.getCardId()));
+                        delete.addBatch();
+                    }
+                    for (Map.Entry<UUID, String> entry : batch.getEquippedChanges().entrySet()) {
+                        equip.setBytes(1, UuidCodec.toBytes(entry.getKey()));
+                        if (entry.getValue() == null) {
+                            equip.setNull(2, Types.INTEGER);
+                        } else {
+                            equip.setInt(2, cardInts.get(entry.getValue()));
+                        }
+                        equip.addBatch();
+                    }
+                    insert.executeBatch();
+                    delete.executeBatch();
+                    equip.executeBatch();
+                    logChanges(connection, batch.getPlayers());
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                plugin.getLogger().severe("批量写入玩家名片数据时出错: " + e.getMessage());
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Integer> addCardToPlayers(Collection<UUID> uuids, String cardId) {
+        return supply(() -> {
+            if (uuids.isEmpty()) return 0;
+            List<UUID> players = new ArrayList<>(uuids);
+            int inserted = 0;
+            try (Connection connection = dataSource.getConnection()) {
+                int cardInt = resolveCardInts(connection, Collections.singleton(cardId)).get(cardId);
+                // 每条语句最多 MULTI_ROW_LIMIT 行: INSERT IGNORE ... VALUES (?, ?), (?, ?), ...
+                // 每段和它的变更日志在同一个事务中提交, 不会出现其他服务器收不到通知的授予
+                connection.setAutoCommit(false);
+                try {
+                    for (int from = 0; from < players.size(); from += MULTI_ROW_LIMIT) {
+                        List<UUID> rows = players.subList(from, Math.min(players.size(), from + MULTI_ROW_LIMIT));
+                        String sql = "INSERT IGNORE INTO `player_cards_v2` (`uuid`, `card_int`) VALUES " +
+                                String.join(", ", Collections.nCopies(rows.size(), "(?, ?)")) + ";";
+                        int count;
+                        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                            int index = 1;
+                            for (UUID uuid : rows) {
+                                ps.setBytes(index++, UuidCodec.toBytes(uuid));
+                                ps.setInt(index++, cardInt);
+                            }
+                            count = ps.executeUpdate();
+                        }
+                        logChanges(connection, rows);
+                        connection.commit();
+                        inserted += count;
+                    }
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                plugin.getLogger().severe("批量添加名片时出错: " + e.getMessage());
+                throw new CompletionException(e);
+            }
+            return inserted;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Integer> removeCardFromAll(String cardId, int limit) {
+        return supply(() -> {
+            // 先锁定并取出本次删除的玩家, 变更日志只记录这些玩家, 其他服务器不必重新加载全部在线玩家
+            String selectSql = "SELECT `uuid` FROM `player_cards_v2` WHERE `card_int` = " +
+                    "(SELECT `card_int` FROM `card_dictionary` WHERE `card_id` = ?) LIMIT ? FOR UPDATE;";
+            String deleteSql = "DELETE FROM `player_cards_v2` WHERE `uuid` = ? AND `card_int` = " +
+                    "(SELECT `card_int` FROM `card_dictionary` WHERE `card_id` = ?);";
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(false);
+                try (PreparedStatement select = connection.prepareStatement(selectSql);
+                     PreparedStatement delete = connection.prepareStatement(deleteSql)) {
+                    List<UUID> owners = new ArrayList<>();
+                    select.setString(1, cardId);
+                    select.setInt(2, limit);
+                    try (ResultSet rs = select.executeQuery()) {
+                        while (rs.next()) {
+                            owners.add(UuidCodec.fromBytes(rs.getBytes(1)));
+                        }
+                    }
+                    for (UUID uuid : owners) {
+                        delete.setBytes(1, UuidCodec.toBytes(uuid));
+                        delete.setString(2, cardId);
+                        delete.addBatch();
+                    }
+                    if (!owners.isEmpty()) {
+                        delete.executeBatch();
+                        logChanges(connection, owners);
+                    }
+                    connection.commit();
+                    // 选出的行已被锁定, 一定会被删除 (驱动改写批量语句后不返回逐条的行数)
+                    return owners.size();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                plugin.getLogger().severe("批量移除名片时出错: " + e.getMessage());
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Integer> clearEquippedCard(String cardId) {
+        return supply(() -> {
+            String sql = "UPDATE `player_meta_v2` SET `equipped_card_int` = NULL WHERE `equipped_card_int` = " +
+                    "(SELECT `card_int` FROM `card_dictionary` WHERE `card_id` = ?);";
             try (Connection connection = dataSource.getConnection(); PreparedStatement ps = connection.prepareStatement(sql)) {
-                ps.setString(1, uuid.toString());
-                ps.setString(2, cardId);
-                ps.executeUpdate();
+                ps.setString(1, cardId);
+                int updated = ps.executeUpdate();
+                if (updated > 0) {
+                    logChanges(connection, Collections.singleton(PlayerChange.ALL_PLAYERS));
+                }
+                return updated;
             } catch (SQLException e) {
-                plugin.getLogger().severe("设置玩家佩戴名片时出错: " + e.getMessage());
-                e.printStackTrace();
+                plugin.getLogger().severe("重置玩家佩戴名片时出错: " + e.getMessage());
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Long> countCardOwners(String cardId) {
+        return supply(() -> {
+            String sql = "SELECT COUNT(*) FROM `player_cards_v2` WHERE `card_int` = " +
+                    "(SELECT `card_int` FROM `card_dictionary` WHERE `card_id` = ?);";
+            try (Connection connection = dataSource.getConnection(); PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setString(1, cardId);
+                ResultSet rs = ps.executeQuery();
+                return rs.next() ? rs.getLong(1) : 0L;
+            } catch (SQLException e) {
+                plugin.getLogger().severe("统计名片拥有者时出错: " + e.getMessage());
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> streamPlayerCards(int batchSize, Consumer<List<PlayerCardRow>> sink) {
+        return streamQuery("SELECT p.`uuid`, d.`card_id` FROM `player_cards_v2` p " +
+                "JOIN `card_dictionary` d ON d.`card_int` = p.`card_int`;", batchSize, sink);
+    }
+
+    @Override
+    public CompletableFuture<Void> streamPlayerMeta(int batchSize, Consumer<List<PlayerCardRow>> sink) {
+        return streamQuery("SELECT m.`uuid`, d.`card_id` FROM `player_meta_v2` m " +
+                "LEFT JOIN `card_dictionary` d ON d.`card_int` = m.`equipped_card_int`;", batchSize, sink);
+    }
+
+    private CompletableFuture<Void> streamQuery(String sql, int batchSize, Consumer<List<PlayerCardRow>> sink) {
+        return run(() -> {
+            try (Connection connection = dataSource.getConnection();
+                 Statement statement = connection.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                // fetchSize = Integer.MIN_VALUE 让驱动逐行流式返回结果, 而不是把整张表读进内存
+                statement.setFetchSize(Integer.MIN_VALUE);
+                try (ResultSet rs = statement.executeQuery(sql)) {
+                    PlayerCardRow.readBatches(rs, batchSize, sink);
+                }
+            } catch (SQLException e) {
+                plugin.getLogger().severe("流式读取数据时出错: " + e.getMessage());
+                throw new CompletionException(e);
             }
         });
     }
+
+    @Override
+    public CompletableFuture<Void> importPlayerCards(List<PlayerCardRow> rows) {
+        return importRows(rows, "INSERT IGNORE INTO `player_cards_v2` (`uuid`, `card_int`) VALUES (?, ?);");
+    }
+
+    @Override
+    public CompletableFuture<Void> importPlayerMeta(List<PlayerCardRow> rows) {
+        return importRows(rows, "INSERT INTO `player_meta_v2` (`uuid`, `equipped_card_int`) VALUES (?, ?) " +
+                "ON DUPLICATE KEY UPDATE `equipped_card_int` = VALUES(`equipped_card_int`);");
+    }
+
+    private CompletableFuture<Void> importRows(List<PlayerCardRow> rows, String sql) {
+        return run(() -> {
+            if (rows.isEmpty()) return;
+            try (Connection connection = dataSource.getConnection()) {
+                Set<String> cardIds = new HashSet<>();
+                rows.stream().map(PlayerCardRow::getCardId).filter(Objects::nonNull).forEach(cardIds::add);
+                Map<String, Integer> cardInts = resolveCardInts(connection, cardIds);
+
+                connection.setAutoCommit(false);
+                try (PreparedStatement ps = connection.prepareStatement(sql)) {
+                    for (PlayerCardRow row : rows) {
+                        ps.setBytes(1, UuidCodec.toBytes(row.getUuid()));
+                        if (row.getCardId() == null) {
+                            ps.setNull(2, Types.INTEGER);
+                        } else {
+                            ps.setInt(2, cardInts.get(row.getCardId()));
+                        }
+                        ps.addBatch();
+                    }
+                    ps.executeBatch();
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                plugin.getLogger().severe("批量导入数据时出错: " + e.getMessage());
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Long> countPlayerCards() {
+        return countRows("player_cards_v2");
+    }
+
+    @Override
+    public CompletableFuture<Long> countPlayerMeta() {
+        return countRows("player_meta_v2");
+    }
+
+    private CompletableFuture<Long> countRows(String table) {
+        return supply(() -> {
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT COUNT(*) FROM `" + table + "`;")) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            } catch (SQLException e) {
+                plugin.getLogger().severe("统计数据行数时出错: " + e.getMessage());
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<PlayerChange>> pollChanges(long afterSequence, int limit) {
+        return changeLog(() -> {
+            String sql = "SELECT `seq`, `uuid`, `server_id` FROM `player_changes` WHERE `seq` > ? ORDER BY `seq` LIMIT ?;";
+            try (Connection connection = dataSource.getConnection(); PreparedStatement ps = connection.prepareStatement(sql)) {
+                ps.setLong(1, afterSequence);
+                ps.setInt(2, limit);
+                try (ResultSet rs = ps.executeQuery()) {
+                    return PlayerChange.readAll(rs, serverId);
+                }
+            } catch (SQLException e) {
+                plugin.getLogger().severe("读取变更日志时出错: " + e.getMessage());
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Long> getLatestChangeSequence() {
+        return changeLog(() -> {
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement();
+                 ResultSet rs = statement.executeQuery("SELECT COALESCE(MAX(`seq`), 0) FROM `player_changes`;")) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            } catch (SQLException e) {
+                plugin.getLogger().severe("读取变更日志时出错: " + e.getMessage());
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Integer> pruneChanges(long beforeMillis) {
+        return changeLog(() -> {
+            try (Connection connection = dataSource.getConnection();
+                 PreparedStatement ps = connection.prepareStatement("DELETE FROM `player_changes` WHERE `created_at` < ?;")) {
+                ps.setLong(1, beforeMillis);
+                return ps.executeUpdate();
+            } catch (SQLException e) {
+                plugin.getLogger().severe("清理变更日志时出错: " + e.getMessage());
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return executor == null ? 0 : executor.getQueueDepth();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package org.diao.diaoNameCard.storage;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * 与具体存储方式无关的一行玩家名片数据
+ * 用于在不同的 Database 实现之间迁移 player_cards (玩家 + 拥有的名片) 和 player_meta (玩家 + 佩戴的名片)。
+ */
+public final class PlayerCardRow {
+    private final UUID uuid;
+    private final String cardId; // player_meta 中可能为 null
+
+    public PlayerCardRow(UUID uuid, String cardId) {
+        this.uuid = uuid;
+        this.cardId = cardId;
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    public String getCardId() {
+        return cardId;
+    }
+
+    /**
+     * 逐行读取 (uuid 二进制, card_id) 结果集, 每满 batchSize 行交给 sink 一次
+     */
+    static void readBatches(ResultSet rs, int batchSize, Consumer<List<PlayerCardRow>> sink) throws SQLException {
+        List<PlayerCardRow> batch = new ArrayList<>(batchSize);
+        while (rs.next()) {
+            batch.add(new PlayerCardRow(UuidCodec.fromBytes(rs.getBytes(1)), rs.getString(2)));
+            if (batch.size() >= batchSize) {
+                sink.accept(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        }
+        if (!batch.isEmpty()) {
+            sink.accept(batch);
+        }
+    }
+}
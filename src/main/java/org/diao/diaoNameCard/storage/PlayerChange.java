@@ -0,0 +1,70 @@
+package org.diao.diaoNameCard.storage;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 变更日志 (player_changes) 中的一条记录
+ * 每次写入玩家名片数据时, 数据库实现会顺带写入一条 (序号, 玩家UUID, 来源服务器) 记录,
+ * 其他服务器轮询序号更大的记录, 就能知道哪些玩家的缓存需要刷新。
+ */
+public final class PlayerChange {
+
+    // 表示 "所有玩家" 的通配 UUID (例如从所有玩家处移除名片)
+    public static final UUID ALL_PLAYERS = new UUID(0L, 0L);
+
+    private final long sequence;
+    private final UUID uuid;
+    private final boolean local;
+
+    public PlayerChange(long sequence, UUID uuid, boolean local) {
+        this.sequence = sequence;
+        this.uuid = uuid;
+        this.local = local;
+    }
+
+    /**
+     * @return 变更序号, 单调递增
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * @return 发生变更的玩家UUID, 为 ALL_PLAYERS 时表示所有玩家
+     */
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    /**
+     * @return 是否由本服务器写入 (本服务器的缓存已经是最新的, 无需刷新)
+     */
+    public boolean isLocal() {
+        return local;
+    }
+
+    /**
+     * @return 是否需要刷新所有玩家
+     */
+    public boolean isAllPlayers() {
+        return ALL_PLAYERS.equals(uuid);
+    }
+
+    /**
+     * 读取 (seq, uuid 二进制, server_id 二进制) 结果集
+     * @param serverId 本服务器的标识, 用于判断记录是否由本服务器写入
+     */
+    static List<PlayerChange> readAll(ResultSet rs, byte[] serverId) throws SQLException {
+        List<PlayerChange> changes = new ArrayList<>();
+        while (rs.next()) {
+            changes.add(new PlayerChange(rs.getLong(1), UuidCodec.fromBytes(rs.getBytes(2)),
+                    Arrays.equals(serverId, rs.getBytes(3))));
+        }
+        return changes;
+    }
+}
@@ -1,24 +1,76 @@
 package org.diao.diaoNameCard.storage;
 
 import org.diao.diaoNameCard.Main;
+import org.diao.diaoNameCard.model.PlayerProfile;
 
 import java.io.File;
 import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
+/**
+ * SQLite 数据库操作实现类
+ * - 一个专用的写线程持有唯一的写连接，把排队中的写操作合并到同一个事务里提交；
+ * - 一个小的只读连接池负责查询，WAL 模式下读写互不阻塞；
+ * - 每个连接缓存自己的 PreparedStatement，避免每次操作都重新编译 SQL。
+ * 表结构 (v2): UUID 存为 16 字节 BLOB，名片ID通过 card_dictionary 映射为整数。
+ * 开启 sync.enabled 时记录变更日志 (player_changes), 多个服务器共用同一个数据库文件时可以互相刷新缓存。
+ */
 public class SQLite implements Database {
 
+    // 单个事务最多合并的写操作数量
+    private static final int MAX_WRITE_GROUP = 512;
+    // 旧版数据迁移时每段复制的行数
+    private static final int MIGRATION_CHUNK_SIZE = 10000;
+    // 批量查询佩戴名片时每条 IN 语句的最大参数数量 (SQLite 默认上限为 999)
+    private static final int LOOKUP_CHUNK_SIZE = 512;
+    // 多行 INSERT 每条语句最多包含的行数 (每行 2 个参数, 旧版 SQLite 上限 999 个参数)
+    private static final int MULTI_ROW_LIMIT = 400;
+
     private final Main plugin;
-    private Connection connection;
     private final String dbName = "player_data.db";
+    private final int readerCount;
+
+    private String url;
+    private CachedConnection writer;
+    private BlockingQueue<CachedConnection> readers;
+    private DatabaseExecutor readExecutor;
+    private final CardDictionary dictionary = new CardDictionary();
+    // 有界写队列 (容量同 storage.executor.queue-size), 满时新的写操作直接失败
+    private final BlockingQueue<WriteTask> writeQueue;
+    private Thread writerThread;
+    // 旧版数据迁移在写线程中后台进行, 完成之前对 v2 表的读写都排在它之后
+    private final CompletableFuture<Void> migration = new CompletableFuture<>();
+    // 连接失败的原因, 不为 null 时所有读写直接返回异常完成的 CompletableFuture
+    private volatile Exception connectFailure;
+    private final boolean changeLogEnabled;
+    // 本服务器本次运行的标识, 用于在变更日志中区分自己写入的记录
+    private final byte[] serverId = UuidCodec.toBytes(UUID.randomUUID());
 
     public SQLite(Main plugin) {
         this.plugin = plugin;
+        this.readerCount = Math.max(1, plugin.getConfig().getInt("storage.sqlite.readers", 2));
+        this.writeQueue = new LinkedBlockingQueue<>(Math.max(1, plugin.getConfig().getInt("storage.executor.queue-size", 1000)));
+        // 单服使用 SQLite 时通常不需要同步, 默认关闭
+        this.changeLogEnabled = plugin.getConfig().getBoolean("sync.enabled", false);
     }
 
     @Override
@@ -29,130 +81,849 @@ public class SQLite implements Database {
                 dbFile.createNewFile();
             } catch (IOException e) {
                 plugin.getLogger().severe("无法创建 SQLite 数据库文件: " + e.getMessage());
+                failConnect(e);
                 return;
             }
         }
 
         try {
             Class.forName("org.sqlite.JDBC");
-            connection = DriverManager.getConnection("jdbc:sqlite:" + dbFile.getAbsolutePath());
-            plugin.getLogger().info("SQLite 数据库连接成功。");
+            url = "jdbc:sqlite:" + dbFile.getAbsolutePath();
+
+            // 写连接: 开启 WAL 日志, 提交时只在检查点同步磁盘
+            writer = new CachedConnection(DriverManager.getConnection(url));
+            try (Statement statement = writer.connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL;");
+                statement.execute("PRAGMA synchronous=NORMAL;");
+                statement.execute("PRAGMA busy_timeout=5000;");
+            }
             initializeTables();
+
+            // 只读连接池
+            readers = new ArrayBlockingQueue<>(readerCount);
+            for (int i = 0; i < readerCount; i++) {
+                readers.add(new CachedConnection(openReadOnlyConnection()));
+            }
+            readExecutor = new DatabaseExecutor(plugin, "SQLite-Reader", readerCount);
+
+            writerThread = new Thread(this::writerLoop, "DiaoNameCard-SQLite-Writer");
+            writerThread.setDaemon(true);
+            writerThread.start();
+
+            plugin.getLogger().info("SQLite 数据库连接成功 (WAL 模式, " + readerCount + " 个只读连接)。");
         } catch (SQLException | ClassNotFoundException e) {
             plugin.getLogger().severe("无法连接到 SQLite 数据库: " + e.getMessage());
+            failConnect(e);
+        }
+    }
+
+    /**
+     * 连接失败: 关闭已经打开的连接, 之后的读写都直接失败, 不会排进没有线程处理的队列
+     */
+    private void failConnect(Exception cause) {
+        connectFailure = cause;
+        if (readExecutor != null) {
+            readExecutor.shutdown();
+            readExecutor = null;
+        }
+        if (readers != null) {
+            readers.forEach(CachedConnection::close);
+            readers = null;
+        }
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+        migration.complete(null);
+    }
+
+    private <T> CompletableFuture<T> notConnected() {
+        return CompletableFuture.failedFuture(new SQLException("SQLite 数据库未连接", connectFailure));
+    }
+
+    private Connection openReadOnlyConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(url);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA query_only=ON;");
+            statement.execute("PRAGMA busy_timeout=5000;");
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
         }
+        return connection;
     }
 
-    private void initializeTables() {
-        // 创建玩家数据表，存储装备的名片
-        String playerMetaTable = "CREATE TABLE IF NOT EXISTS player_meta (" +
-                "uuid VARCHAR(36) PRIMARY KEY NOT NULL," +
-                "equipped_card_id VARCHAR(255)" +
+    private void initializeTables() throws SQLException {
+        // 名片ID字典表, 把名片ID字符串映射为小整数
+        String dictionaryTable = "CREATE TABLE IF NOT EXISTS card_dictionary (" +
+                "card_int INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "card_id VARCHAR(255) NOT NULL UNIQUE" +
                 ");";
 
-        // 创建玩家拥有的名片表
-        String playerCardsTable = "CREATE TABLE IF NOT EXISTS player_cards (" +
-                "id INTEGER PRIMARY KEY AUTOINCREMENT," +
-                "uuid VARCHAR(36) NOT NULL," +
-                "card_id VARCHAR(255) NOT NULL," +
-                "UNIQUE(uuid, card_id)" +
+        // 创建玩家数据表，存储装备的名片编号
+        String playerMetaTable = "CREATE TABLE IF NOT EXISTS player_meta_v2 (" +
+                "uuid BLOB PRIMARY KEY NOT NULL," +
+                "equipped_card_int INTEGER" +
+                ") WITHOUT ROWID;";
+
+        // 创建玩家拥有的名片表, 以 (uuid, card_int) 为主键聚簇存储
+        String playerCardsTable = "CREATE TABLE IF NOT EXISTS player_cards_v2 (" +
+                "uuid BLOB NOT NULL," +
+                "card_int INTEGER NOT NULL," +
+                "PRIMARY KEY (uuid, card_int)" +
+                ") WITHOUT ROWID;";
+
+        // 变更日志: 只记录 "哪个玩家在什么时候被哪台服务器修改过", 不记录具体内容
+        String playerChangesTable = "CREATE TABLE IF NOT EXISTS player_changes (" +
+                "seq INTEGER PRIMARY KEY AUTOINCREMENT," +
+                "uuid BLOB NOT NULL," +
+                "server_id BLOB NOT NULL," +
+                "created_at INTEGER NOT NULL" +
                 ");";
 
-        try (Statement statement = connection.createStatement()) {
+        try (Statement statement = writer.connection.createStatement()) {
+            statement.execute(dictionaryTable);
             statement.execute(playerMetaTable);
             statement.execute(playerCardsTable);
+            statement.execute("CREATE INDEX IF NOT EXISTS card_int_index ON player_cards_v2 (card_int);");
+            statement.execute(playerChangesTable);
+            statement.execute("CREATE INDEX IF NOT EXISTS created_at_index ON player_changes (created_at);");
+        }
+    }
+
+    /**
+     * 写线程启动后首先迁移旧版数据, 完成 (或失败) 后放行对 v2 表的读写
+     * 迁移失败时只记录错误, 之后照常使用 v2 表 (旧表保留原名, 下次启动会重试)。
+     */
+    private void runMigration() {
+        try {
+            migrateLegacyTables();
+        } catch (Throwable e) {
+            plugin.getLogger().severe("迁移旧版数据时出错: " + e.getMessage());
+        } finally {
+            migration.complete(null);
+        }
+    }
+
+    /**
+     * 把旧版 (VARCHAR UUID + 字符串名片ID) 的数据迁移到 v2 表结构
+     * 旧表按自增ID分段读取，每段在一个事务中写入新表。
+     * 迁移完成后旧表被重命名为 *_legacy 作为备份。使用 INSERT OR IGNORE, 中途失败后可以安全重跑。
+     */
+    private void migrateLegacyTables() throws SQLException {
+        Connection connection = writer.connection;
+        boolean hasCards = tableExists("player_cards");
+        boolean hasMeta = tableExists("player_meta");
+        if (!hasCards && !hasMeta) return;
+
+        plugin.getLogger().info("检测到旧版数据表, 正在迁移到新的表结构...");
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            if (hasCards) {
+                statement.executeUpdate("INSERT OR IGNORE INTO card_dictionary (card_id) SELECT DISTINCT card_id FROM player_cards;");
+            }
+            if (hasMeta) {
+                statement.executeUpdate("INSERT OR IGNORE INTO card_dictionary (card_id) SELECT DISTINCT equipped_card_id FROM player_meta WHERE equipped_card_id IS NOT NULL;");
+            }
+            connection.commit();
+
+            if (hasCards) {
+                long copied = 0;
+                long lastId = 0;
+                int chunk;
+                try (PreparedStatement select = connection.prepareStatement("SELECT p.id, p.uuid, d.card_int FROM player_cards p " +
+                        "JOIN card_dictionary d ON d.card_id = p.card_id WHERE p.id > ? ORDER BY p.id LIMIT ?;");
+                     PreparedStatement insert = connection.prepareStatement("INSERT OR IGNORE INTO player_cards_v2 (uuid, card_int) VALUES (?, ?);")) {
+                    do {
+                        chunk = 0;
+                        select.setLong(1, lastId);
+                        select.setInt(2, MIGRATION_CHUNK_SIZE);
+                        try (ResultSet rs = select.executeQuery()) {
+                            while (rs.next()) {
+                                chunk++;
+                                lastId = rs.getLong(1);
+                                UUID uuid = parseLegacyUuid(rs.getString(2));
+                                if (uuid == null) continue;
+                                insert.setBytes(1, UuidCodec.toBytes(uuid));
+                                insert.setInt(2, rs.getInt(3));
+                                insert.addBatch();
+                            }
+                        }
+                        insert.executeBatch();
+                        connection.commit();
+                        copied += chunk;
+                    } while (chunk == MIGRATION_CHUNK_SIZE);
+                }
+                plugin.getLogger().info("已迁移 player_cards 共 " + copied + " 行。");
+            }
+
+            if (hasMeta) {
+                try (ResultSet rs = statement.executeQuery("SELECT m.uuid, d.card_int FROM player_meta m " +
+                        "LEFT JOIN card_dictionary d ON d.card_id = m.equipped_card_id;");
+                     PreparedStatement insert = connection.prepareStatement("INSERT OR IGNORE INTO player_meta_v2 (uuid, equipped_card_int) VALUES (?, ?);")) {
+                    while (rs.next()) {
+                        UUID uuid = parseLegacyUuid(rs.getString(1));
+                        if (uuid == null) continue;
+                        int cardInt = rs.getInt(2);
+                        insert.setBytes(1, UuidCodec.toBytes(uuid));
+                        if (rs.wasNull()) {
+                            insert.setNull(2, Types.INTEGER);
+                        } else {
+                            insert.setInt(2, cardInt);
+                        }
+                        insert.addBatch();
+                    }
+                    insert.executeBatch();
+                }
+                connection.commit();
+                plugin.getLogger().info("已迁移 player_meta。");
+            }
+
+            if (hasCards) statement.execute("ALTER TABLE player_cards RENAME TO player_cards_legacy;");
+            if (hasMeta) statement.execute("ALTER TABLE player_meta RENAME TO player_meta_legacy;");
+            connection.commit();
         } catch (SQLException e) {
-            plugin.getLogger().severe("无法创建数据库表: " + e.getMessage());
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        plugin.getLogger().info("数据迁移完成, 旧表已重命名为 *_legacy。");
+    }
+
+    private UUID parseLegacyUuid(String value) {
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            plugin.getLogger().warning("迁移时跳过无效的 UUID: " + value);
+            return null;
+        }
+    }
+
+    private boolean tableExists(String table) throws SQLException {
+        try (PreparedStatement ps = writer.connection.prepareStatement("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?;")) {
+            ps.setString(1, table);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    /**
+     * 把名片ID转换为字典编号, 字典中不存在的名片会被自动插入 (只在写线程中调用)
+     */
+    private Map<String, Integer> resolveCardInts(CachedConnection writer, Collection<String> cardIds) throws SQLException {
+        Map<String, Integer> result = new HashMap<>();
+        for (String cardId : cardIds) {
+            Integer cardInt = dictionary.getInt(cardId);
+            if (cardInt == null) {
+                PreparedStatement insert = writer.prepare("INSERT OR IGNORE INTO card_dictionary (card_id) VALUES (?);");
+                insert.setString(1, cardId);
+                insert.executeUpdate();
+                PreparedStatement select = writer.prepare("SELECT card_int FROM card_dictionary WHERE card_id = ?;");
+                select.setString(1, cardId);
+                try (ResultSet rs = select.executeQuery()) {
+                    if (!rs.next()) {
+                        throw new SQLException("无法为名片 " + cardId + " 分配字典编号");
+                    }
+                    cardInt = rs.getInt(1);
+                    dictionary.put(cardInt, cardId);
+                }
+            }
+            result.put(cardId, cardInt);
+        }
+        return result;
+    }
+
+    /**
+     * 在写线程当前的事务中为每个玩家写入一条变更日志
+     */
+    private void logChanges(CachedConnection writer, Collection<UUID> uuids) throws SQLException {
+        if (!changeLogEnabled || uuids.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        PreparedStatement ps = writer.prepare("INSERT INTO player_changes (uuid, server_id, created_at) VALUES (?, ?, ?);");
+        ps.clearBatch();
+        for (UUID uuid : uuids) {
+            ps.setBytes(1, UuidCodec.toBytes(uuid));
+            ps.setBytes(2, serverId);
+            ps.setLong(3, now);
+            ps.addBatch();
         }
+        ps.executeBatch();
     }
 
     @Override
     public void disconnect() {
-        if (connection != null) {
+        if (writerThread != null) {
+            // 毒丸任务: 写线程处理完它之前的所有写操作后退出 (队列满时等待写线程腾出空间)
             try {
-                connection.close();
-                plugin.getLogger().info("SQLite 数据库连接已关闭。");
+                if (!writeQueue.offer(WriteTask.SHUTDOWN, 10, TimeUnit.SECONDS)) {
+                    plugin.getLogger().warning("SQLite 写队列在 10 秒内没有空位, 强制关闭写线程。");
+                    writerThread.interrupt();
+                }
+                writerThread.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (readExecutor != null) {
+            readExecutor.shutdown();
+        }
+        if (readers != null) {
+            readers.forEach(CachedConnection::close);
+        }
+        if (writer != null) {
+            writer.close();
+            plugin.getLogger().info("SQLite 数据库连接已关闭。");
+        }
+    }
+
+    /**
+     * 写线程主循环: 每次取出当前排队的所有写操作, 在一个事务中执行
+     */
+    private void writerLoop() {
+        runMigration();
+        List<WriteTask> group = new ArrayList<>();
+        boolean running = true;
+        while (running) {
+            try {
+                group.add(writeQueue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+            writeQueue.drainTo(group, MAX_WRITE_GROUP - 1);
+            running = !group.remove(WriteTask.SHUTDOWN);
+            try {
+                if (!group.isEmpty()) {
+                    runWriteGroup(group);
+                }
+            } catch (Throwable e) {
+                // 任何异常都不能让写线程退出, 否则之后的写操作会永远排队
+                plugin.getLogger().severe("SQLite 写线程处理写操作时出现意外错误: " + e);
+                group.forEach(task -> task.future.completeExceptionally(e));
+            }
+            group.clear();
+        }
+    }
+
+    private void runWriteGroup(List<WriteTask> group) {
+        Connection connection = writer.connection;
+        Throwable failure = null;
+        try {
+            connection.setAutoCommit(false);
+            for (WriteTask task : group) {
+                task.work.run(writer);
+            }
+            connection.commit();
+        } catch (Throwable e) {
+            // 不只是 SQLException: 任务中的运行时异常同样要回滚, 不能让部分执行的事务被提交
+            failure = e;
+            try {
+                connection.rollback();
+            } catch (SQLException rollbackError) {
+                plugin.getLogger().severe("SQLite 事务回滚失败: " + rollbackError.getMessage());
+            }
+            // 回滚后字典缓存里可能有未提交的编号, 清空后按需重新读取
+            dictionary.clear();
+        } finally {
+            try {
+                connection.setAutoCommit(true);
             } catch (SQLException e) {
-                plugin.getLogger().severe("关闭 SQLite 数据库连接时出错: " + e.getMessage());
+                plugin.getLogger().severe("恢复 SQLite 自动提交模式失败: " + e.getMessage());
             }
         }
+
+        if (failure == null) {
+            group.forEach(task -> task.future.complete(null));
+        } else if (group.size() > 1) {
+            // 合并的事务失败时逐个重试, 只让真正出错的操作失败
+            for (WriteTask task : group) {
+                runWriteGroup(Collections.singletonList(task));
+            }
+        } else {
+            plugin.getLogger().severe(group.get(0).errorMessage + failure);
+            group.get(0).future.completeExceptionally(failure);
+        }
+    }
+
+    private CompletableFuture<Void> write(SqlWork work, String errorMessage) {
+        // 迁移期间不进入写队列, 以免有界队列在迁移结束前被占满
+        return afterMigration(() -> {
+            WriteTask task = new WriteTask(work, errorMessage);
+            if (!writeQueue.offer(task)) {
+                return CompletableFuture.failedFuture(new RejectedExecutionException("SQLite 写队列已满"));
+            }
+            return task.future;
+        });
+    }
+
+    /**
+     * 在只读连接上执行查询, 出错时返回异常完成的 CompletableFuture
+     */
+    private <T> CompletableFuture<T> read(SqlQuery<T> query, String errorMessage) {
+        return afterMigration(() -> readNow(query, errorMessage));
+    }
+
+    /**
+     * 在只读连接上执行查询, 出错时记录日志并返回默认值 (与 MySQL 实现中单个玩家的简单查询保持一致)
+     */
+    private <T> CompletableFuture<T> read(SqlQuery<T> query, T fallback, String errorMessage) {
+        return read(reader -> {
+            try {
+                return query.run(reader);
+            } catch (SQLException e) {
+                plugin.getLogger().severe(errorMessage + e.getMessage());
+                return fallback;
+            }
+        }, errorMessage);
+    }
+
+    private <T> CompletableFuture<T> afterMigration(Supplier<CompletableFuture<T>> operation) {
+        if (connectFailure != null) return notConnected();
+        return migration.isDone() ? operation.get() : migration.thenCompose(ignored -> afterMigration(operation));
+    }
+
+    /**
+     * 不等待旧版数据迁移的查询, 只用于不参与迁移的变更日志表
+     */
+    private <T> CompletableFuture<T> readNow(SqlQuery<T> query, String errorMessage) {
+        if (connectFailure != null) return notConnected();
+        return readExecutor.supply(() -> {
+            CachedConnection reader;
+            try {
+                reader = readers.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CompletionException(e);
+            }
+            try {
+                return query.run(reader);
+            } catch (SQLException e) {
+                plugin.getLogger().severe(errorMessage + e.getMessage());
+                throw new CompletionException(e);
+            } finally {
+                readers.add(reader);
+            }
+        });
     }
 
     @Override
     public CompletableFuture<List<String>> getPlayerCards(UUID uuid) {
-        return CompletableFuture.supplyAsync(() -> {
+        return read(reader -> {
             List<String> cards = new ArrayList<>();
-            String sql = "SELECT card_id FROM player_cards WHERE uuid = ?;";
-            try (PreparedStatement ps = connection.prepareStatement(sql)) {
-                ps.setString(1, uuid.toString());
-                ResultSet rs = ps.executeQuery();
+            PreparedStatement ps = reader.prepare("SELECT d.card_id FROM player_cards_v2 p " +
+                    "JOIN card_dictionary d ON d.card_int = p.card_int WHERE p.uuid = ?;");
+            ps.setBytes(1, UuidCodec.toBytes(uuid));
+            try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
                     cards.add(rs.getString("card_id"));
                 }
-            } catch (SQLException e) {
-                e.printStackTrace();
             }
             return cards;
-        });
+        }, new ArrayList<>(), "获取玩家名片列表时出错: ");
     }
 
     @Override
-    public CompletableFuture<Void> addPlayerCard(UUID uuid, String cardId) {
-        return CompletableFuture.runAsync(() -> {
-            String sql = "INSERT OR IGNORE INTO player_cards (uuid, card_id) VALUES (?, ?);";
-            try (PreparedStatement ps = connection.prepareStatement(sql)) {
-                ps.setString(1, uuid.toString());
-                ps.setString(2, cardId);
-                ps.executeUpdate();
-            } catch (SQLException e) {
-                e.printStackTrace();
+    public CompletableFuture<PlayerProfile> loadProfile(UUID uuid) {
+        return read(reader -> {
+            List<String> cards = new ArrayList<>();
+            String equipped = null;
+            PreparedStatement ps = reader.prepare("SELECT d.card_id, 0 AS equipped FROM player_cards_v2 p " +
+                    "JOIN card_dictionary d ON d.card_int = p.card_int WHERE p.uuid = ? " +
+                    "UNION ALL SELECT d.card_id, 1 FROM player_meta_v2 m " +
+                    "LEFT JOIN card_dictionary d ON d.card_int = m.equipped_card_int WHERE m.uuid = ?;");
+            byte[] uuidBytes = UuidCodec.toBytes(uuid);
+            ps.setBytes(1, uuidBytes);
+            ps.setBytes(2, uuidBytes);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    if (rs.getInt(2) == 1) {
+                        equipped = rs.getString(1);
+                    } else {
+                        cards.add(rs.getString(1));
+                    }
+                }
             }
-        });
+            return new PlayerProfile(cards, equipped);
+        }, "读取玩家名片数据时出错: ");
+    }
+
+    @Override
+    public CompletableFuture<Void> addPlayerCard(UUID uuid, String cardId) {
+        WriteBatch batch = new WriteBatch();
+        batch.addCard(uuid, cardId);
+        return writeBatch(batch);
     }
 
     @Override
     public CompletableFuture<Void> removePlayerCard(UUID uuid, String cardId) {
-        return CompletableFuture.runAsync(() -> {
-            String sql = "DELETE FROM player_cards WHERE uuid = ? AND card_id = ?;";
-            try (PreparedStatement ps = connection.prepareStatement(sql)) {
-                ps.setString(1, uuid.toString());
-                ps.setString(2, cardId);
-                ps.executeUpdate();
-            } catch (SQLException e) {
-                e.printStackTrace();
-            }
-        });
+        WriteBatch batch = new WriteBatch();
+        batch.removeCard(uuid, cardId);
+        return writeBatch(batch);
     }
 
     @Override
     public CompletableFuture<String> getEquippedCard(UUID uuid) {
-        return CompletableFuture.supplyAsync(() -> {
-            String sql = "SELECT equipped_card_id FROM player_meta WHERE uuid = ?;";
-            try (PreparedStatement ps = connection.prepareStatement(sql)) {
-                ps.setString(1, uuid.toString());
-                ResultSet rs = ps.executeQuery();
+        return read(reader -> {
+            PreparedStatement ps = reader.prepare("SELECT d.card_id FROM player_meta_v2 m " +
+                    "LEFT JOIN card_dictionary d ON d.card_int = m.equipped_card_int WHERE m.uuid = ?;");
+            ps.setBytes(1, UuidCodec.toBytes(uuid));
+            try (ResultSet rs = ps.executeQuery()) {
                 if (rs.next()) {
-                    return rs.getString("equipped_card_id");
+                    return rs.getString("card_id");
                 }
-            } catch (SQLException e) {
-                e.printStackTrace();
             }
-            return null; // 如果没有记录或出错，返回 null
-        });
+            return null; // 如果没有记录，返回 null
+        }, null, "获取玩家佩戴名片时出错: ");
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, String>> getEquippedCards(Collection<UUID> uuids) {
+        List<UUID> players = new ArrayList<>(new HashSet<>(uuids));
+        if (players.isEmpty()) {
+            return CompletableFuture.completedFuture(new HashMap<>());
+        }
+        return read(reader -> {
+            Map<UUID, String> result = new HashMap<>();
+            for (int from = 0; from < players.size(); from += LOOKUP_CHUNK_SIZE) {
+                List<UUID> chunk = players.subList(from, Math.min(players.size(), from + LOOKUP_CHUNK_SIZE));
+                // 参数数量向上取到 2 的幂, 多出的位置重复最后一个 UUID, 让缓存的语句只有少数几种
+                int size = Math.min(LOOKUP_CHUNK_SIZE, Math.max(8, Integer.highestOneBit(chunk.size() - 1) << 1));
+                PreparedStatement ps = reader.prepare("SELECT m.uuid, d.card_id FROM player_meta_v2 m " +
+                        "JOIN card_dictionary d ON d.card_int = m.equipped_card_int " +
+                        "WHERE m.uuid IN (" + String.join(", ", Collections.nCopies(size, "?")) + ");");
+                for (int i = 0; i < size; i++) {
+                    ps.setBytes(i + 1, UuidCodec.toBytes(chunk.get(Math.min(i, chunk.size() - 1))));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        result.put(UuidCodec.fromBytes(rs.getBytes(1)), rs.getString(2));
+                    }
+                }
+            }
+            return result;
+        }, null, "批量获取玩家佩戴名片时出错: ").thenApply(result -> result == null ? new HashMap<>() : result);
     }
 
     @Override
     public CompletableFuture<Void> setEquippedCard(UUID uuid, String cardId) {
-        return CompletableFuture.runAsync(() -> {
+        WriteBatch batch = new WriteBatch();
+        batch.setEquipped(uuid, cardId);
+        return writeBatch(batch);
+    }
+
+    @Override
+    public CompletableFuture<Void> writeBatch(WriteBatch batch) {
+        if (batch.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // 写线程会把这个批次和其他排队的写操作放进同一个事务
+        return write(writer -> {
+            List<WriteBatch.CardChange> added = batch.getAddedCards();
+            List<WriteBatch.CardChange> removed = batch.getRemovedCards();
+            Set<String> cardIds = new HashSet<>();
+            added.forEach(change -> cardIds.add(change.getCardId()));
+            removed.forEach(change -> cardIds.add(change.getCardId()));
+            batch.getEquippedChanges().values().stream().filter(Objects::nonNull).forEach(cardIds::add);
+            Map<String, Integer> cardInts = resolveCardInts(writer, cardIds);
+
+            PreparedStatement insert = writer.prepare("INSERT OR IGNORE INTO player_cards_v2 (uuid, card_int) VALUES (?, ?);");
+            PreparedStatement delete = writer.prepare("DELETE FROM player_cards_v2 WHERE uuid = ? AND card_int = ?;");
             // 使用 UPSERT 逻辑 (INSERT OR REPLACE)
-            String sql = "INSERT OR REPLACE INTO player_meta (uuid, equipped_card_id) VALUES (?, ?);";
-            try (PreparedStatement ps = connection.prepareStatement(sql)) {
-                ps.setString(1, uuid.toString());
-                ps.setString(2, cardId);
-                ps.executeUpdate();
+            PreparedStatement equip = writer.prepare("INSERT OR REPLACE INTO player_meta_v2 (uuid, equipped_card_int) VALUES (?, ?);");
+            insert.clearBatch();
+            delete.clearBatch();
+            equip.clearBatch();
+            for (WriteBatch.CardChange change : added) {
+                insert.setBytes(1, UuidCodec.toBytes(change.getUuid()));
+                insert.setInt(2, cardInts.get(change.getCardId()));
+                insert.addBatch();
+            }
+            for (WriteBatch.CardChange change : removed) {
+                delete.setBytes(1, UuidCodec.toBytes(change.getUuid()));
+                delete.setInt(2, cardInts.get(change.getCardId()));
+                delete.addBatch();
+            }
+            for (Map.Entry<UUID, String> entry : batch.getEquippedChanges().entrySet()) {
+                equip.setBytes(1, UuidCodec.toBytes(entry.getKey()));
+                if (entry.getValue() == null) {
+                    equip.setNull(2, Types.INTEGER);
+                } else {
+                    equip.setInt(2, cardInts.get(entry.getValue()));
+                }
+                equip.addBatch();
+            }
+            insert.executeBatch();
+            delete.executeBatch();
+            equip.executeBatch();
+            logChanges(writer, batch.getPlayers());
+        }, "批量写入玩家名片数据时出错: ");
+    }
+
+    @Override
+    public CompletableFuture<Integer> addCardToPlayers(Collection<UUID> uuids, String cardId) {
+        if (uuids.isEmpty()) {
+            return CompletableFuture.completedFuture(0);
+        }
+        List<UUID> players = new ArrayList<>(uuids);
+        int[] inserted = new int[1];
+        return write(writer -> {
+            inserted[0] = 0;
+            int cardInt = resolveCardInts(writer, Collections.singleton(cardId)).get(cardId);
+            // 每条语句最多 MULTI_ROW_LIMIT 行, 保证参数数量不超过 SQLite 的上限
+            for (int from = 0; from < players.size(); from += MULTI_ROW_LIMIT) {
+                List<UUID> rows = players.subList(from, Math.min(players.size(), from + MULTI_ROW_LIMIT));
+                String sql = "INSERT OR IGNORE INTO player_cards_v2 (uuid, card_int) VALUES " +
+                        String.join(", ", Collections.nCopies(rows.size(), "(?, ?)")) + ";";
+                // 只缓存满行数的语句, 最后一段的行数不固定, 用完即关闭
+                PreparedStatement ps = rows.size() == MULTI_ROW_LIMIT ? writer.prepare(sql) : writer.connection.prepareStatement(sql);
+                try {
+                    int index = 1;
+                    for (UUID uuid : rows) {
+                        ps.setBytes(index++, UuidCodec.toBytes(uuid));
+                        ps.setInt(index++, cardInt);
+                    }
+                    inserted[0] += ps.executeUpdate();
+                } finally {
+                    if (rows.size() != MULTI_ROW_LIMIT) ps.close();
+                }
+            }
+            logChanges(writer, players);
+        }, "批量添加名片时出错: ").thenApply(v -> inserted[0]);
+    }
+
+    @Override
+    public CompletableFuture<Integer> removeCardFromAll(String cardId, int limit) {
+        int[] deleted = new int[1];
+        return write(writer -> {
+            // SQLite 默认不支持 DELETE ... LIMIT, 先取出本次删除的玩家;
+            // 变更日志只记录这些玩家, 其他服务器不必重新加载全部在线玩家
+            List<UUID> owners = new ArrayList<>();
+            PreparedStatement select = writer.prepare("SELECT uuid FROM player_cards_v2 WHERE card_int = " +
+                    "(SELECT card_int FROM card_dictionary WHERE card_id = ?) LIMIT ?;");
+            select.setString(1, cardId);
+            select.setInt(2, limit);
+            try (ResultSet rs = select.executeQuery()) {
+                while (rs.next()) {
+                    owners.add(UuidCodec.fromBytes(rs.getBytes(1)));
+                }
+            }
+            // 写线程是唯一的写入者, 选出的行在同一事务中一定会被删除
+            deleted[0] = owners.size();
+            if (owners.isEmpty()) return;
+            PreparedStatement delete = writer.prepare("DELETE FROM player_cards_v2 WHERE uuid = ? AND card_int = " +
+                    "(SELECT card_int FROM card_dictionary WHERE card_id = ?);");
+            delete.clearBatch();
+            for (UUID uuid : owners) {
+                delete.setBytes(1, UuidCodec.toBytes(uuid));
+                delete.setString(2, cardId);
+                delete.addBatch();
+            }
+            delete.executeBatch();
+            logChanges(writer, owners);
+        }, "批量移除名片时出错: ").thenApply(v -> deleted[0]);
+    }
+
+    @Override
+    public CompletableFuture<Integer> clearEquippedCard(String cardId) {
+        int[] updated = new int[1];
+        return write(writer -> {
+            PreparedStatement ps = writer.prepare("UPDATE player_meta_v2 SET equipped_card_int = NULL WHERE equipped_card_int = " +
+                    "(SELECT card_int FROM card_dictionary WHERE card_id = ?);");
+            ps.setString(1, cardId);
+            updated[0] = ps.executeUpdate();
+            if (updated[0] > 0) {
+                logChanges(writer, Collections.singleton(PlayerChange.ALL_PLAYERS));
+            }
+        }, "重置玩家佩戴名片时出错: ").thenApply(v -> updated[0]);
+    }
+
+    @Override
+    public CompletableFuture<Long> countCardOwners(String cardId) {
+        return read(reader -> {
+            PreparedStatement ps = reader.prepare("SELECT COUNT(*) FROM player_cards_v2 WHERE card_int = " +
+                    "(SELECT card_int FROM card_dictionary WHERE card_id = ?);");
+            ps.setString(1, cardId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        }, "统计名片拥有者时出错: ");
+    }
+
+    @Override
+    public CompletableFuture<Void> streamPlayerCards(int batchSize, Consumer<List<PlayerCardRow>> sink) {
+        return streamQuery("SELECT p.uuid, d.card_id FROM player_cards_v2 p " +
+                "JOIN card_dictionary d ON d.card_int = p.card_int;", batchSize, sink);
+    }
+
+    @Override
+    public CompletableFuture<Void> streamPlayerMeta(int batchSize, Consumer<List<PlayerCardRow>> sink) {
+        return streamQuery("SELECT m.uuid, d.card_id FROM player_meta_v2 m " +
+                "LEFT JOIN card_dictionary d ON d.card_int = m.equipped_card_int;", batchSize, sink);
+    }
+
+    /**
+     * 流式读取会持续整个数据迁移, 因此使用专门打开的连接和线程, 不占用只读连接池和读执行器
+     */
+    private CompletableFuture<Void> streamQuery(String sql, int batchSize, Consumer<List<PlayerCardRow>> sink) {
+        return afterMigration(() -> CompletableFuture.runAsync(() -> {
+            // SQLite 的结果集本身就是逐行步进的游标, 不会一次性读入内存
+            try (Connection connection = openReadOnlyConnection(); Statement statement = connection.createStatement()) {
+                statement.setFetchSize(batchSize);
+                try (ResultSet rs = statement.executeQuery(sql)) {
+                    PlayerCardRow.readBatches(rs, batchSize, sink);
+                }
             } catch (SQLException e) {
-                e.printStackTrace();
+                plugin.getLogger().severe("流式读取数据时出错: " + e.getMessage());
+                throw new CompletionException(e);
             }
-        });
+        }, runnable -> DatabaseExecutor.namedThreads("DiaoNameCard-SQLite-Stream").newThread(runnable).start()));
+    }
+
+    @Override
+    public CompletableFuture<Void> importPlayerCards(List<PlayerCardRow> rows) {
+        return importRows(rows, "INSERT OR IGNORE INTO player_cards_v2 (uuid, card_int) VALUES (?, ?);");
+    }
+
+    @Override
+    public CompletableFuture<Void> importPlayerMeta(List<PlayerCardRow> rows) {
+        return importRows(rows, "INSERT OR REPLACE INTO player_meta_v2 (uuid, equipped_card_int) VALUES (?, ?);");
+    }
+
+    private CompletableFuture<Void> importRows(List<PlayerCardRow> rows, String sql) {
+        if (rows.isEmpty()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        // 写线程会把整批数据放在一个事务中提交
+        return write(writer -> {
+            Set<String> cardIds = new HashSet<>();
+            rows.stream().map(PlayerCardRow::getCardId).filter(Objects::nonNull).forEach(cardIds::add);
+            Map<String, Integer> cardInts = resolveCardInts(writer, cardIds);
+
+            PreparedStatement ps = writer.prepare(sql);
+            ps.clearBatch();
+            for (PlayerCardRow row : rows) {
+                ps.setBytes(1, UuidCodec.toBytes(row.getUuid()));
+                if (row.getCardId() == null) {
+                    ps.setNull(2, Types.INTEGER);
+                } else {
+                    ps.setInt(2, cardInts.get(row.getCardId()));
+                }
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }, "批量导入数据时出错: ");
+    }
+
+    @Override
+    public CompletableFuture<Long> countPlayerCards() {
+        return countRows("player_cards_v2");
+    }
+
+    @Override
+    public CompletableFuture<Long> countPlayerMeta() {
+        return countRows("player_meta_v2");
+    }
+
+    private CompletableFuture<Long> countRows(String table) {
+        return read(reader -> {
+            PreparedStatement ps = reader.prepare("SELECT COUNT(*) FROM " + table + ";");
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        }, "统计数据行数时出错: ");
+    }
+
+    @Override
+    public CompletableFuture<List<PlayerChange>> pollChanges(long afterSequence, int limit) {
+        return readNow(reader -> {
+            PreparedStatement ps = reader.prepare("SELECT seq, uuid, server_id FROM player_changes WHERE seq > ? ORDER BY seq LIMIT ?;");
+            ps.setLong(1, afterSequence);
+            ps.setInt(2, limit);
+            try (ResultSet rs = ps.executeQuery()) {
+                return PlayerChange.readAll(rs, serverId);
+            }
+        }, "读取变更日志时出错: ");
+    }
+
+    @Override
+    public CompletableFuture<Long> getLatestChangeSequence() {
+        return readNow(reader -> {
+            PreparedStatement ps = reader.prepare("SELECT COALESCE(MAX(seq), 0) FROM player_changes;");
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : 0L;
+            }
+        }, "读取变更日志时出错: ");
+    }
+
+    @Override
+    public CompletableFuture<Integer> pruneChanges(long beforeMillis) {
+        int[] deleted = new int[1];
+        return write(writer -> {
+            PreparedStatement ps = writer.prepare("DELETE FROM player_changes WHERE created_at < ?;");
+            ps.setLong(1, beforeMillis);
+            deleted[0] = ps.executeUpdate();
+        }, "清理变更日志时出错: ").thenApply(v -> deleted[0]);
+    }
+
+    @Override
+    public int getQueueDepth() {
+        // 读队列 + 写线程中排队的写操作
+        return (readExecutor == null ? 0 : readExecutor.getQueueDepth()) + writeQueue.size();
+    }
+
+    /**
+     * 带 PreparedStatement 缓存的连接, 同一时间只会被一个线程使用
+     */
+    private static final class CachedConnection {
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements = new HashMap<>();
+
+        private CachedConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        private PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement ps = statements.get(sql);
+            if (ps == null) {
+                ps = connection.prepareStatement(sql);
+                statements.put(sql, ps);
+            }
+            return ps;
+        }
+
+        private void close() {
+            try {
+                for (PreparedStatement ps : statements.values()) {
+                    ps.close();
+                }
+                connection.close();
+            } catch (SQLException ignored) {
+                // 关闭阶段的异常可以忽略
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface SqlWork {
+        void run(CachedConnection connection) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface SqlQuery<T> {
+        T run(CachedConnection connection) throws SQLException;
+    }
+
+    private static final class WriteTask {
+        private static final WriteTask SHUTDOWN = new WriteTask(null, null);
+
+        private final SqlWork work;
+        private final String errorMessage;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private WriteTask(SqlWork work, String errorMessage) {
+            this.work = work;
+            this.errorMessage = errorMessage;
+        }
     }
-}
\ No newline at end of file
+}
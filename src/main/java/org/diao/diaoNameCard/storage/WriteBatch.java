@@ -0,0 +1,178 @@
+package org.diao.diaoNameCard.storage;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 批量写入集合
+ * 按 "玩家 + 名片" 合并名片的增删操作，按玩家合并佩戴操作，同一个键只保留最后一次写入。
+ * 本类不是线程安全的，由持有者负责加锁。
+ */
+public class WriteBatch {
+
+    // uuid -> (名片ID -> true 表示添加, false 表示移除)
+    private final Map<UUID, Map<String, Boolean>> cardChanges = new LinkedHashMap<>();
+    // uuid -> 佩戴的名片ID (player_meta, 后写覆盖先写)
+    private final Map<UUID, String> equippedChanges = new LinkedHashMap<>();
+    private int size;
+
+    /**
+     * 记录一次添加名片
+     * @param uuid 玩家UUID
+     * @param cardId 名片ID
+     */
+    public void addCard(UUID uuid, String cardId) {
+        putCardChange(uuid, cardId, true);
+    }
+
+    /**
+     * 记录一次移除名片
+     * @param uuid 玩家UUID
+     * @param cardId 名片ID
+     */
+    public void removeCard(UUID uuid, String cardId) {
+        putCardChange(uuid, cardId, false);
+    }
+
+    /**
+     * 记录一次佩戴名片
+     * @param uuid 玩家UUID
+     * @param cardId 名片ID
+     */
+    public void setEquipped(UUID uuid, String cardId) {
+        if (!equippedChanges.containsKey(uuid)) {
+            size++;
+        }
+        equippedChanges.put(uuid, cardId);
+    }
+
+    private void putCardChange(UUID uuid, String cardId, boolean add) {
+        Map<String, Boolean> changes = cardChanges.computeIfAbsent(uuid, k -> new LinkedHashMap<>());
+        if (changes.put(cardId, add) == null) {
+            size++;
+        }
+    }
+
+    /**
+     * 把一个更晚的批次合并进来，对方的写入覆盖当前批次
+     * @param newer 更晚的批次
+     */
+    public void mergeNewer(WriteBatch newer) {
+        newer.cardChanges.forEach((uuid, changes) -> changes.forEach((cardId, add) -> putCardChange(uuid, cardId, add)));
+        newer.equippedChanges.forEach(this::setEquipped);
+    }
+
+    /**
+     * 把一个更早的批次合并进来，当前批次中已有的键优先 (用于写入失败后的重新排队)
+     * @param older 更早的批次
+     */
+    public void mergeOlder(WriteBatch older) {
+        older.cardChanges.forEach((uuid, changes) -> changes.forEach((cardId, add) -> {
+            Map<String, Boolean> current = cardChanges.computeIfAbsent(uuid, k -> new LinkedHashMap<>());
+            if (current.putIfAbsent(cardId, add) == null) {
+                size++;
+            }
+        }));
+        older.equippedChanges.forEach((uuid, cardId) -> {
+            if (!equippedChanges.containsKey(uuid)) {
+                equippedChanges.put(uuid, cardId);
+                size++;
+            }
+        });
+    }
+
+    /**
+     * 将本批次中尚未落库的名片增删应用到一份从数据库读出的名片列表上
+     * @param uuid 玩家UUID
+     * @param cardIds 名片ID集合 (会被原地修改)
+     */
+    public void applyCards(UUID uuid, Collection<String> cardIds) {
+        Map<String, Boolean> changes = cardChanges.get(uuid);
+        if (changes == null) return;
+        changes.forEach((cardId, add) -> {
+            cardIds.remove(cardId);
+            if (add) {
+                cardIds.add(cardId);
+            }
+        });
+    }
+
+    /**
+     * 将本批次中尚未落库的佩戴操作应用到一个从数据库读出的值上
+     * @param uuid 玩家UUID
+     * @param current 数据库中的佩戴名片ID
+     * @return 应用后的佩戴名片ID
+     */
+    public String applyEquipped(UUID uuid, String current) {
+        return equippedChanges.containsKey(uuid) ? equippedChanges.get(uuid) : current;
+    }
+
+    public List<CardChange> getAddedCards() {
+        return collectCardChanges(true);
+    }
+
+    public List<CardChange> getRemovedCards() {
+        return collectCardChanges(false);
+    }
+
+    public Map<UUID, String> getEquippedChanges() {
+        return equippedChanges;
+    }
+
+    /**
+     * @return 本批次涉及的所有玩家
+     */
+    public Set<UUID> getPlayers() {
+        Set<UUID> players = new LinkedHashSet<>(cardChanges.keySet());
+        players.addAll(equippedChanges.keySet());
+        return players;
+    }
+
+    private List<CardChange> collectCardChanges(boolean add) {
+        List<CardChange> result = new ArrayList<>();
+        cardChanges.forEach((uuid, changes) -> changes.forEach((cardId, isAdd) -> {
+            if (isAdd == add) {
+                result.add(new CardChange(uuid, cardId));
+            }
+        }));
+        return result;
+    }
+
+    /**
+     * @return 合并后的写操作数量
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 单条名片增删记录
+     */
+    public static final class CardChange {
+        private final UUID uuid;
+        private final String cardId;
+
+        public CardChange(UUID uuid, String cardId) {
+            this.uuid = uuid;
+            this.cardId = cardId;
+        }
+
+        public UUID getUuid() {
+            return uuid;
+        }
+
+        public String getCardId() {
+            return cardId;
+        }
+    }
+}
@@ -0,0 +1,332 @@
+package org.diao.diaoNameCard.storage;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitTask;
+import org.diao.diaoNameCard.Main;
+import org.diao.diaoNameCard.model.PlayerProfile;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.function.Consumer;
+
+/**
+ * 写后缓冲 (write-behind) 数据库包装
+ * 名片的增删和佩戴操作先在内存中按 "玩家 + 名片" 合并，
+ * 再按固定间隔或在队列达到上限时，以一个批次交给真正的数据库实现写入。
+ * 读操作会把尚未落库的写入叠加到查询结果上，保证读到自己刚写的数据。
+ */
+public class WriteBehindDatabase implements Database {
+
+    // 关服时最多尝试写入剩余数据的次数
+    private static final int SHUTDOWN_FLUSH_ATTEMPTS = 3;
+
+    private final Main plugin;
+    private final Database delegate;
+    private final long flushIntervalTicks;
+    private final int maxPending;
+
+    // 等待写入的批次，所有访问都需持有 this 锁
+    private WriteBatch pending = new WriteBatch();
+    private CompletableFuture<Void> pendingCompletion = new CompletableFuture<>();
+    // 已提交给数据库但尚未完成的批次 (按提交顺序)
+    private final Deque<WriteBatch> inFlight = new ConcurrentLinkedDeque<>();
+    // 串行化所有批次，保证后写的批次一定后落库
+    private CompletableFuture<Void> lastFlush = CompletableFuture.completedFuture(null);
+    private BukkitTask flushTask;
+
+    public WriteBehindDatabase(Main plugin, Database delegate) {
+        this.plugin = plugin;
+        this.delegate = delegate;
+        this.flushIntervalTicks = Math.max(1L, plugin.getConfig().getLong("storage.write-behind.flush-interval-ticks", 10L));
+        this.maxPending = Math.max(1, plugin.getConfig().getInt("storage.write-behind.max-pending", 500));
+    }
+
+    @Override
+    public void connect() {
+        delegate.connect();
+        flushTask = Bukkit.getScheduler().runTaskTimerAsynchronously(plugin, this::flush, flushIntervalTicks, flushIntervalTicks);
+    }
+
+    @Override
+    public void disconnect() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        // 关服前把剩余的写入全部落库, 失败的批次会被放回 pending, 重试几次
+        for (int attempt = 1; attempt <= SHUTDOWN_FLUSH_ATTEMPTS; attempt++) {
+            try {
+                flush().join();
+            } catch (Exception e) {
+                plugin.getLogger().severe("关闭数据库前写入缓冲数据时出错 (第 " + attempt + " 次): " + e.getMessage());
+            }
+            if (getPendingCount() == 0) break;
+        }
+        logLostWrites();
+        delegate.disconnect();
+    }
+
+    /**
+     * 重试后仍未落库的写入逐条输出到日志, 便于服主手动补发
+     */
+    private synchronized void logLostWrites() {
+        if (pending.isEmpty()) return;
+        plugin.getLogger().severe("有 " + pending.size() + " 条写入未能保存到数据库:");
+        for (WriteBatch.CardChange change : pending.getAddedCards()) {
+            plugin.getLogger().severe("  添加名片 " + change.getUuid() + " " + change.getCardId());
+        }
+        for (WriteBatch.CardChange change : pending.getRemovedCards()) {
+            plugin.getLogger().severe("  移除名片 " + change.getUuid() + " " + change.getCardId());
+        }
+        pending.getEquippedChanges().forEach((uuid, cardId) ->
+                plugin.getLogger().severe("  佩戴名片 " + uuid + " " + (cardId == null ? "(无)" : cardId)));
+    }
+
+    /**
+     * 立即把当前缓冲的写操作作为一个批次提交
+     * @return 该批次 (以及之前所有批次) 落库后完成的 CompletableFuture
+     */
+    public synchronized CompletableFuture<Void> flush() {
+        if (pending.isEmpty()) {
+            return lastFlush;
+        }
+        WriteBatch batch = pending;
+        CompletableFuture<Void> completion = pendingCompletion;
+        pending = new WriteBatch();
+        pendingCompletion = new CompletableFuture<>();
+        inFlight.addLast(batch);
+
+        lastFlush = lastFlush
+                .handle((v, ex) -> null)
+                .thenCompose(v -> delegate.writeBatch(batch))
+                .whenComplete((v, ex) -> {
+                    if (ex != null) {
+                        // 写入失败时把批次放回队列，后续的写入优先
+                        synchronized (this) {
+                            pending.mergeOlder(batch);
+                        }
+                        plugin.getLogger().warning("批量写入失败, " + batch.size() + " 条操作已重新排队。");
+                    }
+                    inFlight.remove(batch);
+                    if (ex != null) {
+                        completion.completeExceptionally(ex);
+                    } else {
+                        completion.complete(null);
+                    }
+                });
+        return lastFlush;
+    }
+
+    /**
+     * @return 当前等待写入的操作数量
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    private CompletableFuture<Void> enqueue(Consumer<WriteBatch> write) {
+        CompletableFuture<Void> completion;
+        boolean full;
+        synchronized (this) {
+            write.accept(pending);
+            completion = pendingCompletion;
+            full = pending.size() >= maxPending;
+        }
+        if (full) {
+            flush();
+        }
+        return completion;
+    }
+
+    /**
+     * 在发起数据库读取之前记下进行中和等待中的批次
+     * 读取完成前这些批次可能已经落库并离开 inFlight, 叠加时仍要包含它们,
+     * 否则读取的快照早于落库时会丢失这些写入。已经落库的批次再叠加一次结果不变。
+     * @return 按提交顺序排列的批次
+     */
+    private synchronized List<WriteBatch> captureBatches() {
+        List<WriteBatch> batches = new ArrayList<>(inFlight.size() + 1);
+        batches.addAll(inFlight);
+        batches.add(pending);
+        return batches;
+    }
+
+    /**
+     * 叠加时使用的批次: 读取前记下的批次, 再加上之后提交的批次 (同样按提交顺序)
+     */
+    private List<WriteBatch> overlayBatches(List<WriteBatch> captured) {
+        List<WriteBatch> batches = new ArrayList<>(captured);
+        Set<WriteBatch> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        seen.addAll(captured);
+        for (WriteBatch batch : inFlight) {
+            if (seen.add(batch)) batches.add(batch);
+        }
+        if (seen.add(pending)) batches.add(pending);
+        return batches;
+    }
+
+    /**
+     * 按提交顺序把批次叠加到名片列表上
+     */
+    private synchronized void overlayCards(List<WriteBatch> captured, UUID uuid, List<String> cards) {
+        for (WriteBatch batch : overlayBatches(captured)) {
+            batch.applyCards(uuid, cards);
+        }
+    }
+
+    private synchronized String overlayEquipped(List<WriteBatch> captured, UUID uuid, String cardId) {
+        String result = cardId;
+        for (WriteBatch batch : overlayBatches(captured)) {
+            result = batch.applyEquipped(uuid, result);
+        }
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<List<String>> getPlayerCards(UUID uuid) {
+        List<WriteBatch> captured = captureBatches();
+        return delegate.getPlayerCards(uuid).thenApply(cards -> {
+            List<String> result = new ArrayList<>(cards);
+            overlayCards(captured, uuid, result);
+            return result;
+        });
+    }
+
+    @Override
+    public CompletableFuture<String> getEquippedCard(UUID uuid) {
+        List<WriteBatch> captured = captureBatches();
+        return delegate.getEquippedCard(uuid).thenApply(cardId -> overlayEquipped(captured, uuid, cardId));
+    }
+
+    @Override
+    public CompletableFuture<Map<UUID, String>> getEquippedCards(Collection<UUID> uuids) {
+        List<WriteBatch> captured = captureBatches();
+        return delegate.getEquippedCards(uuids).thenApply(stored -> {
+            for (UUID uuid : uuids) {
+                String cardId = overlayEquipped(captured, uuid, stored.get(uuid));
+                if (cardId == null) {
+                    stored.remove(uuid);
+                } else {
+                    stored.put(uuid, cardId);
+                }
+            }
+            return stored;
+        });
+    }
+
+    @Override
+    public CompletableFuture<PlayerProfile> loadProfile(UUID uuid) {
+        List<WriteBatch> captured = captureBatches();
+        return delegate.loadProfile(uuid).thenApply(profile -> {
+            List<String> cards = new ArrayList<>(profile.getOwnedCardIds());
+            overlayCards(captured, uuid, cards);
+            return new PlayerProfile(cards, overlayEquipped(captured, uuid, profile.getEquippedCardId()));
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> addPlayerCard(UUID uuid, String cardId) {
+        return enqueue(batch -> batch.addCard(uuid, cardId));
+    }
+
+    @Override
+    public CompletableFuture<Void> removePlayerCard(UUID uuid, String cardId) {
+        return enqueue(batch -> batch.removeCard(uuid, cardId));
+    }
+
+    @Override
+    public CompletableFuture<Void> setEquippedCard(UUID uuid, String cardId) {
+        return enqueue(batch -> batch.setEquipped(uuid, cardId));
+    }
+
+    @Override
+    public CompletableFuture<Void> writeBatch(WriteBatch batch) {
+        return enqueue(pendingBatch -> pendingBatch.mergeNewer(batch));
+    }
+
+    /**
+     * 批量操作直接交给数据库实现, 但要先把缓冲中的写入落库以保证顺序
+     */
+    private CompletableFuture<Void> afterFlush() {
+        return flush().handle((v, ex) -> null);
+    }
+
+    @Override
+    public CompletableFuture<Integer> addCardToPlayers(Collection<UUID> uuids, String cardId) {
+        return afterFlush().thenCompose(v -> delegate.addCardToPlayers(uuids, cardId));
+    }
+
+    @Override
+    public CompletableFuture<Integer> removeCardFromAll(String cardId, int limit) {
+        return afterFlush().thenCompose(v -> delegate.removeCardFromAll(cardId, limit));
+    }
+
+    @Override
+    public CompletableFuture<Integer> clearEquippedCard(String cardId) {
+        return afterFlush().thenCompose(v -> delegate.clearEquippedCard(cardId));
+    }
+
+    @Override
+    public CompletableFuture<Long> countCardOwners(String cardId) {
+        return afterFlush().thenCompose(v -> delegate.countCardOwners(cardId));
+    }
+
+    @Override
+    public CompletableFuture<Void> streamPlayerCards(int batchSize, Consumer<List<PlayerCardRow>> sink) {
+        return afterFlush().thenCompose(v -> delegate.streamPlayerCards(batchSize, sink));
+    }
+
+    @Override
+    public CompletableFuture<Void> streamPlayerMeta(int batchSize, Consumer<List<PlayerCardRow>> sink) {
+        return afterFlush().thenCompose(v -> delegate.streamPlayerMeta(batchSize, sink));
+    }
+
+    @Override
+    public CompletableFuture<Void> importPlayerCards(List<PlayerCardRow> rows) {
+        return afterFlush().thenCompose(v -> delegate.importPlayerCards(rows));
+    }
+
+    @Override
+    public CompletableFuture<Void> importPlayerMeta(List<PlayerCardRow> rows) {
+        return afterFlush().thenCompose(v -> delegate.importPlayerMeta(rows));
+    }
+
+    @Override
+    public CompletableFuture<Long> countPlayerCards() {
+        return afterFlush().thenCompose(v -> delegate.countPlayerCards());
+    }
+
+    @Override
+    public CompletableFuture<Long> countPlayerMeta() {
+        return afterFlush().thenCompose(v -> delegate.countPlayerMeta());
+    }
+
+    @Override
+    public CompletableFuture<List<PlayerChange>> pollChanges(long afterSequence, int limit) {
+        return delegate.pollChanges(afterSequence, limit);
+    }
+
+    @Override
+    public CompletableFuture<Long> getLatestChangeSequence() {
+        return delegate.getLatestChangeSequence();
+    }
+
+    @Override
+    public CompletableFuture<Integer> pruneChanges(long beforeMillis) {
+        return delegate.pruneChanges(beforeMillis);
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return delegate.getQueueDepth();
+    }
+}
\ No newline at end of file
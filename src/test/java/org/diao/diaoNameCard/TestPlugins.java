@@ -0,0 +1,43 @@
+package org.diao.diaoNameCard;
+
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.File;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 测试用的插件实例
+ * 配置项只返回 settings 中给出的值, 其余都返回调用处的默认值, 与没有写该配置项的 config.yml 一致。
+ */
+public final class TestPlugins {
+
+    private TestPlugins() {
+    }
+
+    /**
+     * @param dataFolder 插件目录
+     * @param settings 配置项 -> 值
+     * @return 模拟的插件实例
+     */
+    public static Main mockPlugin(File dataFolder, Map<String, Object> settings) {
+        FileConfiguration config = mock(FileConfiguration.class);
+        when(config.getInt(anyString(), anyInt())).thenAnswer(call -> settings.getOrDefault(call.getArgument(0), call.getArgument(1)));
+        when(config.getLong(anyString(), anyLong())).thenAnswer(call -> settings.getOrDefault(call.getArgument(0), call.getArgument(1)));
+        when(config.getBoolean(anyString(), anyBoolean())).thenAnswer(call -> settings.getOrDefault(call.getArgument(0), call.getArgument(1)));
+        when(config.getString(anyString(), anyString())).thenAnswer(call -> settings.getOrDefault(call.getArgument(0), call.getArgument(1)));
+
+        Main plugin = mock(Main.class);
+        when(plugin.getConfig()).thenReturn(config);
+        when(plugin.getDataFolder()).thenReturn(dataFolder);
+        when(plugin.getLogger()).thenReturn(Logger.getLogger("DiaoNameCard"));
+        return plugin;
+    }
+}
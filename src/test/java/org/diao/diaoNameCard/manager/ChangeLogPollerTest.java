@@ -0,0 +1,193 @@
+package org.diao.diaoNameCard.manager;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.diao.diaoNameCard.Main;
+import org.diao.diaoNameCard.TestPlugins;
+import org.diao.diaoNameCard.storage.Database;
+import org.diao.diaoNameCard.storage.PlayerChange;
+import org.diao.diaoNameCard.storage.SQLite;
+import org.diao.diaoNameCard.storage.UuidCodec;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.MockedStatic;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 两个 SQLite 实例共用同一个数据库文件, 模拟群组服中的两台服务器:
+ * remote 负责写入, local 是运行轮询的服务器。
+ * 轮询任务不交给调度器, 由测试直接运行; 数据库调用在轮询线程上同步完成, 每次 poll 返回时都已处理完毕。
+ */
+class ChangeLogPollerTest {
+
+    private static final int POLL_LIMIT = 3;
+
+    private final UUID alice = new UUID(0L, 1L);
+    private final UUID bob = new UUID(0L, 2L);
+    private final UUID carol = new UUID(0L, 3L);
+    private final UUID dave = new UUID(0L, 4L);
+
+    @TempDir
+    Path folder;
+    private SQLite remote;
+    private SQLite local;
+    private Database database;
+    private PlayerDataManager sessions;
+    private ChangeLogPoller poller;
+    private Runnable poll;
+
+    @BeforeEach
+    void setUp() {
+        Map<String, Object> settings = Map.of("sync.enabled", true, "sync.poll-limit", POLL_LIMIT);
+        remote = new SQLite(TestPlugins.mockPlugin(folder.toFile(), settings));
+        remote.connect();
+        local = new SQLite(TestPlugins.mockPlugin(folder.toFile(), settings));
+        local.connect();
+
+        database = mock(Database.class);
+        when(database.getLatestChangeSequence()).thenAnswer(call -> completed(local.getLatestChangeSequence()));
+        when(database.pollChanges(anyLong(), anyInt())).thenAnswer(call ->
+                completed(local.pollChanges(call.getArgument(0), call.getArgument(1))));
+        when(database.pruneChanges(anyLong())).thenAnswer(call -> completed(local.pruneChanges(call.getArgument(0))));
+        sessions = mock(PlayerDataManager.class);
+
+        Main plugin = TestPlugins.mockPlugin(folder.toFile(), settings);
+        when(plugin.getStorageType()).thenReturn("sqlite");
+        when(plugin.getDatabase()).thenReturn(database);
+        when(plugin.getPlayerDataManager()).thenReturn(sessions);
+        poller = new ChangeLogPoller(plugin);
+    }
+
+    @AfterEach
+    void tearDown() {
+        remote.disconnect();
+        local.disconnect();
+    }
+
+    @Test
+    void refreshesOnlyRemoteChangesAfterStart() {
+        remote.addPlayerCard(alice, "gold").join();
+        start();
+
+        remote.addPlayerCard(bob, "gold").join();
+        local.addPlayerCard(carol, "gold").join();
+        poll.run();
+
+        verify(sessions).refreshSessions(Set.of(bob));
+        verify(sessions, never()).reloadSessions();
+
+        // 没有新记录时不刷新
+        clearInvocations(sessions);
+        poll.run();
+        verify(sessions, never()).refreshSessions(anyCollection());
+    }
+
+    @Test
+    void waitsForGapBeforeAdvancingHorizon() throws SQLException {
+        start();
+        insertChange(1, alice);
+        insertChange(3, carol);
+        poll.run();
+        verify(sessions).refreshSessions(Set.of(alice, carol));
+
+        // 序号 2 晚于 3 出现 (事务提交顺序与序号分配顺序不同): 只刷新 2, 不重复刷新 3
+        clearInvocations(sessions, database);
+        insertChange(2, bob);
+        poll.run();
+        verify(database).pollChanges(eq(1L), anyInt());
+        verify(sessions).refreshSessions(Set.of(bob));
+
+        // 空洞补齐后从 3 之后继续读取
+        clearInvocations(sessions, database);
+        insertChange(4, dave);
+        poll.run();
+        verify(database).pollChanges(eq(3L), anyInt());
+        verify(sessions).refreshSessions(Set.of(dave));
+    }
+
+    @Test
+    void skipsGapAndReloadsAllWhenPollIsFull() throws SQLException {
+        start();
+        insertChange(1, alice);
+        insertChange(3, bob);
+        insertChange(4, carol);
+        poll.run();
+
+        // 一次读满且中间有空洞: 跳到末尾并刷新全部在线玩家
+        verify(sessions).reloadSessions();
+        verify(sessions, never()).refreshSessions(anyCollection());
+
+        clearInvocations(sessions, database);
+        insertChange(2, dave);
+        insertChange(5, dave);
+        poll.run();
+        verify(database).pollChanges(eq(4L), anyInt());
+        verify(sessions).refreshSessions(Set.of(dave));
+    }
+
+    @Test
+    void reloadsAllSessionsForWildcardChange() throws SQLException {
+        start();
+        insertChange(1, alice);
+        insertChange(2, PlayerChange.ALL_PLAYERS);
+        poll.run();
+
+        verify(sessions).reloadSessions();
+        verify(sessions, never()).refreshSessions(anyCollection());
+    }
+
+    private void start() {
+        BukkitScheduler scheduler = mock(BukkitScheduler.class);
+        try (MockedStatic<Bukkit> bukkit = mockStatic(Bukkit.class)) {
+            bukkit.when(Bukkit::getScheduler).thenReturn(scheduler);
+            poller.start();
+        }
+        ArgumentCaptor<Runnable> task = ArgumentCaptor.forClass(Runnable.class);
+        verify(scheduler).runTaskTimerAsynchronously(any(), task.capture(), anyLong(), anyLong());
+        poll = task.getValue();
+    }
+
+    /**
+     * 以指定序号写入一条其他服务器的变更记录
+     */
+    private void insertChange(long sequence, UUID uuid) throws SQLException {
+        String url = "jdbc:sqlite:" + folder.resolve("player_data.db").toAbsolutePath();
+        try (Connection connection = DriverManager.getConnection(url);
+             PreparedStatement ps = connection.prepareStatement(
+                     "INSERT INTO player_changes (seq, uuid, server_id, created_at) VALUES (?, ?, ?, ?);")) {
+            ps.setLong(1, sequence);
+            ps.setBytes(2, UuidCodec.toBytes(uuid));
+            ps.setBytes(3, UuidCodec.toBytes(new UUID(1L, 1L)));
+            ps.setLong(4, System.currentTimeMillis());
+            ps.executeUpdate();
+        }
+    }
+
+    private static <T> CompletableFuture<T> completed(CompletableFuture<T> future) {
+        return CompletableFuture.completedFuture(future.join());
+    }
+}
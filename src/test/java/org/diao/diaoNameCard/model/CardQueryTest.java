@@ -0,0 +1,104 @@
+package org.diao.diaoNameCard.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CardQueryTest {
+
+    // 目录序号与名片编号一致: c0..c9, 每两个一个 layer (0..4), 偶数序号属于 event 分类
+    private final CardCatalog catalog = buildCatalog();
+    private final BitSet owned = BitSet.valueOf(new long[]{0b1001_0010L}); // 1, 4, 7
+
+    private static CardCatalog buildCatalog() {
+        List<NameCard> cards = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            String displayName = i == 3 ? "§6Golden Card" : "Card " + i;
+            cards.add(new NameCard("c" + i, i / 2, "", displayName, "", i % 2 == 0 ? "event" : ""));
+        }
+        return CardCatalog.of(cards, null);
+    }
+
+    @Test
+    void pagesThroughWholeCatalog() {
+        CardQuery query = new CardQuery();
+
+        CardQuery.Page first = query.execute(catalog, owned, 0, 4);
+        CardQuery.Page second = query.execute(catalog, owned, first.getNextCursor(), 4);
+        CardQuery.Page last = query.execute(catalog, owned, second.getNextCursor(), 4);
+
+        assertEquals(List.of(0, 1, 2, 3), indexes(first));
+        assertEquals(4, first.getNextCursor());
+        assertEquals(List.of(4, 5, 6, 7), indexes(second));
+        assertEquals(List.of(8, 9), indexes(last));
+        assertEquals(-1, last.getNextCursor());
+    }
+
+    @Test
+    void fullLastPageHasNoNextCursor() {
+        CardQuery.Page first = new CardQuery().execute(catalog, owned, 0, 5);
+        CardQuery.Page second = new CardQuery().execute(catalog, owned, first.getNextCursor(), 5);
+
+        assertEquals(5, first.getNextCursor());
+        assertEquals(List.of(5, 6, 7, 8, 9), indexes(second));
+        assertEquals(-1, second.getNextCursor());
+    }
+
+    @Test
+    void filtersByOwnership() {
+        CardQuery ownedOnly = new CardQuery().ownership(CardQuery.Ownership.OWNED);
+        CardQuery.Page first = ownedOnly.execute(catalog, owned, 0, 2);
+
+        assertEquals(List.of(1, 4), indexes(first));
+        assertEquals(7, first.getNextCursor());
+        assertEquals(List.of(7), indexes(ownedOnly.execute(catalog, owned, first.getNextCursor(), 2)));
+
+        CardQuery notOwned = new CardQuery().ownership(CardQuery.Ownership.parse("not_owned"));
+        assertEquals(List.of(0, 2, 3, 5, 6, 8, 9), indexes(notOwned.execute(catalog, owned, 0, 100)));
+    }
+
+    @Test
+    void filtersByLayerRange() {
+        CardQuery query = new CardQuery().layers(1, 2);
+
+        CardQuery.Page page = query.execute(catalog, owned, 0, 3);
+
+        assertEquals(List.of(2, 3, 4), indexes(page));
+        assertEquals(5, page.getNextCursor());
+        CardQuery.Page rest = query.execute(catalog, owned, page.getNextCursor(), 3);
+        assertEquals(List.of(5), indexes(rest));
+        assertEquals(-1, rest.getNextCursor());
+    }
+
+    @Test
+    void filtersByCategoryAndOwnership() {
+        CardQuery query = new CardQuery().category("EVENT");
+
+        CardQuery.Page first = query.execute(catalog, owned, 0, 2);
+        assertEquals(List.of(0, 2), indexes(first));
+        assertEquals(4, first.getNextCursor());
+        assertEquals(List.of(4, 6), indexes(query.execute(catalog, owned, 3, 2)));
+
+        CardQuery ownedEvents = new CardQuery().category("event").ownership(CardQuery.Ownership.OWNED);
+        assertEquals(List.of(4), indexes(ownedEvents.execute(catalog, owned, 0, 10)));
+    }
+
+    @Test
+    void filtersByDisplayNameIgnoringColors() {
+        CardQuery query = new CardQuery().nameContains("GOLDEN");
+
+        assertEquals(List.of(3), indexes(query.execute(catalog, owned, 0, 10)));
+    }
+
+    private static List<Integer> indexes(CardQuery.Page page) {
+        List<Integer> result = new ArrayList<>();
+        for (int i = 0; i < page.size(); i++) {
+            result.add(page.get(i));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,75 @@
+package org.diao.diaoNameCard.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CardSetTest {
+
+    @Test
+    void sortsAndDeduplicates() {
+        CardSet set = CardSet.of(new int[]{5, 1, 5, 3});
+
+        assertEquals(3, set.size());
+        assertArrayEquals(new int[]{1, 3, 5}, set.toArray());
+        assertTrue(set.contains(3));
+        assertFalse(set.contains(2));
+        assertFalse(set.contains(-1));
+    }
+
+    @Test
+    void modificationsReturnNewSets() {
+        CardSet set = CardSet.of(new int[]{1, 5});
+
+        CardSet added = set.with(3);
+        CardSet removed = added.without(1);
+
+        assertArrayEquals(new int[]{1, 5}, set.toArray());
+        assertArrayEquals(new int[]{1, 3, 5}, added.toArray());
+        assertArrayEquals(new int[]{3, 5}, removed.toArray());
+        assertSame(added, added.with(5));
+        assertSame(added, added.without(4));
+        assertSame(CardSet.EMPTY, CardSet.of(new int[]{7}).without(7));
+    }
+
+    @Test
+    void denseAndSparseSetsBehaveTheSame() {
+        int[] dense = IntStream.range(0, 200).toArray();
+        int[] sparse = {0, 10_000, 70_000};
+
+        for (int[] values : List.of(dense, sparse)) {
+            CardSet set = CardSet.of(values);
+            assertEquals(values.length, set.size());
+            assertArrayEquals(values, set.toArray());
+            for (int value : values) {
+                assertTrue(set.contains(value));
+            }
+            assertFalse(set.contains(values[values.length - 1] + 1));
+
+            List<Integer> visited = new ArrayList<>();
+            set.forEach(visited::add);
+            assertEquals(IntStream.of(values).boxed().toList(), visited);
+        }
+    }
+
+    @Test
+    void switchesContainerWhenDensityChanges() {
+        CardSet set = CardSet.of(IntStream.range(0, 64).toArray());
+        for (int i = 1; i < 64; i++) {
+            set = set.without(i);
+        }
+        set = set.with(1000);
+
+        assertArrayEquals(new int[]{0, 1000}, set.toArray());
+        assertTrue(set.contains(1000));
+        assertFalse(set.contains(63));
+    }
+}
@@ -0,0 +1,62 @@
+package org.diao.diaoNameCard.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CatalogDiffTest {
+
+    @Test
+    void identicalCatalogsHaveNoChanges() {
+        CardCatalog catalog = CardCatalog.of(List.of(card("gold", 1, ""), card("silver", 2, "")), null);
+        CardCatalog copy = CardCatalog.of(List.of(card("silver", 2, ""), card("gold", 1, "")), "gold");
+
+        CatalogDiff diff = CatalogDiff.compute(catalog, copy);
+
+        assertTrue(diff.isEmpty());
+        assertEquals(0, diff.size());
+    }
+
+    @Test
+    void detectsAddedRemovedAndModifiedCards() {
+        CardCatalog previous = CardCatalog.of(List.of(
+                card("gold", 1, ""), card("silver", 2, ""), card("bronze", 3, ""), card("iron", 4, "")), null);
+        CardCatalog current = CardCatalog.of(List.of(
+                card("gold", 1, ""), card("silver", 5, ""), card("bronze", 3, "event"),
+                card("zinc", 0, ""), card("copper", 6, "")), null);
+
+        CatalogDiff diff = CatalogDiff.compute(previous, current);
+
+        assertFalse(diff.isEmpty());
+        assertEquals(List.of("zinc", "copper"), ids(diff.getAdded()));
+        assertEquals(List.of("iron"), ids(diff.getRemoved()));
+        assertEquals(List.of("bronze", "silver"), ids(diff.getModified()));
+        assertEquals(5, diff.size());
+        assertEquals(5, diff.getModified().get(1).getLayer());
+    }
+
+    @Test
+    void matchesIdsIgnoringCase() {
+        CardCatalog previous = CardCatalog.of(List.of(card("Gold", 1, "")), null);
+        CardCatalog current = CardCatalog.of(List.of(card("gold", 1, "")), null);
+
+        CatalogDiff diff = CatalogDiff.compute(previous, current);
+
+        assertTrue(diff.getAdded().isEmpty());
+        assertTrue(diff.getRemoved().isEmpty());
+        assertEquals(List.of("gold"), ids(diff.getModified()));
+    }
+
+    private static NameCard card(String id, int layer, String category) {
+        return new NameCard(id, layer, "textures/" + id + ".png", id, "", category);
+    }
+
+    private static List<String> ids(List<NameCard> cards) {
+        return cards.stream().map(NameCard::getId).collect(Collectors.toList());
+    }
+}
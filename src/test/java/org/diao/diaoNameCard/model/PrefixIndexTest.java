@@ -0,0 +1,45 @@
+package org.diao.diaoNameCard.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PrefixIndexTest {
+
+    private final PrefixIndex index = PrefixIndex.of(
+            List.of("Alpha", "ALPS", "beta", "golden card", "gold"),
+            List.of("Alpha", "ALPS", "beta", "gold", "gold"));
+
+    @Test
+    void matchesPrefixIgnoringCase() {
+        assertEquals(List.of("Alpha", "ALPS"), index.complete("aL", 10));
+        assertEquals(List.of("beta"), index.complete("BETA", 10));
+        assertTrue(index.complete("c", 10).isEmpty());
+        assertTrue(index.complete("zzz", 10).isEmpty());
+    }
+
+    @Test
+    void emptyPrefixMatchesEverything() {
+        assertEquals(List.of("Alpha", "ALPS", "beta", "gold"), index.complete("", 10));
+    }
+
+    @Test
+    void returnsEachValueOnce() {
+        assertEquals(List.of("gold"), index.complete("gold", 10));
+    }
+
+    @Test
+    void limitCountsOnlyAcceptedValues() {
+        assertEquals(List.of("Alpha"), index.complete("al", 1));
+        assertEquals(List.of("ALPS", "beta"), index.complete("", 2, value -> !value.equals("Alpha")));
+    }
+
+    @Test
+    void rejectsMismatchedKeysAndValues() {
+        assertThrows(IllegalArgumentException.class, () -> PrefixIndex.of(List.of("a", "b"), List.of("a")));
+    }
+}
@@ -0,0 +1,66 @@
+package org.diao.diaoNameCard.protocol;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageChunkerTest {
+
+    private static final int HEADER = 10;
+
+    @Test
+    void emptyListStillProducesOneChunk() {
+        List<List<String[]>> chunks = MessageChunker.chunk(List.of(), HEADER, 100);
+
+        assertEquals(1, chunks.size());
+        assertTrue(chunks.get(0).isEmpty());
+    }
+
+    @Test
+    void splitsAtByteLimit() {
+        String[] entry = {"abcd", "efgh"};
+        int entryBytes = MessageChunker.estimateBytes(entry);
+        List<String[]> entries = List.of(entry, entry, entry, entry, entry);
+
+        List<List<String[]>> chunks = MessageChunker.chunk(entries, HEADER, HEADER + 2 * entryBytes);
+
+        assertEquals(3, chunks.size());
+        assertEquals(2, chunks.get(0).size());
+        assertEquals(2, chunks.get(1).size());
+        assertEquals(1, chunks.get(2).size());
+    }
+
+    @Test
+    void oversizedEntryGetsItsOwnChunk() {
+        String[] small = {"a"};
+        String[] large = {"x".repeat(500)};
+
+        List<List<String[]>> chunks = MessageChunker.chunk(List.of(small, large, small), HEADER, 100);
+
+        assertEquals(3, chunks.size());
+        assertArrayEquals(large, chunks.get(1).get(0));
+    }
+
+    @Test
+    void estimatesUtf8Length() {
+        int prefix = MessageChunker.LENGTH_PREFIX_BYTES;
+
+        assertEquals(1 + prefix, MessageChunker.estimateBytes(new String[]{"a"}));
+        assertEquals(2 + prefix, MessageChunker.estimateBytes(new String[]{"é"}));
+        assertEquals(3 + prefix, MessageChunker.estimateBytes(new String[]{"名"}));
+        assertEquals(4 + prefix, MessageChunker.estimateBytes(new String[]{"😀"}));
+        assertEquals(prefix, MessageChunker.estimateBytes(new String[]{null}));
+    }
+
+    @Test
+    void joinsHeaderAndEntries() {
+        String[] message = MessageChunker.join(new String[]{"v1", "0"},
+                List.of(new String[]{"a", "1", "extra"}, new String[]{"b", "2", "extra"}), 2);
+
+        assertArrayEquals(new String[]{"v1", "0", "a", "1", "b", "2"}, message);
+    }
+}
@@ -0,0 +1,149 @@
+package org.diao.diaoNameCard.storage;
+
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.diao.diaoNameCard.Main;
+import org.diao.diaoNameCard.TestPlugins;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.MockedStatic;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.mockStatic;
+
+class FlatFileTest {
+
+    private final UUID alice = new UUID(0L, 1L);
+    private final UUID bob = new UUID(0L, 2L);
+    private final UUID carol = new UUID(0L, 3L);
+
+    @TempDir
+    Path folder;
+    private Main plugin;
+
+    @BeforeEach
+    void setUp() {
+        plugin = TestPlugins.mockPlugin(folder.toFile(), Map.of("storage.file.initial-log-mb", 1));
+    }
+
+    @Test
+    void replaysLogAfterRestart() {
+        FlatFile storage = open();
+        writeSampleData(storage);
+        storage.disconnect();
+
+        FlatFile reopened = open();
+        try {
+            assertSampleData(reopened);
+        } finally {
+            reopened.disconnect();
+        }
+    }
+
+    @Test
+    void replaysSnapshotAndNewerLogs() throws Exception {
+        FlatFile storage = open();
+        writeSampleData(storage);
+        storage.disconnect();
+
+        // 存在多代日志时启动会立即整理: 写出快照并删除旧日志
+        Files.createFile(folder.resolve("player_data.1.log"));
+        FlatFile compacted = open();
+        awaitDeleted(folder.resolve("player_data.0.log"));
+        awaitDeleted(folder.resolve("player_data.1.log"));
+        assertTrue(Files.isRegularFile(folder.resolve("player_data.snapshot")));
+        compacted.addPlayerCard(carol, "silver").join();
+        compacted.setEquippedCard(carol, "silver").join();
+        compacted.disconnect();
+
+        FlatFile reopened = open();
+        try {
+            assertSampleData(reopened);
+            assertEquals(Set.of("event", "silver"), new HashSet<>(reopened.getPlayerCards(carol).join()));
+            assertEquals("silver", reopened.getEquippedCard(carol).join());
+        } finally {
+            reopened.disconnect();
+        }
+    }
+
+    @Test
+    void failedLoadRejectsReadsAndWrites() throws IOException {
+        Path log = folder.resolve("player_data.0.log");
+        byte[] corrupt = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10};
+        Files.write(log, corrupt);
+
+        FlatFile storage = open();
+        try {
+            assertFailed(storage.getPlayerCards(alice));
+            assertFailed(storage.loadProfile(alice));
+            assertFailed(storage.addPlayerCard(alice, "gold"));
+            assertFailed(storage.addCardToPlayers(List.of(alice), "gold"));
+            assertFailed(storage.countPlayerCards());
+        } finally {
+            storage.disconnect();
+        }
+        // 无法识别的日志保持原样, 修复后重启仍能读取
+        assertArrayEquals(corrupt, Files.readAllBytes(log));
+    }
+
+    private FlatFile open() {
+        FlatFile storage = new FlatFile(plugin);
+        try (MockedStatic<Bukkit> bukkit = mockStatic(Bukkit.class)) {
+            bukkit.when(Bukkit::getScheduler).thenReturn(mock(BukkitScheduler.class));
+            storage.connect();
+        }
+        return storage;
+    }
+
+    private void writeSampleData(FlatFile storage) {
+        storage.addPlayerCard(alice, "gold").join();
+        storage.addPlayerCard(alice, "silver").join();
+        storage.removePlayerCard(alice, "silver").join();
+        storage.setEquippedCard(alice, "gold").join();
+        storage.addPlayerCard(bob, "silver").join();
+        storage.setEquippedCard(bob, "silver").join();
+        storage.setEquippedCard(bob, null).join();
+        assertEquals(3, storage.addCardToPlayers(List.of(alice, bob, carol), "event").join());
+    }
+
+    private void assertSampleData(FlatFile storage) {
+        assertEquals(Set.of("gold", "event"), new HashSet<>(storage.getPlayerCards(alice).join()));
+        assertEquals("gold", storage.getEquippedCard(alice).join());
+        assertEquals(Set.of("silver", "event"), new HashSet<>(storage.getPlayerCards(bob).join()));
+        assertNull(storage.getEquippedCard(bob).join());
+        assertTrue(storage.getPlayerCards(carol).join().contains("event"));
+        assertEquals(3L, storage.countCardOwners("event").join());
+    }
+
+    private static void assertFailed(CompletableFuture<?> future) {
+        assertTrue(future.isCompletedExceptionally());
+        CompletionException e = assertThrows(CompletionException.class, future::join);
+        assertInstanceOf(IOException.class, e.getCause());
+    }
+
+    private static void awaitDeleted(Path path) throws InterruptedException {
+        for (int i = 0; i < 100 && Files.exists(path); i++) {
+            Thread.sleep(50);
+        }
+        assertFalse(Files.exists(path), path.getFileName() + " 未被删除");
+    }
+}
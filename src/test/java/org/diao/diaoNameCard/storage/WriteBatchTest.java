@@ -0,0 +1,104 @@
+package org.diao.diaoNameCard.storage;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteBatchTest {
+
+    private final UUID alice = new UUID(0L, 1L);
+    private final UUID bob = new UUID(0L, 2L);
+
+    @Test
+    void keepsLastWriteForSameCard() {
+        WriteBatch batch = new WriteBatch();
+        batch.addCard(alice, "gold");
+        batch.removeCard(alice, "gold");
+
+        assertEquals(1, batch.size());
+        assertTrue(batch.getAddedCards().isEmpty());
+        assertEquals(List.of("gold"), cardIds(batch.getRemovedCards()));
+    }
+
+    @Test
+    void keepsLastEquipPerPlayer() {
+        WriteBatch batch = new WriteBatch();
+        batch.setEquipped(alice, "gold");
+        batch.setEquipped(alice, null);
+        batch.setEquipped(bob, "silver");
+
+        assertEquals(2, batch.size());
+        assertTrue(batch.getEquippedChanges().containsKey(alice));
+        assertNull(batch.getEquippedChanges().get(alice));
+        assertEquals("silver", batch.getEquippedChanges().get(bob));
+    }
+
+    @Test
+    void mergeNewerOverridesExistingKeys() {
+        WriteBatch older = new WriteBatch();
+        older.addCard(alice, "gold");
+        older.setEquipped(alice, "gold");
+        WriteBatch newer = new WriteBatch();
+        newer.removeCard(alice, "gold");
+        newer.addCard(bob, "silver");
+        newer.setEquipped(alice, "silver");
+
+        older.mergeNewer(newer);
+
+        assertEquals(3, older.size());
+        assertEquals(List.of("silver"), cardIds(older.getAddedCards()));
+        assertEquals(List.of("gold"), cardIds(older.getRemovedCards()));
+        assertEquals("silver", older.getEquippedChanges().get(alice));
+    }
+
+    @Test
+    void mergeOlderKeepsExistingKeys() {
+        WriteBatch current = new WriteBatch();
+        current.removeCard(alice, "gold");
+        current.setEquipped(alice, null);
+        WriteBatch failed = new WriteBatch();
+        failed.addCard(alice, "gold");
+        failed.addCard(alice, "silver");
+        failed.setEquipped(alice, "gold");
+        failed.setEquipped(bob, "silver");
+
+        current.mergeOlder(failed);
+
+        assertEquals(4, current.size());
+        assertEquals(List.of("silver"), cardIds(current.getAddedCards()));
+        assertEquals(List.of("gold"), cardIds(current.getRemovedCards()));
+        assertNull(current.getEquippedChanges().get(alice));
+        assertEquals("silver", current.getEquippedChanges().get(bob));
+        assertEquals(List.of(alice, bob), new ArrayList<>(current.getPlayers()));
+    }
+
+    @Test
+    void appliesPendingWritesToStoredValues() {
+        WriteBatch batch = new WriteBatch();
+        batch.addCard(alice, "silver");
+        batch.removeCard(alice, "bronze");
+        batch.setEquipped(alice, null);
+
+        List<String> stored = new ArrayList<>(Arrays.asList("gold", "bronze"));
+        batch.applyCards(alice, stored);
+        assertEquals(List.of("gold", "silver"), stored);
+        assertNull(batch.applyEquipped(alice, "bronze"));
+
+        List<String> untouched = new ArrayList<>(List.of("gold"));
+        batch.applyCards(bob, untouched);
+        assertEquals(List.of("gold"), untouched);
+        assertEquals("gold", batch.applyEquipped(bob, "gold"));
+    }
+
+    private static List<String> cardIds(List<WriteBatch.CardChange> changes) {
+        return changes.stream().map(WriteBatch.CardChange::getCardId).collect(Collectors.toList());
+    }
+}